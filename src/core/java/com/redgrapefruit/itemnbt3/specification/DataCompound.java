@@ -0,0 +1,450 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * A {@link DataCompound} is the result of serialization via a <code>Specification</code>.
+ * <br><br>
+ * It is a very simple wrapper around a map for normal data and another map for nested {@link DataCompound}s.
+ * <br><br>
+ * Numbers and booleans put through the typed methods like {@link #putInt(String, int)} are kept in mutable cells that
+ * are updated in place, so reading the same data into a compound again doesn't box. {@link #get(String)} boxes them.
+ */
+public final class DataCompound {
+    private final @NotNull Map<String, Object> rootTree = new HashMap<>();
+    private final @NotNull Map<String, DataCompound> nestedTree = new HashMap<>();
+    // Memoized derived properties, created on first use and invalidated by puts of their dependencies
+    private @Nullable Map<DerivedProperty<?>, Object> derived = null;
+
+    // The kinds of primitive cells
+    static final byte BYTE = 1;
+    static final byte SHORT = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte FLOAT = 5;
+    static final byte DOUBLE = 6;
+    static final byte BOOL = 7;
+
+    /**
+     * A mutable holder of a primitive value. Cells never leave the compound, every accessor copies their value out.
+     */
+    static final class Primitive {
+        private byte kind;
+        // Integral values sign-extended, floats and doubles as their canonical bits, booleans as 0 or 1
+        private long bits;
+
+        private Primitive(byte kind, long bits) {
+            this.kind = kind;
+            this.bits = bits;
+        }
+
+        byte getKind() {
+            return kind;
+        }
+
+        long getBits() {
+            return bits;
+        }
+
+        @NotNull Object box() {
+            return switch (kind) {
+                case BYTE -> (byte) bits;
+                case SHORT -> (short) bits;
+                case INT -> (int) bits;
+                case LONG -> bits;
+                case FLOAT -> Float.intBitsToFloat((int) bits);
+                case DOUBLE -> Double.longBitsToDouble(bits);
+                default -> bits != 0L;
+            };
+        }
+    }
+
+    private void putRaw(@NotNull String key, @NotNull Object value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+
+        rootTree.put(key, value);
+        if (derived != null) invalidateDerived(key);
+    }
+
+    private void putPrimitive(@NotNull String key, byte kind, long bits) {
+        Objects.requireNonNull(key);
+
+        if (rootTree.get(key) instanceof Primitive primitive) {
+            primitive.kind = kind;
+            primitive.bits = bits;
+        } else {
+            rootTree.put(key, new Primitive(kind, bits));
+        }
+
+        if (derived != null) invalidateDerived(key);
+    }
+
+    private void invalidateDerived(@NotNull String key) {
+        final Iterator<DerivedProperty<?>> iterator = derived.keySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().dependsOn(key)) iterator.remove();
+        }
+    }
+
+    /**
+     * Gets the value of a {@link DerivedProperty}, computing it only if it hasn't been computed since its dependencies last changed.
+     *
+     * @param property The {@link DerivedProperty}.
+     * @param <T> The type of the value.
+     * @return The memoized value.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> @NotNull T getDerived(@NotNull DerivedProperty<T> property) {
+        Objects.requireNonNull(property);
+
+        if (derived == null) derived = new IdentityHashMap<>(4);
+
+        Object value = derived.get(property);
+        if (value == null) {
+            value = property.compute(this);
+            derived.put(property, value);
+        }
+
+        return (T) value;
+    }
+
+    /**
+     * Put new data to the compound's root tree.
+     *
+     * @param key Data key.
+     * @param value Data value.
+     * @param <T> Type of that data.
+     */
+    public <T> void put(@NotNull String key, @NotNull T value) {
+        putRaw(key, value);
+    }
+
+    /**
+     * Put a nested compound into the nested tree.
+     *
+     * @param key Data key.
+     * @param compound Nested compound.
+     */
+    public void putCompound(@NotNull String key, @NotNull DataCompound compound) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(compound);
+
+        nestedTree.put(key, compound);
+    }
+
+    private @NotNull Object getRaw(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        return rootTree.get(key);
+    }
+
+    public <T> T get(@NotNull String key) {
+        return (T) unwrap(getRaw(key));
+    }
+
+    /**
+     * @param key Data key.
+     * @return Whether the root tree holds a value for that key.
+     */
+    public boolean contains(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        return rootTree.containsKey(key);
+    }
+
+    public @NotNull DataCompound getCompound(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        return nestedTree.get(key);
+    }
+
+    public @NotNull DataCompound getOrCreateCompound(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        if (nestedTree.containsKey(key)) {
+            return nestedTree.get(key);
+        } else {
+            final DataCompound subCompound = new DataCompound();
+            putCompound(key, subCompound);
+            return subCompound;
+        }
+    }
+
+    /**
+     * Creates a deep copy of this compound. Array and collection values are cloned, so the copy can be mutated independently.
+     *
+     * @return The copied {@link DataCompound}.
+     */
+    public @NotNull DataCompound copy() {
+        final DataCompound copy = new DataCompound();
+        copyInto(copy);
+
+        return copy;
+    }
+
+    /**
+     * Creates an immutable {@link DataSnapshot} of this compound, for reading on other threads.
+     *
+     * @param previous The snapshot of the same data taken before, whose unchanged parts are shared, or <code>null</code>.
+     * @return The new snapshot, or the previous one if nothing has changed.
+     */
+    public @NotNull DataSnapshot snapshot(@Nullable DataSnapshot previous) {
+        return DataSnapshot.of(this, previous);
+    }
+
+    /**
+     * @return The root tree. Its values may be {@link Primitive} cells, see {@link #unwrap(Object)}.
+     */
+    @NotNull Map<String, Object> getRootTree() {
+        return rootTree;
+    }
+
+    /**
+     * @return The root value without copying primitive cells out, or <code>null</code>.
+     */
+    @Nullable Object getCell(@NotNull String key) {
+        return rootTree.get(key);
+    }
+
+    /**
+     * Copies the value of a key from another compound, reusing the cell of this compound if both hold a primitive.
+     */
+    void putCopyOf(@NotNull String key, @NotNull DataCompound source) {
+        final Object value = source.rootTree.get(key);
+
+        if (value instanceof Primitive primitive) {
+            putPrimitive(key, primitive.kind, primitive.bits);
+        } else if (value != null) {
+            putRaw(key, copyValue(value));
+        }
+    }
+
+    /**
+     * @return Whether both compounds hold equal values for the key, comparing primitive cells without boxing.
+     */
+    boolean valueEquals(@NotNull String key, @NotNull DataCompound other) {
+        final Object value = rootTree.get(key);
+        final Object otherValue = other.rootTree.get(key);
+
+        if (value instanceof Primitive primitive && otherValue instanceof Primitive otherPrimitive) {
+            return primitive.kind == otherPrimitive.kind && primitive.bits == otherPrimitive.bits;
+        }
+
+        return Objects.deepEquals(unwrap(value), unwrap(otherValue));
+    }
+
+    /**
+     * @return The boxed value of a primitive cell, or the value itself.
+     */
+    static Object unwrap(@Nullable Object value) {
+        return value instanceof Primitive primitive ? primitive.box() : value;
+    }
+
+    @NotNull Map<String, DataCompound> getNestedTree() {
+        return nestedTree;
+    }
+
+    @Nullable Map<DerivedProperty<?>, Object> getDerivedValues() {
+        return derived;
+    }
+
+    /**
+     * @param isStable Whether a property only depends on immutable fields of the compound's specification.
+     * @return A copy of the memoized values whose dependencies are immutable, or <code>null</code> if there are none.
+     */
+    @ApiStatus.Internal
+    public @Nullable Map<DerivedProperty<?>, Object> copyStableDerived(@NotNull Predicate<DerivedProperty<?>> isStable) {
+        if (derived == null) return null;
+
+        Map<DerivedProperty<?>, Object> stable = null;
+
+        for (Map.Entry<DerivedProperty<?>, Object> entry : derived.entrySet()) {
+            if (!isStable.test(entry.getKey())) continue;
+
+            if (stable == null) stable = new IdentityHashMap<>(4);
+            stable.put(entry.getKey(), entry.getValue());
+        }
+
+        return stable;
+    }
+
+    /**
+     * Adds values memoized for the same data earlier, replacing none that have been computed for this compound.
+     */
+    @ApiStatus.Internal
+    public void seedDerived(@NotNull Map<DerivedProperty<?>, Object> values) {
+        Objects.requireNonNull(values);
+
+        if (derived == null) derived = new IdentityHashMap<>(4);
+
+        for (Map.Entry<DerivedProperty<?>, Object> entry : values.entrySet()) {
+            derived.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Deep-copies all entries of this compound into the target, replacing entries with the same keys.
+     */
+    void copyInto(@NotNull DataCompound target) {
+        target.derived = null;
+
+        for (Map.Entry<String, Object> entry : rootTree.entrySet()) {
+            target.rootTree.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+
+        for (Map.Entry<String, DataCompound> entry : nestedTree.entrySet()) {
+            entry.getValue().copyInto(target.getOrCreateCompound(entry.getKey()));
+        }
+    }
+
+    /**
+     * @return A copy of the value that shares no mutable state with it, or the value itself if it is immutable.
+     */
+    @ApiStatus.Internal
+    public static @NotNull Object copyValue(@NotNull Object value) {
+        if (value instanceof Primitive primitive) return new Primitive(primitive.kind, primitive.bits);
+        if (value instanceof byte[] array) return array.clone();
+        if (value instanceof int[] array) return array.clone();
+        if (value instanceof long[] array) return array.clone();
+        if (value instanceof IntArrayList list) return list.clone();
+        if (value instanceof LongArrayList list) return list.clone();
+        if (value instanceof IntOpenHashSet set) return set.clone();
+        if (value instanceof LongOpenHashSet set) return set.clone();
+        if (value instanceof IntList list) return new IntArrayList(list);
+        if (value instanceof LongList list) return new LongArrayList(list);
+        if (value instanceof IntSet set) return new IntOpenHashSet(set);
+        if (value instanceof LongSet set) return new LongOpenHashSet(set);
+        if (value instanceof List<?> list) return new ArrayList<>(list);
+        if (value instanceof Set<?> set) return new LinkedHashSet<>(set);
+        if (value instanceof Map<?, ?> map) return new LinkedHashMap<>(map);
+
+        return value;
+    }
+
+    // SHORTCUTS
+
+    public void putByte(@NotNull String key, byte value) {
+        putPrimitive(key, BYTE, value);
+    }
+
+    public void putShort(@NotNull String key, short value) {
+        putPrimitive(key, SHORT, value);
+    }
+
+    public void putInt(@NotNull String key, int value) {
+        putPrimitive(key, INT, value);
+    }
+
+    public void putLong(@NotNull String key, long value) {
+        putPrimitive(key, LONG, value);
+    }
+
+    public void putFloat(@NotNull String key, float value) {
+        putPrimitive(key, FLOAT, Float.floatToIntBits(value));
+    }
+
+    public void putDouble(@NotNull String key, double value) {
+        putPrimitive(key, DOUBLE, Double.doubleToLongBits(value));
+    }
+
+    public void putBool(@NotNull String key, boolean value) {
+        putPrimitive(key, BOOL, value ? 1L : 0L);
+    }
+
+    // Like the casts of the boxed values, the getters throw a ClassCastException if the value has another type,
+    // for example getLong of an int
+
+    public byte getByte(@NotNull String key) {
+        final Object value = getRaw(key);
+        if (value instanceof Primitive primitive && primitive.kind == BYTE) return (byte) primitive.bits;
+
+        return (byte) unwrap(value);
+    }
+
+    public short getShort(@NotNull String key) {
+        final Object value = getRaw(key);
+        if (value instanceof Primitive primitive && primitive.kind == SHORT) return (short) primitive.bits;
+
+        return (short) unwrap(value);
+    }
+
+    public int getInt(@NotNull String key) {
+        final Object value = getRaw(key);
+        if (value instanceof Primitive primitive && primitive.kind == INT) return (int) primitive.bits;
+
+        return (int) unwrap(value);
+    }
+
+    public long getLong(@NotNull String key) {
+        final Object value = getRaw(key);
+        if (value instanceof Primitive primitive && primitive.kind == LONG) return primitive.bits;
+
+        return (long) unwrap(value);
+    }
+
+    public UUID getUUID(@NotNull String key) {
+        return (UUID) getRaw(key);
+    }
+
+    public float getFloat(@NotNull String key) {
+        final Object value = getRaw(key);
+        if (value instanceof Primitive primitive && primitive.kind == FLOAT) return Float.intBitsToFloat((int) primitive.bits);
+
+        return (float) unwrap(value);
+    }
+
+    public double getDouble(@NotNull String key) {
+        final Object value = getRaw(key);
+        if (value instanceof Primitive primitive && primitive.kind == DOUBLE) return Double.longBitsToDouble(primitive.bits);
+
+        return (double) unwrap(value);
+    }
+
+    public String getString(@NotNull String key) {
+        return (String) getRaw(key);
+    }
+
+    public byte[] getByteArray(@NotNull String key) {
+        return (byte[]) getRaw(key);
+    }
+
+    public int[] getIntArray(@NotNull String key) {
+        return (int[]) getRaw(key);
+    }
+
+    public long[] getLongArray(@NotNull String key) {
+        return (long[]) getRaw(key);
+    }
+
+    public boolean getBool(@NotNull String key) {
+        final Object value = getRaw(key);
+        if (value instanceof Primitive primitive && primitive.kind == BOOL) return primitive.bits != 0L;
+
+        return (boolean) unwrap(value);
+    }
+}
@@ -0,0 +1,250 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongLists;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link DataSnapshot} is an immutable copy of a {@link DataCompound}, which can be read from any thread without locking.
+ * <br><br>
+ * Snapshots share structure with the snapshot taken before them: unchanged values and nested snapshots are reused,
+ * and a snapshot of unchanged data is the previous snapshot itself. Collections are unmodifiable, and the array
+ * getters return copies.
+ */
+public final class DataSnapshot {
+    private final @NotNull Map<String, Object> rootTree;
+    private final @NotNull Map<String, DataSnapshot> nestedTree;
+    // Memoized derived properties, computed by whichever thread reads them first
+    private final @NotNull Map<DerivedProperty<?>, Object> derived = new ConcurrentHashMap<>(4);
+
+    private DataSnapshot(@NotNull Map<String, Object> rootTree, @NotNull Map<String, DataSnapshot> nestedTree) {
+        this.rootTree = rootTree;
+        this.nestedTree = nestedTree;
+    }
+
+    /**
+     * Creates a snapshot of the compound.
+     *
+     * @param compound The current data.
+     * @param previous The snapshot of the same data taken before, whose unchanged parts are shared, or <code>null</code>.
+     * @return The new snapshot, or the previous one if nothing has changed.
+     */
+    static @NotNull DataSnapshot of(@NotNull DataCompound compound, @Nullable DataSnapshot previous) {
+        final Map<String, Object> values = compound.getRootTree();
+        final Map<String, DataCompound> compounds = compound.getNestedTree();
+
+        boolean changed = previous == null || values.size() != previous.rootTree.size() || compounds.size() != previous.nestedTree.size();
+
+        final Map<String, Object> rootTree = new HashMap<>(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            final Object shared = previous == null ? null : previous.rootTree.get(entry.getKey());
+            final Object value = DataCompound.unwrap(entry.getValue());
+
+            if (shared != null && Objects.deepEquals(shared, value)) {
+                rootTree.put(entry.getKey(), shared);
+            } else {
+                rootTree.put(entry.getKey(), freeze(value));
+                changed = true;
+            }
+        }
+
+        final Map<String, DataSnapshot> nestedTree = new HashMap<>(compounds.size());
+        for (Map.Entry<String, DataCompound> entry : compounds.entrySet()) {
+            final DataSnapshot shared = previous == null ? null : previous.nestedTree.get(entry.getKey());
+            final DataSnapshot nested = of(entry.getValue(), shared);
+
+            nestedTree.put(entry.getKey(), nested);
+            if (nested != shared) changed = true;
+        }
+
+        // Values derived from the compound are current, since puts of their dependencies invalidate them
+        final Map<DerivedProperty<?>, Object> computed = compound.getDerivedValues();
+
+        if (!changed) {
+            if (computed != null) previous.derived.putAll(computed);
+            return previous;
+        }
+
+        final DataSnapshot snapshot = new DataSnapshot(rootTree, nestedTree);
+        if (previous != null) snapshot.inheritDerived(previous);
+        if (computed != null) snapshot.derived.putAll(computed);
+
+        return snapshot;
+    }
+
+    /**
+     * Carries over the derived values whose dependencies are shared with the previous snapshot.
+     */
+    private void inheritDerived(@NotNull DataSnapshot previous) {
+        for (Map.Entry<DerivedProperty<?>, Object> entry : previous.derived.entrySet()) {
+            boolean unchanged = true;
+
+            for (String dependency : entry.getKey().getDependencies()) {
+                if (rootTree.get(dependency) != previous.rootTree.get(dependency)) {
+                    unchanged = false;
+                    break;
+                }
+            }
+
+            if (unchanged) derived.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Gets the value of a {@link DerivedProperty}, computing it only once per snapshot.
+     *
+     * @param property The {@link DerivedProperty}.
+     * @param <T> The type of the value.
+     * @return The memoized value.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> @NotNull T getDerived(@NotNull DerivedProperty<T> property) {
+        Objects.requireNonNull(property);
+
+        final Object value = derived.get(property);
+        if (value != null) return (T) value;
+
+        return (T) derived.computeIfAbsent(property, key -> {
+            // The function only reads its dependencies, so only those are copied
+            final DataCompound dependencies = new DataCompound();
+
+            for (String dependency : key.getDependencies()) {
+                final Object dependencyValue = rootTree.get(dependency);
+                if (dependencyValue != null) dependencies.put(dependency, thaw(dependencyValue));
+            }
+
+            return key.compute(dependencies);
+        });
+    }
+
+    /**
+     * @return A mutable deep copy of the data in this snapshot.
+     */
+    public @NotNull DataCompound toCompound() {
+        final DataCompound compound = new DataCompound();
+
+        rootTree.forEach((key, value) -> compound.put(key, thaw(value)));
+        nestedTree.forEach((key, nested) -> compound.putCompound(key, nested.toCompound()));
+
+        return compound;
+    }
+
+    public boolean contains(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        return rootTree.containsKey(key) || nestedTree.containsKey(key);
+    }
+
+    /**
+     * @return The value, which must not be modified if it is an array.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        return (T) rootTree.get(key);
+    }
+
+    public @Nullable DataSnapshot getCompound(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        return nestedTree.get(key);
+    }
+
+    private static @NotNull Object freeze(@NotNull Object value) {
+        if (value instanceof byte[] array) return array.clone();
+        if (value instanceof int[] array) return array.clone();
+        if (value instanceof long[] array) return array.clone();
+        if (value instanceof IntList list) return IntLists.unmodifiable(new IntArrayList(list));
+        if (value instanceof LongList list) return LongLists.unmodifiable(new LongArrayList(list));
+        if (value instanceof IntSet set) return IntSets.unmodifiable(new IntOpenHashSet(set));
+        if (value instanceof LongSet set) return LongSets.unmodifiable(new LongOpenHashSet(set));
+        if (value instanceof List<?> list) return Collections.unmodifiableList(new ArrayList<>(list));
+        if (value instanceof Set<?> set) return Collections.unmodifiableSet(new LinkedHashSet<>(set));
+        if (value instanceof Map<?, ?> map) return Collections.unmodifiableMap(new LinkedHashMap<>(map));
+
+        return value;
+    }
+
+    private static @NotNull Object thaw(@NotNull Object value) {
+        if (value instanceof IntList list) return new IntArrayList(list);
+        if (value instanceof LongList list) return new LongArrayList(list);
+        if (value instanceof IntSet set) return new IntOpenHashSet(set);
+        if (value instanceof LongSet set) return new LongOpenHashSet(set);
+
+        return DataCompound.copyValue(value);
+    }
+
+    // SHORTCUTS
+
+    public byte getByte(@NotNull String key) {
+        return (byte) get(key);
+    }
+
+    public short getShort(@NotNull String key) {
+        return (short) get(key);
+    }
+
+    public int getInt(@NotNull String key) {
+        return (int) get(key);
+    }
+
+    public long getLong(@NotNull String key) {
+        return (long) get(key);
+    }
+
+    public UUID getUUID(@NotNull String key) {
+        return (UUID) get(key);
+    }
+
+    public float getFloat(@NotNull String key) {
+        return (float) get(key);
+    }
+
+    public double getDouble(@NotNull String key) {
+        return (double) get(key);
+    }
+
+    public String getString(@NotNull String key) {
+        return (String) get(key);
+    }
+
+    public byte[] getByteArray(@NotNull String key) {
+        return ((byte[]) get(key)).clone();
+    }
+
+    public int[] getIntArray(@NotNull String key) {
+        return ((int[]) get(key)).clone();
+    }
+
+    public long[] getLongArray(@NotNull String key) {
+        return ((long[]) get(key)).clone();
+    }
+
+    public boolean getBool(@NotNull String key) {
+        return (boolean) get(key);
+    }
+}
@@ -0,0 +1,90 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A {@link DerivedProperty} is a value computed from fields of a <code>Specification</code>, like effective stats computed
+ * from base stats and modifiers.
+ * <br><br>
+ * The value is memoized in the {@link DataCompound} or {@link DataSnapshot} it is read from, and only recomputed after
+ * one of its dependencies has been put into the compound, which includes reading and backward-linking. Snapshots carry
+ * the value over from the previous snapshot as long as the dependencies are unchanged.
+ * <br><br>
+ * If all dependencies are numbers, booleans, strings, UUIDs or enums, the value is also kept by the stack between uses
+ * through the <code>DataClient</code>, until the stack's data is written or its NBT is requested
+ * in any other way. Values depending on arrays, lists or custom types are only memoized within one compound.
+ * <br><br>
+ * Only puts invalidate the value, so an array or list dependency that is modified in place has to be put again.
+ * <br><br>
+ * The function must only read the declared dependencies, must not return <code>null</code> and should return
+ * an immutable value, since it is shared by all reads until it is recomputed.
+ *
+ * @param <T> The type of the value.
+ */
+public final class DerivedProperty<T> {
+    private final @NotNull String name;
+    private final @NotNull String[] dependencies;
+    private final @NotNull Function<DataCompound, T> function;
+
+    private DerivedProperty(@NotNull String name, @NotNull String[] dependencies, @NotNull Function<DataCompound, T> function) {
+        this.name = name;
+        this.dependencies = dependencies;
+        this.function = function;
+    }
+
+    /**
+     * Creates a new {@link DerivedProperty}.
+     *
+     * @param name The name of the property, unique within its <code>Specification</code>.
+     * @param function Computes the value from a {@link DataCompound}.
+     * @param dependencies The keys of the root and packed fields the function reads.
+     * @param <T> The type of the value.
+     * @return The created {@link DerivedProperty}.
+     */
+    public static <T> @NotNull DerivedProperty<T> of(@NotNull String name, @NotNull Function<DataCompound, T> function, @NotNull String... dependencies) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(function);
+        Objects.requireNonNull(dependencies);
+
+        if (dependencies.length == 0) throw new IllegalArgumentException("Derived property " + name + " has no dependencies");
+
+        return new DerivedProperty<>(name, dependencies.clone(), function);
+    }
+
+    /**
+     * @return The memoized value of this property for the compound.
+     */
+    public @NotNull T get(@NotNull DataCompound compound) {
+        return compound.getDerived(this);
+    }
+
+    /**
+     * @return The memoized value of this property for the snapshot.
+     */
+    public @NotNull T get(@NotNull DataSnapshot snapshot) {
+        return snapshot.getDerived(this);
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    boolean dependsOn(@NotNull String key) {
+        for (String dependency : dependencies) {
+            if (dependency.equals(key)) return true;
+        }
+
+        return false;
+    }
+
+    @NotNull String[] getDependencies() {
+        return dependencies;
+    }
+
+    @NotNull T compute(@NotNull DataCompound compound) {
+        return Objects.requireNonNull(function.apply(compound), "Derived property " + name + " computed null");
+    }
+}
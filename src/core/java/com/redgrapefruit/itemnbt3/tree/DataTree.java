@@ -0,0 +1,68 @@
+package com.redgrapefruit.itemnbt3.tree;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link DataTree} is a storage backend that a <code>Specification</code> can read from and write into.
+ * <br><br>
+ * It stores typed values by key and can contain child trees. Values are handed to the backend together with their
+ * {@link ValueType}, so that each backend can decide on its own representation:
+ * <ul>
+ *     <li><code>NbtDataTree</code> encodes them into an <code>NbtCompound</code> through their <code>TypeSerializer</code></li>
+ *     <li>{@link FlatDataTree} keeps the values themselves in flat arrays</li>
+ * </ul>
+ * This interface and {@link FlatDataTree} don't depend on Minecraft classes, so they live in the core source set.
+ */
+public interface DataTree {
+    /**
+     * Reads a value.
+     *
+     * @param key The key of the value.
+     * @param type The {@link ValueType} of the value.
+     * @param <T> The type of the value.
+     * @return The value, or <code>null</code> if the backend doesn't contain it and has no way to fall back.
+     */
+    <T> @Nullable T read(@NotNull String key, @NotNull ValueType<T> type);
+
+    /**
+     * Writes a value.
+     *
+     * @param key The key of the value.
+     * @param type The {@link ValueType} of the value.
+     * @param value The value, or <code>null</code> to write the type's fallback.
+     * @param <T> The type of the value.
+     */
+    <T> void write(@NotNull String key, @NotNull ValueType<T> type, @Nullable T value);
+
+    /**
+     * Reads a primitive <code>long</code>, <code>0</code> if it is missing.
+     */
+    long getLong(@NotNull String key);
+
+    /**
+     * Writes a primitive <code>long</code>.
+     */
+    void putLong(@NotNull String key, long value);
+
+    /**
+     * Gets the child tree under the given key, creating it if it doesn't exist yet.
+     */
+    @NotNull DataTree getOrCreateChild(@NotNull String key);
+
+    /**
+     * Gets the child tree under the given key without modifying this tree.
+     *
+     * @return The child tree, or <code>null</code> if there is none.
+     */
+    @Nullable DataTree getChild(@NotNull String key);
+
+    boolean contains(@NotNull String key);
+
+    boolean isEmpty();
+
+    /**
+     * Removes all values and children.
+     */
+    void clear();
+}
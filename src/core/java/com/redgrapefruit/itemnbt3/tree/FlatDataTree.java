@@ -0,0 +1,122 @@
+package com.redgrapefruit.itemnbt3.tree;
+
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link DataTree} backend that keeps the values themselves in two parallel arrays, without encoding them.
+ * <br><br>
+ * Lookups are linear scans, which for the handful of keys in a typical <code>Specification</code> is
+ * faster than hashing. Arrays and collections are copied when they are written and read, so modifying them on
+ * either side never reaches the stored values. It doesn't depend on Minecraft classes, which makes it suitable for
+ * benchmarks and for data that never ends up in an item.
+ */
+public final class FlatDataTree implements DataTree {
+    private @NotNull String[] keys;
+    private @NotNull Object[] values;
+    private int size = 0;
+
+    public FlatDataTree() {
+        this(8);
+    }
+
+    public FlatDataTree(int capacity) {
+        keys = new String[Math.max(capacity, 1)];
+        values = new Object[keys.length];
+    }
+
+    private int indexOf(@NotNull String key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) return i;
+        }
+
+        return -1;
+    }
+
+    private void set(@NotNull String key, @NotNull Object value) {
+        Objects.requireNonNull(key);
+
+        final int index = indexOf(key);
+
+        if (index != -1) {
+            values[index] = value;
+            return;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        keys[size] = key;
+        values[size] = value;
+        ++size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> @Nullable T read(@NotNull String key, @NotNull ValueType<T> type) {
+        final int index = indexOf(key);
+        if (index == -1 || values[index] instanceof FlatDataTree) return type.getFallback();
+
+        return (T) DataCompound.copyValue(values[index]);
+    }
+
+    @Override
+    public <T> void write(@NotNull String key, @NotNull ValueType<T> type, @Nullable T value) {
+        final T written = value == null ? type.getFallback() : value;
+        if (written == null) return;
+
+        set(key, DataCompound.copyValue(written));
+    }
+
+    @Override
+    public long getLong(@NotNull String key) {
+        final int index = indexOf(key);
+
+        return index != -1 && values[index] instanceof Long value ? value : 0L;
+    }
+
+    @Override
+    public void putLong(@NotNull String key, long value) {
+        set(key, value);
+    }
+
+    @Override
+    public @NotNull DataTree getOrCreateChild(@NotNull String key) {
+        final int index = indexOf(key);
+        if (index != -1 && values[index] instanceof FlatDataTree child) return child;
+
+        final FlatDataTree child = new FlatDataTree(4);
+        set(key, child);
+        return child;
+    }
+
+    @Override
+    public @Nullable DataTree getChild(@NotNull String key) {
+        final int index = indexOf(key);
+
+        return index != -1 && values[index] instanceof FlatDataTree child ? child : null;
+    }
+
+    @Override
+    public boolean contains(@NotNull String key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+}
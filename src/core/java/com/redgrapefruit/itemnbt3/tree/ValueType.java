@@ -0,0 +1,20 @@
+package com.redgrapefruit.itemnbt3.tree;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link ValueType} describes the values of one type for a {@link DataTree}, without tying them to a representation.
+ * <br><br>
+ * Every <code>TypeSerializer</code> is a {@link ValueType}, which adds the encoding into NBT.
+ *
+ * @param <T> The type of the values.
+ */
+public interface ValueType<T> {
+    /**
+     * @return The value written in place of a missing value, or <code>null</code> if this type has none.
+     * Backends other than NBT use it to fill in uninitialized data.
+     */
+    default @Nullable T getFallback() {
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The typed getters return exactly the type that was put, whether the value is kept in a primitive cell or boxed, and
+ * never convert between numeric types.
+ */
+public class DataCompoundTest {
+    @Test
+    public void typedValuesRoundTrip() {
+        final DataCompound compound = new DataCompound();
+        compound.putByte("byte", (byte) -3);
+        compound.putShort("short", (short) -300);
+        compound.putInt("int", -70_000);
+        compound.putLong("long", Long.MIN_VALUE);
+        compound.putFloat("float", 1.5F);
+        compound.putDouble("double", -2.25);
+        compound.putBool("bool", true);
+
+        assertEquals((byte) -3, compound.getByte("byte"));
+        assertEquals((short) -300, compound.getShort("short"));
+        assertEquals(-70_000, compound.getInt("int"));
+        assertEquals(Long.MIN_VALUE, compound.getLong("long"));
+        assertEquals(1.5F, compound.getFloat("float"));
+        assertEquals(-2.25, compound.getDouble("double"));
+        assertTrue(compound.getBool("bool"));
+        assertEquals(Integer.valueOf(-70_000), compound.get("int"));
+    }
+
+    @Test
+    public void cellsAreNotWidened() {
+        final DataCompound compound = new DataCompound();
+        compound.putByte("byte", (byte) 1);
+        compound.putInt("int", 1);
+        compound.putFloat("float", 1.0F);
+
+        assertThrows(ClassCastException.class, () -> compound.getShort("byte"));
+        assertThrows(ClassCastException.class, () -> compound.getLong("int"));
+        assertThrows(ClassCastException.class, () -> compound.getDouble("int"));
+        assertThrows(ClassCastException.class, () -> compound.getDouble("float"));
+        assertThrows(ClassCastException.class, () -> compound.getBool("int"));
+    }
+
+    @Test
+    public void boxedValuesAreNotWidened() {
+        final DataCompound compound = new DataCompound();
+        compound.put("short", (short) 1);
+        compound.put("long", 1L);
+
+        assertEquals((short) 1, compound.getShort("short"));
+        assertThrows(ClassCastException.class, () -> compound.getInt("short"));
+        assertThrows(ClassCastException.class, () -> compound.getFloat("long"));
+    }
+
+    @Test
+    public void reusedCellsTakeTheNewType() {
+        final DataCompound compound = new DataCompound();
+        compound.putInt("value", 5);
+        compound.putLong("value", 6L);
+
+        assertEquals(6L, compound.getLong("value"));
+        assertThrows(ClassCastException.class, () -> compound.getInt("value"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Snapshots don't change with the compound they were taken from, can't be modified through their values, and share
+ * whatever didn't change with the snapshot before them.
+ */
+public class DataSnapshotTest {
+    @Test
+    public void snapshotsDontFollowTheCompound() {
+        final DataCompound compound = compound();
+        final DataSnapshot snapshot = compound.snapshot(null);
+
+        compound.<int[]>get("slots")[0] = 42;
+        compound.<List<String>>get("names").add("third");
+        compound.putInt("charge", 6);
+        compound.getCompound("owner").put("name", "thief");
+
+        assertArrayEquals(new int[] {1, 2, 3}, snapshot.getIntArray("slots"));
+        assertEquals(List.of("first", "second"), snapshot.get("names"));
+        assertEquals(5, snapshot.getInt("charge"));
+        assertEquals("player", snapshot.getCompound("owner").getString("name"));
+    }
+
+    @Test
+    public void snapshotsCantBeModified() {
+        final DataSnapshot snapshot = compound().snapshot(null);
+
+        snapshot.getIntArray("slots")[0] = 42;
+
+        assertArrayEquals(new int[] {1, 2, 3}, snapshot.getIntArray("slots"));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.<List<String>>get("names").add("third"));
+    }
+
+    @Test
+    public void unchangedDataReusesTheSnapshot() {
+        final DataCompound compound = compound();
+        final DataSnapshot first = compound.snapshot(null);
+
+        // Equal values put again are no change
+        compound.putInt("charge", 5);
+        compound.put("slots", new int[] {1, 2, 3});
+
+        assertSame(first, compound.snapshot(first));
+    }
+
+    @Test
+    public void unchangedPartsAreShared() {
+        final DataCompound compound = compound();
+        final DataSnapshot first = compound.snapshot(null);
+
+        compound.putInt("charge", 6);
+        final DataSnapshot second = compound.snapshot(first);
+
+        assertNotSame(first, second);
+        assertEquals(5, first.getInt("charge"));
+        assertEquals(6, second.getInt("charge"));
+        assertSame(first.<List<String>>get("names"), second.get("names"));
+        assertSame(first.getCompound("owner"), second.getCompound("owner"));
+    }
+
+    @Test
+    public void compoundsAreCopiedOut() {
+        final DataSnapshot snapshot = compound().snapshot(null);
+        final DataCompound copy = snapshot.toCompound();
+
+        copy.<int[]>get("slots")[0] = 42;
+        copy.<List<String>>get("names").add("third");
+        copy.getCompound("owner").put("name", "thief");
+
+        assertArrayEquals(new int[] {1, 2, 3}, snapshot.getIntArray("slots"));
+        assertEquals(List.of("first", "second"), snapshot.get("names"));
+        assertEquals("player", snapshot.getCompound("owner").getString("name"));
+    }
+
+    private static DataCompound compound() {
+        final DataCompound compound = new DataCompound();
+        compound.putInt("charge", 5);
+        compound.put("slots", new int[] {1, 2, 3});
+        compound.put("names", new ArrayList<>(List.of("first", "second")));
+        compound.getOrCreateCompound("owner").put("name", "player");
+
+        return compound;
+    }
+}
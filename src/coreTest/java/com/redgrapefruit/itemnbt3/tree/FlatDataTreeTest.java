@@ -0,0 +1,107 @@
+package com.redgrapefruit.itemnbt3.tree;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The flat backend on its own, without Minecraft: values round-trip, and nothing written or read stays connected to
+ * the stored data.
+ */
+public class FlatDataTreeTest {
+    private static final ValueType<Integer> INT = new ValueType<>() {
+        @Override
+        public @NotNull Integer getFallback() {
+            return 0;
+        }
+    };
+    private static final ValueType<String> STRING = new ValueType<>() {};
+    private static final ValueType<int[]> INT_ARRAY = new ValueType<>() {
+        @Override
+        public int[] getFallback() {
+            return new int[0];
+        }
+    };
+    private static final ValueType<IntList> INT_LIST = new ValueType<>() {};
+
+    @Test
+    public void valuesRoundTrip() {
+        final FlatDataTree tree = new FlatDataTree(1);
+        tree.write("level", INT, 3);
+        tree.write("name", STRING, "sword");
+        tree.putLong("packed", 1L << 40);
+        tree.write("level", INT, 4);
+
+        assertEquals(4, tree.read("level", INT));
+        assertEquals("sword", tree.read("name", STRING));
+        assertEquals(1L << 40, tree.getLong("packed"));
+        assertTrue(tree.contains("name"));
+    }
+
+    @Test
+    public void missingValuesFallBack() {
+        final FlatDataTree tree = new FlatDataTree();
+        tree.write("name", STRING, null);
+
+        assertEquals(0, tree.read("level", INT));
+        assertNull(tree.read("name", STRING));
+        assertFalse(tree.contains("name"));
+        assertEquals(0L, tree.getLong("packed"));
+    }
+
+    @Test
+    public void childrenAreKept() {
+        final FlatDataTree tree = new FlatDataTree();
+        final DataTree child = tree.getOrCreateChild("stats");
+        child.write("level", INT, 7);
+
+        assertSame(child, tree.getOrCreateChild("stats"));
+        assertEquals(7, tree.getChild("stats").read("level", INT));
+        assertNull(tree.getChild("missing"));
+        assertEquals(0, tree.read("stats", INT));
+    }
+
+    @Test
+    public void writtenArraysAreCopied() {
+        final FlatDataTree tree = new FlatDataTree();
+        final int[] slots = {1, 2, 3};
+        final IntList list = new IntArrayList(new int[] {4, 5});
+        tree.write("slots", INT_ARRAY, slots);
+        tree.write("list", INT_LIST, list);
+
+        slots[0] = 99;
+        list.set(0, 99);
+
+        assertArrayEquals(new int[] {1, 2, 3}, tree.read("slots", INT_ARRAY));
+        assertEquals(4, tree.read("list", INT_LIST).getInt(0));
+    }
+
+    @Test
+    public void readArraysAreCopied() {
+        final FlatDataTree tree = new FlatDataTree();
+        tree.write("slots", INT_ARRAY, new int[] {1, 2, 3});
+
+        tree.read("slots", INT_ARRAY)[0] = 99;
+
+        assertArrayEquals(new int[] {1, 2, 3}, tree.read("slots", INT_ARRAY));
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        final FlatDataTree tree = new FlatDataTree();
+        tree.write("level", INT, 3);
+        tree.getOrCreateChild("stats");
+        tree.clear();
+
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.contains("stats"));
+    }
+}
@@ -0,0 +1,243 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.google.common.collect.MapMaker;
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.SpecificationSet;
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * {@link ConcurrentUse} makes {@link DataClient#use(ItemStack, Specification, Consumer)} safe to call from several threads
+ * on the same stacks, for the {@link Specification}s it is enabled for.
+ * <br><br>
+ * Every stack used this way gets a {@link StampedLock} in a weak side table, so no other stack or compound pays for it.
+ * The stack's NBT is only accessed under the write lock. Commits never modify the stack's compound, they write a new one,
+ * swap it in and remember it next to the lock. In the optimistic mode, the remembered compound is decoded without any
+ * lock, since nothing modifies it anymore and the serializers decode arrays into copies. The result is committed only if
+ * the lock's stamp shows that no commit has happened since, and the stack still holds the remembered compound,
+ * otherwise the use is attempted again. After {@link #OPTIMISTIC_ATTEMPTS} conflicts, and always in the locking mode,
+ * the whole use runs under the write lock.
+ * <br><br>
+ * The action may run several times and must only modify the given {@link DataCompound}. Deserialization and linking
+ * events aren't invoked. While concurrent use is enabled, the data must only be modified through the {@link DataClient}:
+ * the <code>use</code> variants with a {@link Specification}, including the linked ones, and
+ * {@link DataClient#useAsync} all go through the lock, {@link DataClient#useDeferred} doesn't defer anything, and
+ * {@link DataClient#useStruct}, which writes into the stored array in place, is rejected. Data deferred on the calling
+ * thread before concurrent use was enabled is written back first.
+ */
+public final class ConcurrentUse {
+    /**
+     * The amount of optimistic attempts before a use falls back to holding the lock.
+     */
+    public static final int OPTIMISTIC_ATTEMPTS = 4;
+
+    private static final @NotNull ConcurrentMap<ItemStack, State> states = new MapMaker().weakKeys().makeMap();
+
+    // Stands in for a missing compound, which decodes to the defaults
+    private static final @NotNull NbtCompound ABSENT = new NbtCompound();
+
+    private static final @NotNull SpecificationSet enabled = new SpecificationSet();
+    private static final @NotNull SpecificationSet locking = new SpecificationSet();
+
+    private static final @NotNull AtomicLong conflicts = new AtomicLong();
+    private static final @NotNull AtomicLong lockedUses = new AtomicLong();
+
+    private ConcurrentUse() {
+        throw new RuntimeException("ConcurrentUse is not meant to be instantiated");
+    }
+
+    /**
+     * Makes {@link DataClient#use(ItemStack, Specification, Consumer)} run in the optimistic mode for the given {@link Specification}.
+     *
+     * @param specification The {@link Specification} to enable concurrent use for.
+     */
+    public static void enable(@NotNull Specification specification) {
+        Objects.requireNonNull(specification);
+
+        enabled.add(specification);
+    }
+
+    /**
+     * Makes {@link DataClient#use(ItemStack, Specification, Consumer)} always hold the lock for the given {@link Specification},
+     * which avoids repeated attempts for data that is written by many threads at once.
+     *
+     * @param specification The {@link Specification} to enable concurrent use for.
+     */
+    public static void enableLocking(@NotNull Specification specification) {
+        Objects.requireNonNull(specification);
+
+        locking.add(specification);
+        enabled.add(specification);
+    }
+
+    public static boolean isEnabled(@NotNull Specification specification) {
+        return enabled.contains(specification);
+    }
+
+    static void use(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull Consumer<DataCompound> action) {
+        final State state = stateOf(stack);
+
+        final DataCompound pending = DeferredWrites.take(stack, specification);
+        if (pending != null) {
+            final long write = state.lock.writeLock();
+
+            try {
+                state.commit(stack, specification, pending);
+            } finally {
+                state.lock.unlockWrite(write);
+            }
+        }
+
+        if (!locking.contains(specification)) {
+            for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+                if (tryOptimistic(stack, specification, action, state)) return;
+
+                conflicts.incrementAndGet();
+                Thread.onSpinWait();
+            }
+        }
+
+        final long write = state.lock.writeLock();
+
+        try {
+            final DataCompound compound = DataClient.decodeDetached(specification, current(stack, specification));
+            action.accept(compound);
+            state.commit(stack, specification, compound);
+        } finally {
+            state.lock.unlockWrite(write);
+        }
+
+        lockedUses.incrementAndGet();
+    }
+
+    /**
+     * Writes data decoded elsewhere back under the write lock, if the stack's current compound passes the check.
+     *
+     * @param unchanged Checks the stack's current compound, which is <code>null</code> if the stack has none.
+     * @return Whether the data has been written back.
+     */
+    static boolean commitIf(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound, @NotNull Predicate<NbtCompound> unchanged) {
+        final State state = stateOf(stack);
+        final long write = state.lock.writeLock();
+
+        try {
+            if (!unchanged.test(Utilities.peekSubNbt(stack, specification.getId()))) return false;
+
+            state.commit(stack, specification, compound);
+            return true;
+        } finally {
+            state.lock.unlockWrite(write);
+        }
+    }
+
+    /**
+     * @return A private copy of the stack's current compound, taken under the write lock, or <code>null</code> if the stack has none.
+     */
+    static @Nullable NbtCompound copyCurrent(@NotNull ItemStack stack, @NotNull Specification specification) {
+        final State state = stateOf(stack);
+        final long write = state.lock.writeLock();
+
+        try {
+            final NbtCompound subNbt = Utilities.peekSubNbt(stack, specification.getId());
+            return subNbt == null ? null : subNbt.copy();
+        } finally {
+            state.lock.unlockWrite(write);
+        }
+    }
+
+    /**
+     * @return Whether the use has been committed.
+     */
+    private static boolean tryOptimistic(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull Consumer<DataCompound> action, @NotNull State state) {
+        long stamp = state.lock.tryOptimisticRead();
+        NbtCompound subNbt = state.committed.get(specification);
+
+        // The stack's NBT is only read under the write lock, the first use of a stack remembers its compound
+        if (subNbt == null) {
+            final long write = state.lock.writeLock();
+            subNbt = current(stack, specification);
+            state.committed.put(specification, subNbt);
+            stamp = state.lock.tryConvertToOptimisticRead(write);
+        }
+
+        final DataCompound compound = DataClient.decodeDetached(specification, subNbt);
+        action.accept(compound);
+
+        // Fails if any commit has happened since the lookup, whose data the action hasn't seen
+        final long write = state.lock.tryConvertToWriteLock(stamp);
+        if (write == 0L) return false;
+
+        try {
+            // The data has been replaced without going through the lock, so the next attempt looks it up again
+            if (current(stack, specification) != subNbt) {
+                state.committed.remove(specification);
+                return false;
+            }
+
+            state.commit(stack, specification, compound);
+            return true;
+        } finally {
+            state.lock.unlockWrite(write);
+        }
+    }
+
+    private static @NotNull NbtCompound current(@NotNull ItemStack stack, @NotNull Specification specification) {
+        final NbtCompound subNbt = Utilities.peekSubNbt(stack, specification.getId());
+        return subNbt == null ? ABSENT : subNbt;
+    }
+
+    private static @NotNull State stateOf(@NotNull ItemStack stack) {
+        State state = states.get(stack);
+
+        if (state == null) {
+            state = new State();
+
+            final State existing = states.putIfAbsent(stack, state);
+            if (existing != null) state = existing;
+        }
+
+        return state;
+    }
+
+    /**
+     * @return The amount of optimistic attempts that had to be repeated.
+     */
+    public static long getConflictCount() {
+        return conflicts.get();
+    }
+
+    /**
+     * @return The amount of uses that have run under the lock.
+     */
+    public static long getLockedUseCount() {
+        return lockedUses.get();
+    }
+
+    /**
+     * The lock of one stack and the compounds last committed under it.
+     */
+    private static final class State {
+        private final @NotNull StampedLock lock = new StampedLock();
+        private final @NotNull ConcurrentMap<Specification, NbtCompound> committed = new ConcurrentHashMap<>();
+
+        /**
+         * Swaps in a new compound with the data. Must be called under the write lock.
+         */
+        private void commit(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound) {
+            DataClient.writeReplacing(stack, specification, compound);
+            committed.put(specification, current(stack, specification));
+        }
+    }
+}
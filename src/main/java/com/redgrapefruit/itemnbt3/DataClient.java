@@ -3,23 +3,42 @@ package com.redgrapefruit.itemnbt3;
 import com.redgrapefruit.itemnbt3.event.DeserializationEvents;
 import com.redgrapefruit.itemnbt3.event.LinkingEvents;
 import com.redgrapefruit.itemnbt3.event.SerializationEvents;
+import com.redgrapefruit.itemnbt3.jfr.UseEvent;
 import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.DataSnapshot;
 import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.specification.StructLayout;
+import com.redgrapefruit.itemnbt3.specification.StructView;
 import com.redgrapefruit.itemnbt3.linking.DataLink;
+import com.redgrapefruit.itemnbt3.tree.DataTree;
+import com.redgrapefruit.itemnbt3.util.ItemStackMixinAccess;
 import com.redgrapefruit.itemnbt3.util.NbtCompoundMixinAccess;
+import com.redgrapefruit.itemnbt3.util.Utilities;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.Util;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ConcurrentModificationException;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * The {@link DataClient} is a hub for all operations in the ItemNBT3 library.<br>
  * It connects all serialization types together for you to use.
  */
 public final class DataClient {
+    /**
+     * The default maximum amount of attempts of {@link #useAsync}.
+     */
+    public static final int ASYNC_ATTEMPTS = 3;
+
     private DataClient() {
         throw new RuntimeException("DataClient is not meant to be instantiated");
     }
@@ -82,31 +101,413 @@ public final class DataClient {
         Objects.requireNonNull(specification);
         Objects.requireNonNull(action);
 
-        final NbtCompound subNbt = stack.getOrCreateSubNbt(specification.getId());
+        final UseEvent event = UseEvent.start();
+
+        if (ConcurrentUse.isEnabled(specification)) {
+            ConcurrentUse.use(stack, specification, action);
+            if (event != null) event.complete(stack, specification);
+            return;
+        }
+
+        DeferredWrites.flush(stack, specification);
+
+        final DataCompound compound = read(stack, specification);
+        action.accept(compound);
+        write(stack, specification, compound);
+
+        if (event != null) event.complete(stack, specification);
+    }
+
+    /**
+     * Gives you access to a struct-encoded {@link Specification} without decoding it into a {@link DataCompound}.
+     * <br><br>
+     * Fixed-size fields are read and written directly in the stored byte array. If the stack has no matching struct yet,
+     * or its data was written by an older {@link Specification#getVersion()}, it is first initialized or upgraded with
+     * a regular {@link #use(ItemStack, Specification, Consumer)} call.
+     * Writes through the {@link StructView} don't invoke any serialization events. Not available for specifications
+     * with {@link ConcurrentUse}, since the view modifies the stored data in place.
+     *
+     * @param stack The {@link ItemStack}, whose NBT has the data.
+     * @param specification The specification to serialize with, which must use a {@link StructLayout}.
+     * @param action The lambda action where you can interact with the {@link StructView}.
+     */
+    public static void useStruct(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull Consumer<StructView> action) {
+        Objects.requireNonNull(stack);
+        Objects.requireNonNull(specification);
+        Objects.requireNonNull(action);
+
+        final StructLayout layout = specification.getStructLayout();
+        if (layout == null) {
+            throw new IllegalArgumentException("Specification " + specification.getId() + " does not use a struct layout");
+        }
+        if (ConcurrentUse.isEnabled(specification)) {
+            throw new IllegalArgumentException("Specification " + specification.getId() + " uses concurrent use, which struct views don't support");
+        }
+
+        DeferredWrites.flush(stack, specification);
+
+        // Old data is upgraded first even if its struct header matches, since the header only tracks the layout
+        final NbtCompound current = Utilities.peekSubNbt(stack, specification.getId());
+        if (current == null || specification.isOutdated(current) || !layout.matches(current.getByteArray(StructLayout.KEY))) {
+            use(stack, specification, compound -> {});
+        }
+
+        // The view writes into the array directly, so a shared compound has to be copied first
+        final NbtCompound subNbt = FlyweightPool.getWritable(stack, specification);
+        action.accept(new StructView(layout, subNbt.getByteArray(StructLayout.KEY)));
+
+        FlyweightPool.afterWrite(stack, specification);
+        ((ItemStackMixinAccess) (Object) stack).markWritten();
+
+        // The view has no compound, so the snapshot is taken from the stored data
+        if (DataSnapshots.isEnabled(specification)) {
+            final DataCompound compound = new DataCompound();
+            specification.readNbt(Objects.requireNonNull(Utilities.peekSubNbt(stack, specification.getId())), compound);
+            DataSnapshots.publish(stack, specification, compound);
+        }
+    }
+
+    /**
+     * A deferred variant of {@link #use(ItemStack, Specification, Consumer)} for code that accesses the same stack
+     * several times per tick.
+     * <br><br>
+     * The first call decodes the {@link DataCompound} and caches it for the stack. Later calls reuse the cached compound,
+     * and the data is written back once at the end of the tick, or before the stack is copied or serialized. Call
+     * {@link #flush(ItemStack)} or {@link #flushAll()} when the NBT needs to be current earlier. A non-deferred
+     * {@link #use} on the same stack and specification flushes first.
+     * <br><br>
+     * Must only be called on the server or the client thread. The pending data is confined to the calling thread,
+     * so only that thread's own calls flush it. Specifications with {@link ConcurrentUse} aren't deferred, the call
+     * behaves like {@link #use(ItemStack, Specification, Consumer)}.
+     *
+     * @param stack The {@link ItemStack}, whose NBT has the data.
+     * @param specification The specification to serialize with.
+     * @param action The lambda action where you can interact with the {@link DataCompound}.
+     */
+    public static void useDeferred(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull Consumer<DataCompound> action) {
+        Objects.requireNonNull(stack);
+        Objects.requireNonNull(specification);
+        Objects.requireNonNull(action);
+
+        // Other threads commit in the meantime, which a compound cached for the tick wouldn't see
+        if (ConcurrentUse.isEnabled(specification)) {
+            use(stack, specification, action);
+            return;
+        }
+
+        DataCompound compound = DeferredWrites.get(stack, specification);
+
+        if (compound == null) {
+            compound = read(stack, specification);
+            DeferredWrites.put(stack, specification, compound);
+        }
+
+        action.accept(compound);
+    }
+
+    /**
+     * Writes back all pending deferred data of the given stack, deferred on the calling thread.
+     *
+     * @param stack The {@link ItemStack} with pending data.
+     */
+    public static void flush(@NotNull ItemStack stack) {
+        Objects.requireNonNull(stack);
+
+        DeferredWrites.flush(stack);
+    }
+
+    /**
+     * Writes back all pending deferred data of the calling thread. Called automatically at the end of every server
+     * and client tick.
+     */
+    public static void flushAll() {
+        DeferredWrites.flushAll();
+    }
+
+    /**
+     * An asynchronous variant of {@link #use(ItemStack, Specification, Consumer)} using the Minecraft worker pool and
+     * {@link #ASYNC_ATTEMPTS} attempts.
+     */
+    public static @NotNull CompletableFuture<DataCompound> useAsync(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull Consumer<DataCompound> transform, @NotNull Executor mainThread) {
+        return useAsync(stack, specification, transform, mainThread, Util.getMainWorkerExecutor(), ASYNC_ATTEMPTS);
+    }
+
+    /**
+     * Decodes the data and runs the transform on a worker thread, then writes the result back on the main thread.
+     * <br><br>
+     * The decode works on a copy of the stack's data taken when the attempt starts. The result is only written back if
+     * the stack's data still equals that copy, so that any modification in the meantime is noticed, including direct
+     * changes to the NBT. Otherwise the attempt is started again from the current data.
+     * When no attempt succeeds, the future fails with a {@link ConcurrentModificationException}. The transform may
+     * therefore run several times and must only modify the given {@link DataCompound}.
+     * <br><br>
+     * Deserialization events aren't invoked for the decode on the worker thread, the write-back invokes the serialization
+     * events as usual. Must be called on the main thread.
+     *
+     * @param stack The {@link ItemStack}, whose NBT has the data.
+     * @param specification The specification to serialize with.
+     * @param transform The lambda action modifying the {@link DataCompound}, called on a worker thread.
+     * @param mainThread The {@link Executor} of the thread owning the stack, like the server.
+     * @param workers The {@link Executor} running the decode and the transform.
+     * @param attempts The maximum amount of attempts.
+     * @return A future completed on the main thread with the written {@link DataCompound}.
+     */
+    public static @NotNull CompletableFuture<DataCompound> useAsync(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull Consumer<DataCompound> transform,
+                                                                    @NotNull Executor mainThread, @NotNull Executor workers, int attempts) {
+        Objects.requireNonNull(stack);
+        Objects.requireNonNull(specification);
+        Objects.requireNonNull(transform);
+        Objects.requireNonNull(mainThread);
+        Objects.requireNonNull(workers);
+
+        if (attempts < 1) throw new IllegalArgumentException("Asynchronous use needs at least one attempt");
+
+        final CompletableFuture<DataCompound> result = new CompletableFuture<>();
+        attemptAsync(stack, specification, transform, mainThread, workers, attempts, attempts, result);
+
+        return result;
+    }
+
+    private static void attemptAsync(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull Consumer<DataCompound> transform,
+                                     @NotNull Executor mainThread, @NotNull Executor workers, int attempts, int remaining, @NotNull CompletableFuture<DataCompound> result) {
+        DeferredWrites.flush(stack, specification);
+
+        final boolean concurrent = ConcurrentUse.isEnabled(specification);
+        final NbtCompound source = copySource(stack, specification, concurrent);
+
+        CompletableFuture.supplyAsync(() -> {
+            final DataCompound compound = decodeDetached(specification, source);
+            transform.accept(compound);
+            return compound;
+        }, workers).thenAcceptAsync(compound -> {
+            DeferredWrites.flush(stack, specification);
+
+            if (concurrent ? ConcurrentUse.commitIf(stack, specification, compound, current -> isUnchanged(current, source)) : writeIfUnchanged(stack, specification, compound, source)) {
+                result.complete(compound);
+            } else if (remaining > 1) {
+                attemptAsync(stack, specification, transform, mainThread, workers, attempts, remaining - 1, result);
+            } else {
+                result.completeExceptionally(new ConcurrentModificationException("Data of " + specification.getId() + " was modified during " + attempts + " asynchronous attempts"));
+            }
+        }, mainThread).exceptionally(throwable -> {
+            result.completeExceptionally(throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+            return null;
+        });
+    }
+
+    /**
+     * Takes the compound the worker decodes from, which must not change until the write-back compares it.
+     * <br><br>
+     * A shared compound is handed to the worker as it is: it rejects modifications, the stack replaces it instead of
+     * modifying it, and the serializers decode its arrays into copies, so the transform can't reach it either. A private
+     * compound may be modified by the main thread in the meantime, so it is copied. With concurrent use, other threads
+     * commit while the main thread reads, so the copy is taken under the lock.
+     */
+    private static @NotNull NbtCompound copySource(@NotNull ItemStack stack, @NotNull Specification specification, boolean concurrent) {
+        final NbtCompound subNbt = concurrent ? ConcurrentUse.copyCurrent(stack, specification) : Utilities.peekSubNbt(stack, specification.getId());
+        if (subNbt == null) return new NbtCompound();
+
+        return concurrent || ((NbtCompoundMixinAccess) subNbt).isShared() ? subNbt : subNbt.copy();
+    }
+
+    // Compared on the main thread, which is the only one modifying the stack without concurrent use
+    private static boolean writeIfUnchanged(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound, @NotNull NbtCompound source) {
+        if (!isUnchanged(Utilities.peekSubNbt(stack, specification.getId()), source)) return false;
+
+        write(stack, specification, compound);
+        return true;
+    }
+
+    private static boolean isUnchanged(@Nullable NbtCompound current, @NotNull NbtCompound source) {
+        return current == null ? source.isEmpty() : current.equals(source);
+    }
+
+    /**
+     * Gives you access to the specification-based serialization method over any {@link DataTree} backend,
+     * without an {@link ItemStack}. No events are invoked.
+     *
+     * @param tree The {@link DataTree} with the data.
+     * @param specification The specification to serialize with.
+     * @param action The lambda action where you can interact with the {@link DataCompound}.
+     */
+    public static void use(@NotNull DataTree tree, @NotNull Specification specification, @NotNull Consumer<DataCompound> action) {
+        Objects.requireNonNull(tree);
+        Objects.requireNonNull(specification);
+        Objects.requireNonNull(action);
+
         final DataCompound compound = new DataCompound();
 
-        if (subNbt.isEmpty()) {
+        if (tree.isEmpty()) {
+            specification.writeDefaults(compound);
+        } else {
+            specification.readTree(tree, compound);
+        }
+
+        action.accept(compound);
+        tree.clear();
+        specification.writeTree(tree, compound);
+    }
+
+    static @NotNull DataCompound read(@NotNull ItemStack stack, @NotNull Specification specification) {
+        // Reading doesn't need a private copy of shared data, since the serializers copy the arrays they decode
+        NbtCompound subNbt = Utilities.peekSubNbt(stack, specification.getId());
+        final DataCompound compound = new DataCompound();
+
+        // First use copies the default template, which already matches the written data, so there is nothing to read back
+        if (subNbt == null || subNbt.isEmpty()) {
+            subNbt = FlyweightPool.getWritable(stack, specification);
             ((NbtCompoundMixinAccess) subNbt).clearNbt();
 
             SerializationEvents.DEFAULT_PRE_SERIALIZE.invoker().event(stack, specification, subNbt, compound);
-            specification.writeNbt(subNbt, compound);
+            specification.writeDefaults(subNbt, compound);
             SerializationEvents.DEFAULT_POST_SERIALIZE.invoker().event(stack, specification, subNbt, compound);
+        } else {
+            DeserializationEvents.DEFAULT_PRE_DESERIALIZE.invoker().event(stack, specification, subNbt, compound);
+            specification.readNbt(subNbt, compound);
+            DeserializationEvents.DEFAULT_POST_DESERIALIZE.invoker().event(stack, specification, subNbt, compound);
         }
 
-        DeserializationEvents.DEFAULT_PRE_DESERIALIZE.invoker().event(stack, specification, subNbt, compound);
-        specification.readNbt(subNbt, compound);
-        DeserializationEvents.DEFAULT_POST_DESERIALIZE.invoker().event(stack, specification, subNbt, compound);
+        DerivedCache.seed(stack, specification, compound);
+        return compound;
+    }
 
-        action.accept(compound);
+    /**
+     * Decodes the data without modifying the compound or invoking any events, so that it can run off the main thread.
+     *
+     * @param subNbt The stack's compound of the specification, which is <code>null</code> or empty on first use.
+     */
+    static @NotNull DataCompound decodeDetached(@NotNull Specification specification, @Nullable NbtCompound subNbt) {
+        final DataCompound compound = new DataCompound();
+
+        if (subNbt == null || subNbt.isEmpty()) {
+            specification.writeDefaults(compound);
+        } else {
+            specification.readNbt(subNbt, compound);
+        }
+
+        return compound;
+    }
+
+    static void write(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound) {
+        final NbtCompound subNbt = FlyweightPool.getWritable(stack, specification);
         ((NbtCompoundMixinAccess) subNbt).clearNbt();
 
+        serialize(stack, specification, compound, subNbt);
+    }
+
+    /**
+     * Writes the data into a new compound that replaces the stack's current one, which is left unmodified. Used by
+     * {@link ConcurrentUse}, whose optimistic readers decode the current compound without holding a lock.
+     */
+    static void writeReplacing(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound) {
+        final NbtCompound subNbt = new NbtCompound();
+        stack.setSubNbt(specification.getId(), subNbt);
+
+        serialize(stack, specification, compound, subNbt);
+    }
+
+    private static void serialize(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound, @NotNull NbtCompound subNbt) {
         SerializationEvents.DEFAULT_PRE_SERIALIZE.invoker().event(stack, specification, subNbt, compound);
         specification.writeNbt(subNbt, compound);
         SerializationEvents.DEFAULT_POST_SERIALIZE.invoker().event(stack, specification, subNbt, compound);
+
+        removeIfElided(stack, specification, subNbt);
+        FlyweightPool.afterWrite(stack, specification);
+
+        final ItemStackMixinAccess access = (ItemStackMixinAccess) (Object) stack;
+        final int writeCount = access.getWriteCount();
+        access.markWritten();
+
+        DerivedCache.store(stack, specification, compound, writeCount);
+        DataSnapshots.publish(stack, specification, compound);
+    }
+
+    /**
+     * Gets the latest immutable snapshot of a stack's data, published after the last write-back. Safe to call from any thread.
+     *
+     * @param stack The {@link ItemStack} with the data.
+     * @param specification The specification of the data, which must be enabled in {@link DataSnapshots}.
+     * @return The {@link DataSnapshot}, or <code>null</code> if the data hasn't been written back since the stack was created.
+     */
+    public static @Nullable DataSnapshot snapshot(@NotNull ItemStack stack, @NotNull Specification specification) {
+        return DataSnapshots.get(stack, specification);
+    }
+
+    /**
+     * Removes fully default data, so that the stack is equal to one that has never been used.
+     */
+    private static void removeIfElided(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull NbtCompound subNbt) {
+        if (subNbt.isEmpty() && specification.isElidingDefaults()) {
+            stack.removeSubNbt(specification.getId());
+        }
+    }
+
+    /**
+     * Gives you access to the linked-specification-based serialization method for immutable classes (records and classes
+     * with a {@link com.redgrapefruit.itemnbt3.linking.LinkedConstructor}) and polymorphic types.
+     * <br><br>
+     * The instance is constructed from the data, so no pre-forward-link event is invoked. The instance returned by the
+     * action is written back, and can be shared freely since it is never modified by the library. With
+     * {@link ConcurrentUse}, the action may run several times and no events are invoked.
+     *
+     * @param stack The {@link ItemStack}, whose NBT has the data.
+     * @param specification The specification to get the {@link DataCompound} with.
+     * @param link The immutable or polymorphic {@link DataLink} of the class.
+     * @param action The lambda action, which receives the current instance and returns the instance to store.
+     * @param <T> The generic object type.
+     * @return The stored instance.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> @NotNull T use(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataLink link, @NotNull UnaryOperator<T> action) {
+        Objects.requireNonNull(stack);
+        Objects.requireNonNull(specification);
+        Objects.requireNonNull(link);
+        Objects.requireNonNull(action);
+
+        if (!link.isImmutable() && !link.isPolymorphic()) {
+            throw new IllegalArgumentException("DataLink of specification " + specification.getId() + " is neither immutable nor polymorphic");
+        }
+
+        final UseEvent event = UseEvent.start();
+
+        if (ConcurrentUse.isEnabled(specification)) {
+            final Object[] stored = new Object[1];
+
+            ConcurrentUse.use(stack, specification, compound -> {
+                final T instance = Objects.requireNonNull(action.apply((T) link.construct(compound)));
+                link.backwardLink(compound, instance);
+                stored[0] = instance;
+            });
+
+            if (event != null) event.complete(stack, specification);
+            return (T) stored[0];
+        }
+
+        DeferredWrites.flush(stack, specification);
+
+        final DataCompound compound = read(stack, specification);
+        final NbtCompound subNbt = Objects.requireNonNull(Utilities.peekSubNbt(stack, specification.getId()));
+
+        final T current = (T) link.construct(compound);
+        LinkingEvents.POST_FORWARD_LINK.invoker().event(stack, specification, subNbt, compound, current);
+
+        final T instance = Objects.requireNonNull(action.apply(current));
+
+        LinkingEvents.PRE_BACKWARD_LINK.invoker().event(stack, specification, subNbt, compound, instance);
+        link.backwardLink(compound, instance);
+        LinkingEvents.POST_BACKWARD_LINK.invoker().event(stack, specification, subNbt, compound, instance);
+
+        write(stack, specification, compound);
+
+        if (event != null) event.complete(stack, specification);
+        return instance;
     }
 
     /**
      * Gives you access to the linked-specification-based serialization method.
+     * <br><br>
+     * With {@link ConcurrentUse}, the instance is linked up again for every attempt, so the action may run several
+     * times and must only modify the instance. No events are invoked in that case.
      *
      * @param stack The {@link ItemStack}, whose NBT has the data.
      * @param specification The specification to get the {@link DataCompound} with.
@@ -121,21 +522,36 @@ public final class DataClient {
         Objects.requireNonNull(link);
         Objects.requireNonNull(action);
 
-        final NbtCompound subNbt = stack.getOrCreateSubNbt(specification.getId());
+        final UseEvent event = UseEvent.start();
+
+        if (ConcurrentUse.isEnabled(specification)) {
+            ConcurrentUse.use(stack, specification, compound -> {
+                link.forwardLink(compound, instance);
+                action.accept(instance);
+                link.backwardLink(compound, instance);
+            });
+
+            if (event != null) event.complete(stack, specification);
+            return;
+        }
+
+        DeferredWrites.flush(stack, specification);
+
+        final NbtCompound subNbt = FlyweightPool.getWritable(stack, specification);
         final DataCompound compound = new DataCompound();
 
         if (subNbt.isEmpty()) {
             ((NbtCompoundMixinAccess) subNbt).clearNbt();
 
             SerializationEvents.LINKED_PRE_SERIALIZE.invoker().event(stack, specification, subNbt, compound, instance);
-            specification.writeNbt(subNbt, compound);
+            specification.writeDefaults(subNbt, compound);
             SerializationEvents.LINKED_POST_SERIALIZE.invoker().event(stack, specification, subNbt, compound, instance);
+        } else {
+            DeserializationEvents.LINKED_PRE_DESERIALIZE.invoker().event(stack, specification, subNbt, compound, instance);
+            specification.readNbt(subNbt, compound);
+            DeserializationEvents.LINKED_POST_DESERIALIZE.invoker().event(stack, specification, subNbt, compound, instance);
         }
 
-        DeserializationEvents.LINKED_PRE_DESERIALIZE.invoker().event(stack, specification, subNbt, compound, instance);
-        specification.readNbt(subNbt, compound);
-        DeserializationEvents.LINKED_POST_DESERIALIZE.invoker().event(stack, specification, subNbt, compound, instance);
-
         LinkingEvents.PRE_FORWARD_LINK.invoker().event(stack, specification, subNbt, compound, instance);
         link.forwardLink(compound, instance);
         LinkingEvents.POST_FORWARD_LINK.invoker().event(stack, specification, subNbt, compound, instance);
@@ -151,5 +567,12 @@ public final class DataClient {
         SerializationEvents.LINKED_PRE_SERIALIZE.invoker().event(stack, specification, subNbt, compound, instance);
         specification.writeNbt(subNbt, compound);
         SerializationEvents.LINKED_POST_SERIALIZE.invoker().event(stack, specification, subNbt, compound, instance);
+
+        removeIfElided(stack, specification, subNbt);
+        FlyweightPool.afterWrite(stack, specification);
+        ((ItemStackMixinAccess) (Object) stack).markWritten();
+        DataSnapshots.publish(stack, specification, compound);
+
+        if (event != null) event.complete(stack, specification);
     }
 }
@@ -0,0 +1,90 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.DataSnapshot;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.ItemStackMixinAccess;
+import com.redgrapefruit.itemnbt3.util.SpecificationSet;
+import net.minecraft.item.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link DataSnapshots} publishes an immutable {@link DataSnapshot} of a stack's data after every write-back through
+ * the {@link DataClient}, so that other threads (rendering, tooltips, search) can read the data without locking and
+ * without racing on the {@link net.minecraft.nbt.NbtCompound}.
+ * <br><br>
+ * Snapshots are stored on the stack and published with a volatile write, so a reader always sees a complete snapshot
+ * of some write-back. Modifications of the NBT that bypass the {@link DataClient} are not reflected until the next write-back.
+ */
+public final class DataSnapshots {
+    private static final @NotNull SpecificationSet enabled = new SpecificationSet();
+
+    private DataSnapshots() {
+        throw new RuntimeException("DataSnapshots is not meant to be instantiated");
+    }
+
+    /**
+     * Makes {@link DataClient} publish a snapshot of the given {@link Specification}'s data after every write-back.
+     * <br><br>
+     * Unchanged values are shared with the previous snapshot, so a write-back costs a comparison of every value
+     * and a copy of the changed ones.
+     *
+     * @param specification The {@link Specification} to publish snapshots for.
+     */
+    public static void enable(@NotNull Specification specification) {
+        Objects.requireNonNull(specification);
+
+        enabled.add(specification);
+    }
+
+    public static boolean isEnabled(@NotNull Specification specification) {
+        return enabled.contains(specification);
+    }
+
+    /**
+     * Gets the latest published snapshot of a stack's data. Safe to call from any thread.
+     *
+     * @param stack The {@link ItemStack} with the data.
+     * @param specification The {@link Specification} of the data.
+     * @return The snapshot, or <code>null</code> if none has been published for this stack yet.
+     */
+    public static @Nullable DataSnapshot get(@NotNull ItemStack stack, @NotNull Specification specification) {
+        Objects.requireNonNull(stack);
+        Objects.requireNonNull(specification);
+
+        final Map<Specification, DataSnapshot> snapshots = ((ItemStackMixinAccess) (Object) stack).getSnapshots();
+
+        return snapshots == null ? null : snapshots.get(specification);
+    }
+
+    /**
+     * Publishes a snapshot of the written data if snapshots are enabled for the {@link Specification}.
+     * Called by {@link DataClient} on the thread that owns the stack.
+     */
+    static void publish(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound) {
+        if (!isEnabled(specification)) return;
+
+        final ItemStackMixinAccess access = (ItemStackMixinAccess) (Object) stack;
+        final Map<Specification, DataSnapshot> current = access.getSnapshots();
+        final DataSnapshot previous = current == null ? null : current.get(specification);
+
+        final DataSnapshot snapshot = compound.snapshot(previous);
+        if (snapshot == previous) return;
+
+        // Copy-on-write, a published map is never modified
+        final Map<Specification, DataSnapshot> next;
+        if (current == null || current.size() == 1 && previous != null) {
+            next = Map.of(specification, snapshot);
+        } else {
+            next = new HashMap<>(current);
+            next.put(specification, snapshot);
+        }
+
+        access.setSnapshots(next);
+    }
+}
@@ -0,0 +1,101 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import net.minecraft.item.ItemStack;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the {@link DataCompound}s decoded by {@link DataClient#useDeferred} until they are written back.
+ * <br><br>
+ * The pending writes are confined to the thread that deferred them, so that the server and the client of an
+ * integrated server never see or flush each other's data. Every method only affects the pending writes of the
+ * calling thread. The server thread flushes at the end of every server tick, the client thread at the end of
+ * every client tick. Both flush a stack before it is copied or serialized.
+ * <br><br>
+ * Stacks and specifications are compared by identity, which is what {@link ItemStack} and {@link Specification} use.
+ */
+@ApiStatus.Internal
+final class DeferredWrites {
+    private static final @NotNull ThreadLocal<Map<Key, DataCompound>> PENDING = ThreadLocal.withInitial(LinkedHashMap::new);
+
+    private DeferredWrites() {
+        throw new RuntimeException("DeferredWrites is not meant to be instantiated");
+    }
+
+    static @Nullable DataCompound get(@NotNull ItemStack stack, @NotNull Specification specification) {
+        final Map<Key, DataCompound> pending = PENDING.get();
+        if (pending.isEmpty()) return null;
+
+        return pending.get(new Key(stack, specification));
+    }
+
+    static void put(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound) {
+        PENDING.get().put(new Key(stack, specification), compound);
+    }
+
+    /**
+     * Removes the pending data of the stack without writing it back, for callers that write it back themselves.
+     */
+    static @Nullable DataCompound take(@NotNull ItemStack stack, @NotNull Specification specification) {
+        final Map<Key, DataCompound> pending = PENDING.get();
+        if (pending.isEmpty()) return null;
+
+        return pending.remove(new Key(stack, specification));
+    }
+
+    static void flush(@NotNull ItemStack stack, @NotNull Specification specification) {
+        final Map<Key, DataCompound> pending = PENDING.get();
+        if (pending.isEmpty()) return;
+
+        final DataCompound compound = pending.remove(new Key(stack, specification));
+        if (compound != null) DataClient.write(stack, specification, compound);
+    }
+
+    static void flush(@NotNull ItemStack stack) {
+        final Map<Key, DataCompound> pending = PENDING.get();
+        if (pending.isEmpty()) return;
+
+        final Iterator<Map.Entry<Key, DataCompound>> iterator = pending.entrySet().iterator();
+        List<Map.Entry<Key, DataCompound>> flushed = null;
+
+        while (iterator.hasNext()) {
+            final Map.Entry<Key, DataCompound> entry = iterator.next();
+            if (entry.getKey().stack != stack) continue;
+
+            if (flushed == null) flushed = new ArrayList<>(1);
+            flushed.add(entry);
+            iterator.remove();
+        }
+
+        if (flushed == null) return;
+
+        for (Map.Entry<Key, DataCompound> entry : flushed) {
+            DataClient.write(entry.getKey().stack, entry.getKey().specification, entry.getValue());
+        }
+    }
+
+    static void flushAll() {
+        final Map<Key, DataCompound> pending = PENDING.get();
+        if (pending.isEmpty()) return;
+
+        // Copy first, event listeners might defer new writes while flushing
+        final List<Map.Entry<Key, DataCompound>> flushed = new ArrayList<>(pending.entrySet());
+        pending.clear();
+
+        for (Map.Entry<Key, DataCompound> entry : flushed) {
+            DataClient.write(entry.getKey().stack, entry.getKey().specification, entry.getValue());
+        }
+    }
+
+    private record Key(@NotNull ItemStack stack, @NotNull Specification specification) {
+    }
+}
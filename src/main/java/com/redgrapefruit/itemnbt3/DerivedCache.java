@@ -0,0 +1,70 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.DerivedProperty;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.ItemStackMixinAccess;
+import net.minecraft.item.ItemStack;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A {@link DerivedCache} keeps the memoized {@link DerivedProperty} values of a stack's data between uses, so that they
+ * aren't recomputed for every fresh {@link DataCompound}.
+ * <br><br>
+ * The cache is only valid for the write count of the stack it was stored at. Writes through the {@link DataClient},
+ * replacing the NBT or a sub-compound and requesting the compound of a {@link Specification} by its key all change the
+ * count, so those modifications discard the values. Reading the NBT through {@link ItemStack#getNbt()} keeps them, and
+ * so does modifying it through the root compound, which the cache can't detect. A cache is never modified, every
+ * write-back stores a new one.
+ */
+@ApiStatus.Internal
+public final class DerivedCache {
+    private final int writeCount;
+    private final @NotNull Map<Specification, Map<DerivedProperty<?>, Object>> values;
+
+    private DerivedCache(int writeCount, @NotNull Map<Specification, Map<DerivedProperty<?>, Object>> values) {
+        this.writeCount = writeCount;
+        this.values = values;
+    }
+
+    /**
+     * Adds the values memoized for the stack's current data to a freshly read compound.
+     */
+    static void seed(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound) {
+        final ItemStackMixinAccess access = (ItemStackMixinAccess) (Object) stack;
+        final DerivedCache cache = access.getDerivedCache();
+        if (cache == null || cache.writeCount != access.getWriteCount()) return;
+
+        final Map<DerivedProperty<?>, Object> values = cache.values.get(specification);
+        if (values != null) compound.seedDerived(values);
+    }
+
+    /**
+     * Stores the values of a compound that has just been written back.
+     *
+     * @param previousWriteCount The write count of the stack before the write-back, up to which the values of other
+     *                           {@link Specification}s stay valid.
+     */
+    static void store(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull DataCompound compound, int previousWriteCount) {
+        final ItemStackMixinAccess access = (ItemStackMixinAccess) (Object) stack;
+        final DerivedCache previous = access.getDerivedCache();
+        final Map<DerivedProperty<?>, Object> stable = compound.copyStableDerived(specification::isStableDerived);
+
+        if (stable == null && previous == null) return;
+
+        final Map<Specification, Map<DerivedProperty<?>, Object>> values = new IdentityHashMap<>(2);
+        if (previous != null && previous.writeCount == previousWriteCount) values.putAll(previous.values);
+
+        if (stable == null) {
+            values.remove(specification);
+        } else {
+            values.put(specification, stable);
+        }
+
+        access.setDerivedCache(values.isEmpty() ? null : new DerivedCache(access.getWriteCount(), values));
+    }
+}
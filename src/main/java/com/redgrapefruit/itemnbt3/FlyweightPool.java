@@ -0,0 +1,174 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.NbtCompoundMixinAccess;
+import com.redgrapefruit.itemnbt3.util.NbtSizes;
+import com.redgrapefruit.itemnbt3.util.SpecificationSet;
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link FlyweightPool} lets stacks with identical specification-managed data share one immutable {@link NbtCompound}.
+ * <br><br>
+ * Shared compounds are interned by content. They stay in place when the stack's NBT is read through
+ * {@link ItemStack#getNbt()}, which vanilla does for comparisons, tooltips and networking, so sharing survives normal play.
+ * When a shared compound is requested by its key through {@link ItemStack#getSubNbt(String)} or
+ * {@link ItemStack#getOrCreateSubNbt(String)}, the stack replaces it with a private deep copy first, so that the caller
+ * can modify it, including nested lists and arrays. {@link DataClient} does the same before writing, and decodes arrays
+ * into copies, so modifying a decoded array never reaches a shared compound.
+ * <br><br>
+ * Shared compounds throw an {@link UnsupportedOperationException} when modified. Code can only run into that by
+ * modifying the data of a specification through the root compound from {@link ItemStack#getNbt()}, or by holding on to
+ * a compound from before it became shared.
+ * <br><br>
+ * Compounds are interned weakly, so unused shared instances are garbage-collected like any other data.
+ */
+public final class FlyweightPool {
+    private static final @NotNull Interner<NbtCompound> POOL = Interners.newWeakInterner();
+    private static final @NotNull SpecificationSet enabled = new SpecificationSet();
+
+    private static final @NotNull AtomicLong deduplicated = new AtomicLong();
+    private static final @NotNull AtomicLong savedBytes = new AtomicLong();
+
+    private FlyweightPool() {
+        throw new RuntimeException("FlyweightPool is not meant to be instantiated");
+    }
+
+    /**
+     * Makes {@link DataClient} share the data of the given {@link Specification} automatically after every write.
+     * <br><br>
+     * Every write then costs a hash of the written compound, so this is meant for data that is often identical,
+     * like the default data of freshly crafted items.
+     *
+     * @param specification The {@link Specification} to enable sharing for.
+     */
+    public static void enable(@NotNull Specification specification) {
+        Objects.requireNonNull(specification);
+
+        enabled.add(specification);
+    }
+
+    public static boolean isEnabled(@NotNull Specification specification) {
+        return enabled.contains(specification);
+    }
+
+    /**
+     * Replaces the stack's data of the given {@link Specification} with a shared instance, if there is one with the same content.
+     * Otherwise, the stack's data becomes the shared instance for later stacks.
+     *
+     * @param stack The {@link ItemStack} with the data.
+     * @param specification The {@link Specification} of the data.
+     */
+    public static void share(@NotNull ItemStack stack, @NotNull Specification specification) {
+        Objects.requireNonNull(stack);
+        Objects.requireNonNull(specification);
+
+        final NbtCompound subNbt = Utilities.peekSubNbt(stack, specification.getId());
+        if (subNbt == null || ((NbtCompoundMixinAccess) subNbt).isShared()) return;
+
+        final NbtCompound canonical = POOL.intern(subNbt);
+
+        if (canonical == subNbt) {
+            markShared(subNbt);
+        } else {
+            stack.setSubNbt(specification.getId(), canonical);
+            deduplicated.incrementAndGet();
+            savedBytes.addAndGet(NbtSizes.estimate(subNbt));
+        }
+    }
+
+    /**
+     * @return Whether the stack's data of the given {@link Specification} is currently shared.
+     */
+    public static boolean isShared(@NotNull ItemStack stack, @NotNull Specification specification) {
+        Objects.requireNonNull(stack);
+        Objects.requireNonNull(specification);
+
+        final NbtCompound subNbt = Utilities.peekSubNbt(stack, specification.getId());
+
+        return subNbt != null && ((NbtCompoundMixinAccess) subNbt).isShared();
+    }
+
+    /**
+     * Gives the stack a private copy of its data if the data is currently shared. Called by {@link DataClient} before
+     * every write.
+     *
+     * @return The writable data of the stack.
+     */
+    static @NotNull NbtCompound getWritable(@NotNull ItemStack stack, @NotNull Specification specification) {
+        final NbtCompound subNbt = Utilities.peekSubNbt(stack, specification.getId());
+        if (subNbt == null) return stack.getOrCreateSubNbt(specification.getId());
+        if (!((NbtCompoundMixinAccess) subNbt).isShared()) return subNbt;
+
+        final NbtCompound copy = copyShared(subNbt);
+        stack.setSubNbt(specification.getId(), copy);
+
+        return copy;
+    }
+
+    /**
+     * Makes a private copy of a shared compound for a stack that hands it out.
+     */
+    @ApiStatus.Internal
+    public static @NotNull NbtCompound copyShared(@NotNull NbtCompound shared) {
+        final NbtCompound copy = shared.copy();
+        savedBytes.addAndGet(-NbtSizes.estimate(copy));
+
+        return copy;
+    }
+
+    /**
+     * Shares the stack's data after a write if sharing is enabled for the {@link Specification}.
+     */
+    static void afterWrite(@NotNull ItemStack stack, @NotNull Specification specification) {
+        if (isEnabled(specification)) share(stack, specification);
+    }
+
+    /**
+     * @return The amount of compounds that have been replaced by a shared instance.
+     */
+    public static long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    /**
+     * @return The estimated amount of heap saved by sharing, minus the copies made for writing since.
+     */
+    public static long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    private static void markShared(@NotNull NbtCompound nbt) {
+        ((NbtCompoundMixinAccess) nbt).markShared();
+
+        for (String key : nbt.getKeys()) {
+            final NbtElement element = nbt.get(key);
+
+            if (element instanceof NbtCompound compound) {
+                markShared(compound);
+            } else if (element instanceof NbtList list) {
+                markShared(list);
+            }
+        }
+    }
+
+    private static void markShared(@NotNull NbtList list) {
+        for (NbtElement element : list) {
+            if (element instanceof NbtCompound compound) {
+                markShared(compound);
+            } else if (element instanceof NbtList nested) {
+                markShared(nested);
+            }
+        }
+    }
+}
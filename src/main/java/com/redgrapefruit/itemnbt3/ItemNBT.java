@@ -0,0 +1,26 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.redgrapefruit.itemnbt3.tools.FootprintCommand;
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Registers the library's server-side hooks.
+ */
+@ApiStatus.Internal
+public final class ItemNBT implements ModInitializer {
+    @Override
+    public void onInitialize() {
+        // Write back the data deferred during the tick
+        ServerTickEvents.END_SERVER_TICK.register(server -> DataClient.flushAll());
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> DataClient.flushAll());
+
+        // Diagnostics
+        CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> FootprintCommand.register(dispatcher));
+        ServerTickEvents.END_SERVER_TICK.register(FootprintCommand::tick);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> FootprintCommand.cancel());
+    }
+}
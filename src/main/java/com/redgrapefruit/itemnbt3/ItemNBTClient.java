@@ -0,0 +1,20 @@
+package com.redgrapefruit.itemnbt3;
+
+import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Registers the library's client-side hooks.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class ItemNBTClient implements ClientModInitializer {
+    @Override
+    public void onInitializeClient() {
+        // Write back the data deferred on the client thread during the tick
+        ClientTickEvents.END_CLIENT_TICK.register(client -> DataClient.flushAll());
+    }
+}
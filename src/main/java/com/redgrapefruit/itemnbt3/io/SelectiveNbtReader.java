@@ -0,0 +1,296 @@
+package com.redgrapefruit.itemnbt3.io;
+
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtTagSizeTracker;
+import net.minecraft.nbt.NbtTypes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A {@link SelectiveNbtReader} reads binary NBT (the format of <code>.dat</code> files and region chunks) from a
+ * {@link DataInput}, decoding only the tags a {@link Specification} actually reads.
+ * <br><br>
+ * Keys are compared as raw bytes against a table compiled from the {@link Specification}, and all other tags are
+ * skipped by their length without being allocated. Only the wanted tags are decoded, into a small {@link NbtCompound}
+ * that is then read with {@link Specification#readNbt(NbtCompound, DataCompound)} as usual.
+ * The compounds of versioned and polymorphic {@link Specification}s are decoded completely, since old data may need
+ * to be migrated and the stored variant is only known while reading.
+ * <br><br>
+ * Instances reuse an internal key buffer, so they must not be shared between threads.
+ */
+public final class SelectiveNbtReader {
+    // Same limit as vanilla NBT reading
+    private static final int MAX_DEPTH = 512;
+
+    private final @NotNull Specification specification;
+    private final @NotNull Plan plan;
+    private final @NotNull byte[] idBytes;
+    private byte[] keyBuffer = new byte[64];
+    private int keyLength = 0;
+
+    public SelectiveNbtReader(@NotNull Specification specification) {
+        Objects.requireNonNull(specification);
+
+        this.specification = specification;
+        this.plan = new Plan(specification);
+        this.idBytes = encodeKey(specification.getId());
+    }
+
+    /**
+     * Reads a named root compound, like the contents of a <code>.dat</code> file, as the compound of the {@link Specification}.
+     *
+     * @param input The binary NBT, positioned at the type of the root tag.
+     * @return The read {@link DataCompound}.
+     * @throws IOException If the input can't be read or the root tag isn't a compound.
+     */
+    public @NotNull DataCompound read(@NotNull DataInput input) throws IOException {
+        Objects.requireNonNull(input);
+
+        if (input.readByte() != NbtElement.COMPOUND_TYPE) throw new IOException("Root tag is not a compound");
+        skip(input, NbtElement.STRING_TYPE, 0);
+
+        return readPayload(input);
+    }
+
+    /**
+     * Reads the payload of a compound tag as the compound of the {@link Specification}.
+     *
+     * @param input The binary NBT, positioned right after the type and name of the compound.
+     * @return The read {@link DataCompound}.
+     * @throws IOException If the input can't be read.
+     */
+    public @NotNull DataCompound readPayload(@NotNull DataInput input) throws IOException {
+        Objects.requireNonNull(input);
+
+        final DataCompound compound = new DataCompound();
+        specification.readNbt(readFiltered(input, plan, 0), compound);
+
+        return compound;
+    }
+
+    /**
+     * Walks through a whole named root tag and reads every compound stored under the {@link Specification}'s identifier,
+     * for example the data of every item stack in a player's inventory.
+     *
+     * @param input The binary NBT, positioned at the type of the root tag.
+     * @param sink Receives every read {@link DataCompound} in the order it appears in the input.
+     * @return The amount of compounds passed to the sink.
+     * @throws IOException If the input can't be read.
+     */
+    public int scan(@NotNull DataInput input, @NotNull Consumer<DataCompound> sink) throws IOException {
+        Objects.requireNonNull(input);
+        Objects.requireNonNull(sink);
+
+        final byte type = input.readByte();
+        if (type == NbtElement.END_TYPE) return 0;
+        skip(input, NbtElement.STRING_TYPE, 0);
+
+        return walk(input, type, sink, 0);
+    }
+
+    private int walk(@NotNull DataInput input, byte type, @NotNull Consumer<DataCompound> sink, int depth) throws IOException {
+        if (depth > MAX_DEPTH) throw new IOException("NBT is nested deeper than " + MAX_DEPTH + " levels");
+
+        int found = 0;
+
+        if (type == NbtElement.COMPOUND_TYPE) {
+            byte entryType;
+            while ((entryType = input.readByte()) != NbtElement.END_TYPE) {
+                readKey(input);
+
+                if (entryType == NbtElement.COMPOUND_TYPE && keyEquals(idBytes)) {
+                    sink.accept(readPayload(input));
+                    ++found;
+                } else {
+                    found += walk(input, entryType, sink, depth + 1);
+                }
+            }
+        } else if (type == NbtElement.LIST_TYPE) {
+            final byte elementType = input.readByte();
+            final int size = input.readInt();
+
+            if (elementType == NbtElement.COMPOUND_TYPE || elementType == NbtElement.LIST_TYPE) {
+                for (int i = 0; i < size; i++) {
+                    found += walk(input, elementType, sink, depth + 1);
+                }
+            } else {
+                skipElements(input, elementType, size, depth);
+            }
+        } else {
+            skip(input, type, depth);
+        }
+
+        return found;
+    }
+
+    private @NotNull NbtCompound readFiltered(@NotNull DataInput input, @NotNull Plan plan, int depth) throws IOException {
+        if (depth > MAX_DEPTH) throw new IOException("NBT is nested deeper than " + MAX_DEPTH + " levels");
+
+        // Migrators may need keys the current version doesn't have
+        if (plan.complete) return (NbtCompound) NbtTypes.byId(NbtElement.COMPOUND_TYPE).read(input, depth, NbtTagSizeTracker.EMPTY);
+
+        final NbtCompound nbt = new NbtCompound();
+
+        byte type;
+        while ((type = input.readByte()) != NbtElement.END_TYPE) {
+            readKey(input);
+
+            final int index = plan.indexOf(this);
+
+            if (index == -1) {
+                skip(input, type, depth + 1);
+            } else if (plan.children[index] != null) {
+                if (type == NbtElement.COMPOUND_TYPE) {
+                    nbt.put(plan.keys[index], readFiltered(input, plan.children[index], depth + 1));
+                } else {
+                    skip(input, type, depth + 1);
+                }
+            } else {
+                nbt.put(plan.keys[index], NbtTypes.byId(type).read(input, depth + 1, NbtTagSizeTracker.EMPTY));
+            }
+        }
+
+        return nbt;
+    }
+
+    private void readKey(@NotNull DataInput input) throws IOException {
+        keyLength = input.readUnsignedShort();
+        if (keyLength > keyBuffer.length) keyBuffer = new byte[Math.max(keyLength, keyBuffer.length * 2)];
+
+        input.readFully(keyBuffer, 0, keyLength);
+    }
+
+    private boolean keyEquals(@NotNull byte[] key) {
+        return key.length == keyLength && Arrays.equals(keyBuffer, 0, keyLength, key, 0, keyLength);
+    }
+
+    private static void skip(@NotNull DataInput input, byte type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) throw new IOException("NBT is nested deeper than " + MAX_DEPTH + " levels");
+
+        switch (type) {
+            case NbtElement.BYTE_TYPE -> skipFully(input, 1);
+            case NbtElement.SHORT_TYPE -> skipFully(input, 2);
+            case NbtElement.INT_TYPE, NbtElement.FLOAT_TYPE -> skipFully(input, 4);
+            case NbtElement.LONG_TYPE, NbtElement.DOUBLE_TYPE -> skipFully(input, 8);
+            case NbtElement.BYTE_ARRAY_TYPE -> skipFully(input, (long) input.readInt());
+            case NbtElement.STRING_TYPE -> skipFully(input, input.readUnsignedShort());
+            case NbtElement.INT_ARRAY_TYPE -> skipFully(input, input.readInt() * 4L);
+            case NbtElement.LONG_ARRAY_TYPE -> skipFully(input, input.readInt() * 8L);
+            case NbtElement.LIST_TYPE -> {
+                final byte elementType = input.readByte();
+                skipElements(input, elementType, input.readInt(), depth);
+            }
+            case NbtElement.COMPOUND_TYPE -> {
+                byte entryType;
+                while ((entryType = input.readByte()) != NbtElement.END_TYPE) {
+                    skipFully(input, input.readUnsignedShort());
+                    skip(input, entryType, depth + 1);
+                }
+            }
+            default -> throw new IOException("Unknown NBT type " + type);
+        }
+    }
+
+    private static void skipElements(@NotNull DataInput input, byte type, int size, int depth) throws IOException {
+        if (size <= 0 || type == NbtElement.END_TYPE) return;
+
+        // Fixed-size elements are skipped in one go
+        final int width = switch (type) {
+            case NbtElement.BYTE_TYPE -> 1;
+            case NbtElement.SHORT_TYPE -> 2;
+            case NbtElement.INT_TYPE, NbtElement.FLOAT_TYPE -> 4;
+            case NbtElement.LONG_TYPE, NbtElement.DOUBLE_TYPE -> 8;
+            default -> 0;
+        };
+
+        if (width != 0) {
+            skipFully(input, (long) size * width);
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            skip(input, type, depth + 1);
+        }
+    }
+
+    private static void skipFully(@NotNull DataInput input, long count) throws IOException {
+        if (count < 0) throw new IOException("Negative NBT length");
+
+        while (count > 0) {
+            final int skipped = input.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+
+            if (skipped <= 0) {
+                // skipBytes may give up early, reading a byte either makes progress or throws at the end of the input
+                input.readByte();
+                --count;
+            } else {
+                count -= skipped;
+            }
+        }
+    }
+
+    /**
+     * @return The key in the modified UTF-8 of {@link DataInput#readUTF()}, without the length prefix.
+     */
+    private static @NotNull byte[] encodeKey(@NotNull String key) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(key.length() + 2);
+
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeUTF(key);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Key " + key + " can't be encoded", e);
+        }
+
+        return Arrays.copyOfRange(bytes.toByteArray(), 2, bytes.size());
+    }
+
+    /**
+     * The keys a {@link Specification} reads, compiled for byte comparison.
+     */
+    private static final class Plan {
+        private final @NotNull String[] keys;
+        private final @NotNull byte[][] keyBytes;
+        private final @Nullable Plan[] children;
+        private final boolean complete;
+
+        private Plan(@NotNull Specification specification) {
+            complete = specification.getVersion() > 0 || specification.isPolymorphic();
+
+            final String[] stored = specification.getStoredKeys();
+            final String[] nested = specification.getNestedKeys();
+
+            keys = Arrays.copyOf(stored, stored.length + nested.length);
+            System.arraycopy(nested, 0, keys, stored.length, nested.length);
+
+            keyBytes = new byte[keys.length][];
+            children = new Plan[keys.length];
+
+            for (int i = 0; i < keys.length; i++) {
+                keyBytes[i] = encodeKey(keys[i]);
+
+                if (i >= stored.length) {
+                    children[i] = new Plan(Objects.requireNonNull(specification.getNested(keys[i])));
+                }
+            }
+        }
+
+        private int indexOf(@NotNull SelectiveNbtReader reader) {
+            for (int i = 0; i < keyBytes.length; i++) {
+                if (reader.keyEquals(keyBytes[i])) return i;
+            }
+
+            return -1;
+        }
+    }
+}
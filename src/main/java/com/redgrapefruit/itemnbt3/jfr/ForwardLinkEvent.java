@@ -0,0 +1,60 @@
+package com.redgrapefruit.itemnbt3.jfr;
+
+import com.redgrapefruit.itemnbt3.linking.DataLink;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Recorded for every {@link DataLink#forwardLink} that takes longer than the threshold.
+ * Composite fields record their own events.
+ */
+@ApiStatus.Internal
+@Category("ItemNBT")
+@Name("itemnbt.ForwardLink")
+@Label("Forward Link")
+@Threshold("500 us")
+@StackTrace(false)
+public final class ForwardLinkEvent extends Event {
+    @Label("Linked Class")
+    Class<?> linkedClass;
+
+    @Label("Field Count")
+    int fieldCount;
+
+    private static final EventType TYPE = EventType.getEventType(ForwardLinkEvent.class);
+
+    /**
+     * @return A begun event, or <code>null</code> while the event isn't recorded, which saves the allocation on the hot path.
+     */
+    public static @Nullable ForwardLinkEvent start() {
+        if (!TYPE.isEnabled()) return null;
+
+        final ForwardLinkEvent event = new ForwardLinkEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     *
+     * @param instance The linked object.
+     * @param fieldCount The amount of regular and composite fields of the {@link DataLink}.
+     */
+    public void complete(@NotNull Object instance, int fieldCount) {
+        end();
+        if (!shouldCommit()) return;
+
+        this.linkedClass = instance.getClass();
+        this.fieldCount = fieldCount;
+
+        commit();
+    }
+}
@@ -0,0 +1,48 @@
+package com.redgrapefruit.itemnbt3.jfr;
+
+import com.redgrapefruit.itemnbt3.linking.DataLink;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Recorded for every reflective generation of a {@link Specification} or a {@link DataLink}.
+ * <br>
+ * Generation is expected to happen once per class during startup, so there is no threshold by default.
+ */
+@ApiStatus.Internal
+@Category("ItemNBT")
+@Name("itemnbt.Generation")
+@Label("Reflective Generation")
+public final class GenerationEvent extends Event {
+    @Label("Generated Class")
+    Class<?> generatedClass;
+
+    @Label("Kind")
+    String kind;
+
+    @Label("Field Count")
+    int fieldCount;
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     *
+     * @param clazz The class the {@link Specification} or {@link DataLink} was generated for.
+     * @param kind The generated type, <code>Specification</code> or <code>DataLink</code>.
+     * @param fieldCount The amount of fields of the generated object.
+     */
+    public void complete(@NotNull Class<?> clazz, @NotNull String kind, int fieldCount) {
+        end();
+        if (!shouldCommit()) return;
+
+        this.generatedClass = clazz;
+        this.kind = kind;
+        this.fieldCount = fieldCount;
+
+        commit();
+    }
+}
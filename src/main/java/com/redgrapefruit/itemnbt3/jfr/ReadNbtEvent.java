@@ -0,0 +1,34 @@
+package com.redgrapefruit.itemnbt3.jfr;
+
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Recorded for every {@link Specification#readNbt} that takes longer than the threshold.
+ * Nested {@link Specification}s record their own events.
+ */
+@ApiStatus.Internal
+@Name("itemnbt.ReadNbt")
+@Label("NBT Read")
+@Threshold("500 us")
+@StackTrace(false)
+public final class ReadNbtEvent extends SpecificationEvent {
+    private static final EventType TYPE = EventType.getEventType(ReadNbtEvent.class);
+
+    /**
+     * @return A begun event, or <code>null</code> while the event isn't recorded, which saves the allocation on the hot path.
+     */
+    public static @Nullable ReadNbtEvent start() {
+        if (!TYPE.isEnabled()) return null;
+
+        final ReadNbtEvent event = new ReadNbtEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,52 @@
+package com.redgrapefruit.itemnbt3.jfr;
+
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.NbtSizes;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The common fields of all JFR events about the data of a {@link Specification}.
+ * <br><br>
+ * The fields are only filled in once the event is known to be committed. The events of the hot paths aren't even
+ * allocated while they are disabled, see their <code>start</code> methods.
+ */
+@Category("ItemNBT")
+abstract class SpecificationEvent extends Event {
+    @Label("Specification")
+    String specification;
+
+    @Label("Field Count")
+    int fieldCount;
+
+    @Label("Size")
+    @Description("Estimated heap footprint of the NBT")
+    @DataAmount
+    long size;
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     *
+     * @param spec The {@link Specification} of the data.
+     * @param nbt The NBT of the data, or <code>null</code> if it has been removed.
+     */
+    public void complete(@NotNull Specification spec, @Nullable NbtCompound nbt) {
+        end();
+        if (!shouldCommit()) return;
+
+        fill(spec, nbt);
+        commit();
+    }
+
+    void fill(@NotNull Specification spec, @Nullable NbtCompound nbt) {
+        specification = spec.getId();
+        fieldCount = spec.getFieldCount();
+        size = nbt == null ? 0L : NbtSizes.estimate(nbt);
+    }
+}
@@ -0,0 +1,55 @@
+package com.redgrapefruit.itemnbt3.jfr;
+
+import com.redgrapefruit.itemnbt3.DataClient;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.registry.Registry;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Recorded for every specification-based {@link DataClient} use that takes longer than the threshold,
+ * including reading, the action and writing back.
+ */
+@ApiStatus.Internal
+@Name("itemnbt.Use")
+@Label("Data Use")
+@Threshold("1 ms")
+public final class UseEvent extends SpecificationEvent {
+    @Label("Item")
+    String item;
+
+    private static final EventType TYPE = EventType.getEventType(UseEvent.class);
+
+    /**
+     * @return A begun event, or <code>null</code> while the event isn't recorded, which saves the allocation on the hot path.
+     */
+    public static @Nullable UseEvent start() {
+        if (!TYPE.isEnabled()) return null;
+
+        final UseEvent event = new UseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if it is enabled and over its threshold.
+     *
+     * @param stack The used {@link ItemStack}.
+     * @param spec The {@link Specification} of the data.
+     */
+    public void complete(@NotNull ItemStack stack, @NotNull Specification spec) {
+        end();
+        if (!shouldCommit()) return;
+
+        item = Registry.ITEM.getId(stack.getItem()).toString();
+        fill(spec, Utilities.peekSubNbt(stack, spec.getId()));
+        commit();
+    }
+}
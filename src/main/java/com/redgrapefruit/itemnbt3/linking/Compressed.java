@@ -0,0 +1,19 @@
+package com.redgrapefruit.itemnbt3.linking;
+
+import com.redgrapefruit.itemnbt3.serializer.Compression;
+import com.redgrapefruit.itemnbt3.serializer.SerializerRegistry;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Selects a compressed serializer (registered in {@link SerializerRegistry}) for an array field.<br>
+ * Can be used together with {@link Field} or in an {@link Auto} class.
+ */
+@Target({ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Compressed {
+    Compression value();
+}
@@ -1,28 +1,74 @@
 package com.redgrapefruit.itemnbt3.linking;
 
+import com.redgrapefruit.itemnbt3.jfr.BackwardLinkEvent;
+import com.redgrapefruit.itemnbt3.jfr.ForwardLinkEvent;
+import com.redgrapefruit.itemnbt3.jfr.GenerationEvent;
 import com.redgrapefruit.itemnbt3.serializer.SerializerRegistry;
 import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.Utilities;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.function.Supplier;
 
 /**
  * A {@link DataLink} ports your serialized data from a {@link DataCompound} to a Java POJO.
+ * <br><br>
+ * Records and classes with a {@link LinkedConstructor} are <b>immutable</b>: instead of setting their fields,
+ * {@link #construct(DataCompound)} creates a new instance through a cached constructor handle, and
+ * {@link #backwardLink(DataCompound, Object)} reads the fields through cached accessor handles.
+ * Immutable instances can be shared between threads without copying.
+ * <br><br>
+ * Interfaces and base classes with {@link Variants}, and sealed types whose implementations have a {@link VariantOrdinal},
+ * are <b>polymorphic</b>: the ordinal of the instance's class is stored under {@link Specification#TYPE_KEY}, and linking
+ * is dispatched to the {@link DataLink} of that class. Polymorphic composites are constructed instead of modified, since the stored class can change.
  */
 public final class DataLink {
     private final @NotNull Map<String, Field> fields = new HashMap<>();
     private final @NotNull Map<String, Field> composites = new HashMap<>();
 
+    // Array copies of the maps, iterated on the hot paths without iterators or capturing lambdas
+    private @NotNull String[] fieldKeys = new String[0];
+    private @NotNull Field[] fieldValues = new Field[0];
+    private @NotNull String[] compositeKeys = new String[0];
+    private @NotNull Field[] compositeValues = new Field[0];
+
+    // The class this link was generated for, null for manually built links
+    private @Nullable Class<?> type = null;
+
+    // Only set for immutable classes. The constructor takes an Object[] with one argument per parameter key,
+    // parameter types are null for regular fields and the composite class otherwise
+    private @Nullable MethodHandle constructor = null;
+    private @NotNull String[] parameterKeys = new String[0];
+    private @NotNull Class<?>[] parameterTypes = new Class<?>[0];
+    private @NotNull MethodHandle[] accessors = new MethodHandle[0];
+
+    // Only set for polymorphic types, the dispatch table indexed by the stored ordinal
+    private @NotNull Class<?>[] variantTypes = new Class<?>[0];
+    private @NotNull DataLink[] variantLinks = new DataLink[0];
+
     private static final @NotNull Logger LOGGER = LogManager.getLogger();
+
+    private static final @NotNull ClassValue<Constructor<?>> FIRST_CONSTRUCTORS = new ClassValue<>() {
+        @Override
+        protected Constructor<?> computeValue(@NotNull Class<?> clazz) {
+            return clazz.getDeclaredConstructors()[0];
+        }
+    };
+
     /**
      * Adds a regular field to the link.
      *
@@ -33,7 +79,12 @@ public final class DataLink {
         Objects.requireNonNull(address);
         Objects.requireNonNull(field);
 
-        fields.put(address, field);
+        if (fields.put(address, field) == null) {
+            fieldKeys = Utilities.append(fieldKeys, address);
+            fieldValues = Utilities.append(fieldValues, field);
+        } else {
+            fieldValues[indexOf(fieldKeys, address)] = field;
+        }
     }
 
     /**
@@ -46,7 +97,12 @@ public final class DataLink {
         Objects.requireNonNull(address);
         Objects.requireNonNull(field);
 
-        composites.put(address, field);
+        if (composites.put(address, field) == null) {
+            compositeKeys = Utilities.append(compositeKeys, address);
+            compositeValues = Utilities.append(compositeValues, field);
+        } else {
+            compositeValues[indexOf(compositeKeys, address)] = field;
+        }
     }
 
     /**
@@ -56,42 +112,50 @@ public final class DataLink {
      * @param instance The POJO instance.
      */
     public void forwardLink(@NotNull DataCompound data, @NotNull Object instance) {
-        fields.forEach((key, field) -> {
-            try {
-                field.set(instance, data.get(key));
-            } catch (IllegalAccessException e) {
-                LOGGER.error("Could not forward-link field " + field.getName() + ". Illegal access, make it public");
-            }
-        });
+        if (constructor != null) {
+            throw new UnsupportedOperationException("Instances of " + instance.getClass().getSimpleName() + " are immutable, construct them instead");
+        }
 
-        composites.forEach((key, field) -> {
-            final Class<?> otherClazz = field.getType();
+        if (isPolymorphic()) {
+            final int ordinal = getVariantOrdinal(data);
 
-            if (DataLinkLookup.lacks(otherClazz)) {
-                LOGGER.error("Trying to lookup non-existing DataLink for field " + field.getName() + " of type " + otherClazz.getSimpleName());
+            if (variantTypes[ordinal] != instance.getClass()) {
+                throw new IllegalArgumentException("Data holds a " + variantTypes[ordinal].getSimpleName() + ", not a " + instance.getClass().getSimpleName() + ", construct it instead");
             }
 
-            final DataLink otherLink = DataLinkLookup.get(otherClazz);
-            final DataCompound otherCompound = data.getOrCreateCompound(key);
-            Object otherInstance = null;
+            variantLinks[ordinal].forwardLink(data, instance);
+            return;
+        }
+
+        final ForwardLinkEvent event = ForwardLinkEvent.start();
+
+        for (int i = 0; i < fieldKeys.length; i++) {
+            final Field field = fieldValues[i];
 
             try {
-                otherInstance = field.get(instance);
+                setField(field, instance, data, fieldKeys[i]);
             } catch (IllegalAccessException e) {
-                LOGGER.error("Could not forward-link composite field " + field.getName() + ". Illegal access, make it public!");
+                LOGGER.error("Could not forward-link field " + field.getName() + ". Illegal access, make it public");
             }
+        }
 
-            otherInstance = fallbackField(otherInstance, otherClazz);
-            Objects.requireNonNull(otherInstance);
-
-            otherLink.forwardLink(otherCompound, otherInstance);
+        for (int i = 0; i < compositeKeys.length; i++) {
+            final Field field = compositeValues[i];
+            final DataLink link = lookup(field);
 
-            try {
-                field.set(instance, otherInstance);
-            } catch (IllegalAccessException e) {
-                LOGGER.error("Could not forward-link composite field " + field.getName() + ". Illegal access, make it public!");
+            // Immutable and polymorphic composites are replaced instead of modified
+            if (link.isImmutable() || link.isPolymorphic()) {
+                setComposite(field, instance, link.construct(data.getOrCreateCompound(compositeKeys[i])));
+                continue;
             }
-        });
+
+            final Object otherInstance = getComposite(field, instance);
+
+            link.forwardLink(data.getOrCreateCompound(compositeKeys[i]), otherInstance);
+            setComposite(field, instance, otherInstance);
+        }
+
+        if (event != null) event.complete(instance, fieldKeys.length + compositeKeys.length);
     }
 
     /**
@@ -101,52 +165,224 @@ public final class DataLink {
      * @param instance The POJO instance.
      */
     public void backwardLink(@NotNull DataCompound data, @NotNull Object instance) {
-        fields.forEach((key, field) -> {
-            Object value = null;
+        if (isPolymorphic()) {
+            final int ordinal = getVariantOrdinal(instance.getClass());
+
+            data.put(Specification.TYPE_KEY, ordinal);
+            variantLinks[ordinal].backwardLink(data, instance);
+            return;
+        }
+
+        final BackwardLinkEvent event = BackwardLinkEvent.start();
+
+        if (constructor != null) {
+            backwardLinkImmutable(data, instance);
+            if (event != null) event.complete(instance, parameterKeys.length);
+            return;
+        }
+
+        for (int i = 0; i < fieldKeys.length; i++) {
+            final Field field = fieldValues[i];
 
             try {
-                value = field.get(instance);
+                getField(field, instance, data, fieldKeys[i]);
             } catch (IllegalAccessException e) {
                 LOGGER.error("Could not backward-link field " + field.getName() + ". Illegal access, make it public");
+                throw new NullPointerException("Field " + field.getName() + " could not be read");
             }
+        }
 
-            Objects.requireNonNull(value);
+        for (int i = 0; i < compositeKeys.length; i++) {
+            final Field field = compositeValues[i];
+            final Object otherInstance = getComposite(field, instance);
+
+            lookup(field).backwardLink(data.getOrCreateCompound(compositeKeys[i]), otherInstance);
+            setComposite(field, instance, otherInstance);
+        }
 
-            data.put(key, value);
-        });
+        if (event != null) event.complete(instance, fieldKeys.length + compositeKeys.length);
+    }
 
-        composites.forEach((key, field) -> {
-            final Class<?> otherClazz = field.getType();
+    /**
+     * Creates a new instance from the data in a {@link DataCompound}. Immutable classes are created through their
+     * constructor, other classes through their first declared constructor and {@link #forwardLink(DataCompound, Object)}.
+     *
+     * @param data The {@link DataCompound} with the original data.
+     * @return The new instance.
+     */
+    public @NotNull Object construct(@NotNull DataCompound data) {
+        Objects.requireNonNull(data);
 
-            if (DataLinkLookup.lacks(otherClazz)) {
-                LOGGER.error("Trying to lookup non-existing DataLink for field " + field.getName() + " of type " + otherClazz.getSimpleName());
-            }
+        if (isPolymorphic()) return variantLinks[getVariantOrdinal(data)].construct(data);
 
-            final DataLink otherLink = DataLinkLookup.get(otherClazz);
-            final DataCompound otherCompound = data.getOrCreateCompound(key);
-            Object otherInstance = null;
+        if (constructor == null) {
+            if (type == null) throw new IllegalStateException("Manually built DataLinks can't construct instances");
 
-            try {
-                otherInstance = field.get(instance);
-            } catch (IllegalAccessException e) {
-                LOGGER.error("Could not forward-link composite field " + field.getName() + ". Illegal access, make it public!");
+            final Object instance = fallbackField(null, type);
+            forwardLink(data, instance);
+            return instance;
+        }
+
+        final ForwardLinkEvent event = ForwardLinkEvent.start();
+
+        final Object[] arguments = new Object[parameterKeys.length];
+
+        for (int i = 0; i < parameterKeys.length; i++) {
+            if (parameterTypes[i] == null) {
+                arguments[i] = data.get(parameterKeys[i]);
+            } else {
+                arguments[i] = lookup(parameterTypes[i], parameterKeys[i]).construct(data.getOrCreateCompound(parameterKeys[i]));
             }
+        }
 
-            otherInstance = fallbackField(otherInstance, otherClazz);
-            Objects.requireNonNull(otherInstance);
+        final Object instance;
+        try {
+            instance = (Object) constructor.invokeExact(arguments);
+        } catch (Throwable e) {
+            throw new RuntimeException("Could not construct an instance of " + Objects.requireNonNull(type).getSimpleName(), e);
+        }
 
-            otherLink.backwardLink(otherCompound, otherInstance);
+        if (event != null) event.complete(instance, parameterKeys.length);
+        return instance;
+    }
 
+    /**
+     * @return Whether instances are created with {@link #construct(DataCompound)} instead of being forward-linked.
+     */
+    public boolean isImmutable() {
+        return constructor != null;
+    }
+
+    /**
+     * @return Whether linking is dispatched to the {@link DataLink}s of several implementations.
+     */
+    public boolean isPolymorphic() {
+        return variantLinks.length != 0;
+    }
+
+    private int getVariantOrdinal(@NotNull DataCompound data) {
+        final Integer ordinal = data.get(Specification.TYPE_KEY);
+
+        if (ordinal == null) return 0;
+        if (ordinal < 0 || ordinal >= variantLinks.length) {
+            throw new IllegalStateException("Unknown variant " + ordinal + " of " + Objects.requireNonNull(type).getSimpleName());
+        }
+
+        return ordinal;
+    }
+
+    private int getVariantOrdinal(@NotNull Class<?> clazz) {
+        for (int i = 0; i < variantTypes.length; i++) {
+            if (variantTypes[i] == clazz) return i;
+        }
+
+        // Subclasses of a variant are stored as that variant
+        for (int i = 0; i < variantTypes.length; i++) {
+            if (variantTypes[i].isAssignableFrom(clazz)) return i;
+        }
+
+        throw new IllegalArgumentException(clazz.getSimpleName() + " is not a variant of " + Objects.requireNonNull(type).getSimpleName());
+    }
+
+    private void backwardLinkImmutable(@NotNull DataCompound data, @NotNull Object instance) {
+        for (int i = 0; i < parameterKeys.length; i++) {
+            final Object value;
             try {
-                field.set(instance, otherInstance);
-            } catch (IllegalAccessException e) {
-                LOGGER.error("Could not forward-link composite field " + field.getName() + ". Illegal access, make it public!");
+                value = (Object) accessors[i].invokeExact(instance);
+            } catch (Throwable e) {
+                throw new RuntimeException("Could not backward-link field " + parameterKeys[i] + " of " + instance.getClass().getSimpleName(), e);
             }
-        });
+
+            Objects.requireNonNull(value);
+
+            if (parameterTypes[i] == null) {
+                data.put(parameterKeys[i], value);
+            } else {
+                lookup(parameterTypes[i], parameterKeys[i]).backwardLink(data.getOrCreateCompound(parameterKeys[i]), value);
+            }
+        }
+    }
+
+    /**
+     * Sets a field to the value of the key, through the primitive setters for primitive fields so that nothing is boxed.
+     */
+    private static void setField(@NotNull Field field, @NotNull Object instance, @NotNull DataCompound data, @NotNull String key) throws IllegalAccessException {
+        final Class<?> type = field.getType();
+
+        if (type == int.class) field.setInt(instance, data.getInt(key));
+        else if (type == long.class) field.setLong(instance, data.getLong(key));
+        else if (type == float.class) field.setFloat(instance, data.getFloat(key));
+        else if (type == double.class) field.setDouble(instance, data.getDouble(key));
+        else if (type == boolean.class) field.setBoolean(instance, data.getBool(key));
+        else if (type == short.class) field.setShort(instance, data.getShort(key));
+        else if (type == byte.class) field.setByte(instance, data.getByte(key));
+        else field.set(instance, data.get(key));
+    }
+
+    /**
+     * Puts the value of a field under the key, through the primitive getters for primitive fields so that nothing is boxed.
+     */
+    private static void getField(@NotNull Field field, @NotNull Object instance, @NotNull DataCompound data, @NotNull String key) throws IllegalAccessException {
+        final Class<?> type = field.getType();
+
+        if (type == int.class) data.putInt(key, field.getInt(instance));
+        else if (type == long.class) data.putLong(key, field.getLong(instance));
+        else if (type == float.class) data.putFloat(key, field.getFloat(instance));
+        else if (type == double.class) data.putDouble(key, field.getDouble(instance));
+        else if (type == boolean.class) data.putBool(key, field.getBoolean(instance));
+        else if (type == short.class) data.putShort(key, field.getShort(instance));
+        else if (type == byte.class) data.putByte(key, field.getByte(instance));
+        else data.put(key, Objects.requireNonNull(field.get(instance)));
+    }
+
+    private static @NotNull DataLink lookup(@NotNull Field field) {
+        return lookup(field.getType(), field.getName());
+    }
+
+    private static @NotNull DataLink lookup(@NotNull Class<?> otherClazz, @NotNull String name) {
+        if (DataLinkLookup.lacks(otherClazz)) {
+            LOGGER.error("Trying to lookup non-existing DataLink for field " + name + " of type " + otherClazz.getSimpleName());
+        }
+
+        return DataLinkLookup.get(otherClazz);
+    }
+
+    private static @NotNull Object getComposite(@NotNull Field field, @NotNull Object instance) {
+        Object otherInstance = null;
+
+        try {
+            otherInstance = field.get(instance);
+        } catch (IllegalAccessException e) {
+            LOGGER.error("Could not forward-link composite field " + field.getName() + ". Illegal access, make it public!");
+        }
+
+        otherInstance = fallbackField(otherInstance, field.getType());
+        Objects.requireNonNull(otherInstance);
+
+        return otherInstance;
+    }
+
+    private static void setComposite(@NotNull Field field, @NotNull Object instance, @NotNull Object otherInstance) {
+        try {
+            field.set(instance, otherInstance);
+        } catch (IllegalAccessException e) {
+            LOGGER.error("Could not forward-link composite field " + field.getName() + ". Illegal access, make it public!");
+        }
+    }
+
+    private static <T> int indexOf(@NotNull T[] keys, @NotNull T key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) return i;
+        }
+
+        return -1;
     }
 
     /**
      * Automatically generates a {@link DataLink} using Java Reflection and registers it in {@link DataLinkLookup}.
+     * <br><br>
+     * All components of a record are linked as if it had {@link Auto}. Records and classes with a {@link LinkedConstructor}
+     * become immutable, see {@link #construct(DataCompound)}.
      *
      * @param clazz The target POJO's class.
      * @return The generated {@link DataLink}.
@@ -154,22 +390,97 @@ public final class DataLink {
     public static @NotNull DataLink create(@NotNull Class<?> clazz) {
         Objects.requireNonNull(clazz);
 
-        if (clazz.isAnnotationPresent(Auto.class)) {
-            return createAutomatic(clazz);
+        final GenerationEvent event = new GenerationEvent();
+        event.begin();
+
+        final Class<?>[] variants = Utilities.getVariants(clazz);
+        final DataLink link;
+
+        if (variants != null) {
+            link = createPolymorphic(clazz, variants);
+            link.type = clazz;
         } else {
-            return createManual(clazz);
+            link = clazz.isRecord() || clazz.isAnnotationPresent(Auto.class) ? createAutomatic(clazz) : createManual(clazz);
+            link.type = clazz;
+            link.bindConstructor(clazz);
+        }
+
+        event.complete(clazz, "DataLink", link.fieldKeys.length + link.compositeKeys.length);
+        return link;
+    }
+
+    private void bindConstructor(@NotNull Class<?> clazz) {
+        final Constructor<?> canonical = findLinkedConstructor(clazz);
+        if (canonical == null) return;
+
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        try {
+            // The parameters follow the linked fields in declaration order
+            for (Field field : Utilities.getLinkedFields(clazz)) {
+                final int fieldIndex = indexOf(fieldValues, field);
+                final int compositeIndex = indexOf(compositeValues, field);
+                if (fieldIndex == -1 && compositeIndex == -1) continue;
+
+                parameterKeys = Utilities.append(parameterKeys, fieldIndex != -1 ? fieldKeys[fieldIndex] : compositeKeys[compositeIndex]);
+                parameterTypes = Utilities.append(parameterTypes, fieldIndex != -1 ? null : field.getType());
+
+                field.trySetAccessible();
+                accessors = Utilities.append(accessors, lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class)));
+            }
+
+            if (canonical.getParameterCount() != parameterKeys.length) {
+                throw new IllegalArgumentException("Linked constructor of " + clazz.getSimpleName() + " takes " + canonical.getParameterCount() + " parameters, but " + parameterKeys.length + " fields are linked");
+            }
+
+            canonical.trySetAccessible();
+            constructor = lookup.unreflectConstructor(canonical)
+                    .asType(MethodType.genericMethodType(parameterKeys.length))
+                    .asSpreader(Object[].class, parameterKeys.length);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Linked constructor or fields of " + clazz.getSimpleName() + " are not accessible", e);
         }
     }
 
-    private static @NotNull DataLink createAutomatic(@NotNull Class<?> clazz) {
+    private static @Nullable Constructor<?> findLinkedConstructor(@NotNull Class<?> clazz) {
+        if (clazz.isRecord()) {
+            final Class<?>[] types = Arrays.stream(clazz.getRecordComponents()).map(RecordComponent::getType).toArray(Class<?>[]::new);
+
+            try {
+                return clazz.getDeclaredConstructor(types);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Record " + clazz.getSimpleName() + " has no canonical constructor", e);
+            }
+        }
+
+        for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+            if (constructor.isAnnotationPresent(LinkedConstructor.class)) return constructor;
+        }
+
+        return null;
+    }
+
+    private static @NotNull DataLink createPolymorphic(@NotNull Class<?> clazz, @NotNull Class<?>[] variants) {
         final DataLink link = new DataLink();
 
-        final Field[] fields = clazz.isAnnotationPresent(AllowInheritance.class) ? clazz.getFields() : clazz.getDeclaredFields();
+        for (Class<?> variant : variants) {
+            if (!clazz.isAssignableFrom(variant)) {
+                throw new IllegalArgumentException("Variant " + variant.getSimpleName() + " is not a subtype of " + clazz.getSimpleName());
+            }
+
+            link.variantTypes = Utilities.append(link.variantTypes, variant);
+            link.variantLinks = Utilities.append(link.variantLinks, DataLinkLookup.lacks(variant) ? create(variant) : DataLinkLookup.get(variant));
+        }
+
+        DataLinkLookup.register(clazz, link);
+        return link;
+    }
 
-        for (Field field : fields) {
-            if (!Modifier.isPublic(field.getModifiers())) continue;
+    private static @NotNull DataLink createAutomatic(@NotNull Class<?> clazz) {
+        final DataLink link = new DataLink();
 
-            if (SerializerRegistry.contains(field.getType())) {
+        for (Field field : Utilities.getLinkedFields(clazz)) {
+            if (SerializerRegistry.resolve(field) != null) {
                 link.addField(field.getName(), field);
             } else {
                 link.addComposite(field.getName(), field);
@@ -183,11 +494,7 @@ public final class DataLink {
     private static @NotNull DataLink createManual(@NotNull Class<?> clazz) {
         final DataLink link = new DataLink();
 
-        final Field[] fields = clazz.isAnnotationPresent(AllowInheritance.class) ? clazz.getFields() : clazz.getDeclaredFields();
-
-        for (Field field : fields) {
-            if (!Modifier.isPublic(field.getModifiers())) continue;
-
+        for (Field field : Utilities.getLinkedFields(clazz)) {
             // Um yeah, name conflicts are bad
             if (field.isAnnotationPresent(com.redgrapefruit.itemnbt3.linking.Field.class)) {
                 final com.redgrapefruit.itemnbt3.linking.Field annotation = field.getAnnotation(com.redgrapefruit.itemnbt3.linking.Field.class);
@@ -216,23 +523,13 @@ public final class DataLink {
         return link;
     }
 
-    private static @NotNull Supplier<Object> createFactoryFromFirstConstructor(@NotNull Class<?> clazz) {
-        return () -> {
-            try {
-                return clazz.getDeclaredConstructors()[0].newInstance();
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                throw new RuntimeException("Reflective generation of a data link failed while creating factory from constructor");
-            }
-        };
-    }
-
     private static Object fallbackField(@Nullable Object value, @NotNull Class<?> clazz) {
-        final Supplier<Object> fallback = createFactoryFromFirstConstructor(clazz);
+        if (value != null) return value;
 
-        if (value == null) {
-            value = fallback.get();
+        try {
+            return FIRST_CONSTRUCTORS.get(clazz).newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException("Reflective generation of a data link failed while creating factory from constructor");
         }
-
-        return value;
     }
 }
@@ -0,0 +1,17 @@
+package com.redgrapefruit.itemnbt3.linking;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the constructor of an immutable class that a {@link DataLink} creates instances with, instead of setting fields.
+ * <br><br>
+ * The constructor must take one parameter per linked field, in the declaration order of the fields.
+ * Records don't need this annotation, their canonical constructor is used automatically.
+ */
+@Target({ElementType.CONSTRUCTOR})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LinkedConstructor {
+}
@@ -0,0 +1,28 @@
+package com.redgrapefruit.itemnbt3.linking;
+
+import com.redgrapefruit.itemnbt3.specification.Specification;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Packs a small field together with other packed fields into a shared <code>long</code> when generating
+ * a {@link Specification}, instead of storing it under its own key.
+ * <br><br>
+ * Supported are <code>boolean</code>s (1 bit), enums (as many bits as the ordinals need) and
+ * <code>byte</code>/<code>short</code>/<code>int</code>s, which are stored unsigned and need an explicit amount of bits.
+ * In manual classes it is used together with {@link Field}, in {@link Auto} classes on its own.
+ * <br><br>
+ * The position of a packed field depends on the declaration order of the packed fields,
+ * so reordering them changes the layout of the stored data.
+ */
+@Target({ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Packed {
+    /**
+     * @return The amount of bits for the field, or <code>0</code> to infer it for <code>boolean</code>s and enums.
+     */
+    int bits() default 0;
+}
@@ -0,0 +1,21 @@
+package com.redgrapefruit.itemnbt3.linking;
+
+import com.redgrapefruit.itemnbt3.specification.Specification;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fixes the ordinal of an implementation of a sealed type, which is stored under {@link Specification#TYPE_KEY}.
+ * <br><br>
+ * The order of the permitted subclasses depends on the compiler, so every implementation of a sealed type without
+ * {@link Variants} needs this annotation. The ordinals must be unique and cover <code>0</code> up to the amount of
+ * implementations, and an ordinal must never be reused for another implementation once data has been stored.
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VariantOrdinal {
+    int value();
+}
@@ -0,0 +1,21 @@
+package com.redgrapefruit.itemnbt3.linking;
+
+import com.redgrapefruit.itemnbt3.specification.Specification;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lists the implementations of an interface or base class, so that composite fields of that type can hold any of them.
+ * <br><br>
+ * The stored data contains the index of the implementation in this list under {@link Specification#TYPE_KEY},
+ * so implementations must only be appended. Sealed types can use {@link VariantOrdinal}s on their implementations
+ * instead.
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Variants {
+    Class<?>[] value();
+}
@@ -0,0 +1,123 @@
+package com.redgrapefruit.itemnbt3.mixin;
+
+import com.redgrapefruit.itemnbt3.DataClient;
+import com.redgrapefruit.itemnbt3.DerivedCache;
+import com.redgrapefruit.itemnbt3.FlyweightPool;
+import com.redgrapefruit.itemnbt3.specification.DataSnapshot;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.specification.SpecificationRegistry;
+import com.redgrapefruit.itemnbt3.util.ItemStackMixinAccess;
+import com.redgrapefruit.itemnbt3.util.NbtCompoundMixinAccess;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.Map;
+import java.util.Objects;
+
+@ApiStatus.Internal
+@Mixin(ItemStack.class)
+public class ItemStackMixin implements ItemStackMixinAccess {
+    @Shadow @Nullable private NbtCompound nbt;
+
+    @Unique private volatile @Nullable Map<Specification, DataSnapshot> snapshots = null;
+    // Only incremented by the thread owning the stack or holding its ConcurrentUse lock, read from any thread
+    @Unique private volatile int writeCount = 0;
+    @Unique private @Nullable DerivedCache derivedCache = null;
+
+    // Stacks loaded from disk
+    @Inject(method = "<init>(Lnet/minecraft/nbt/NbtCompound;)V", at = @At("TAIL"))
+    private void canonicalizeDecodedKeys(NbtCompound nbt, CallbackInfo ci) {
+        SpecificationRegistry.canonicalizeKeys(this.nbt);
+    }
+
+    // Stacks received from the network
+    @Inject(method = "setNbt", at = @At("TAIL"))
+    private void canonicalizeSetKeys(NbtCompound nbt, CallbackInfo ci) {
+        SpecificationRegistry.canonicalizeKeys(this.nbt);
+        markWritten();
+    }
+
+    // Copies and serialized stacks must include the data deferred on this thread
+    @Inject(method = "copy", at = @At("HEAD"))
+    private void flushBeforeCopy(CallbackInfoReturnable<ItemStack> cir) {
+        DataClient.flush((ItemStack) (Object) this);
+    }
+
+    @Inject(method = "writeNbt", at = @At("HEAD"))
+    private void flushBeforeWrite(NbtCompound nbt, CallbackInfoReturnable<NbtCompound> cir) {
+        DataClient.flush((ItemStack) (Object) this);
+    }
+
+    @Inject(method = {"setSubNbt", "removeSubNbt"}, at = @At("TAIL"))
+    private void markSubNbtWritten(CallbackInfo ci) {
+        markWritten();
+    }
+
+    // Shared compounds are only replaced when they are requested by key. getNbt stays untouched, since vanilla calls it
+    // for comparisons, tooltips and networking, and the shared compounds reachable through it reject modifications
+    @Inject(method = {"getSubNbt", "getOrCreateSubNbt"}, at = @At("RETURN"), cancellable = true)
+    private void unshareSubNbt(String key, CallbackInfoReturnable<NbtCompound> cir) {
+        final NbtCompound subNbt = cir.getReturnValue();
+        if (subNbt == null) return;
+
+        // The caller may modify the data of a specification it requests, vanilla keys don't concern the caches
+        if (SpecificationRegistry.contains(key)) markWritten();
+
+        if (((NbtCompoundMixinAccess) subNbt).isShared()) {
+            cir.setReturnValue(unshare(key, subNbt));
+        }
+    }
+
+    @Unique
+    private @NotNull NbtCompound unshare(@NotNull String key, @NotNull NbtCompound subNbt) {
+        final NbtCompound copy = FlyweightPool.copyShared(subNbt);
+        Objects.requireNonNull(nbt).put(key, copy);
+
+        return copy;
+    }
+
+    @Override
+    public @Nullable Map<Specification, DataSnapshot> getSnapshots() {
+        return snapshots;
+    }
+
+    @Override
+    public void setSnapshots(@Nullable Map<Specification, DataSnapshot> snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    @Override
+    public int getWriteCount() {
+        return writeCount;
+    }
+
+    @Override
+    public void markWritten() {
+        ++writeCount;
+    }
+
+    @Override
+    public @Nullable DerivedCache getDerivedCache() {
+        return derivedCache;
+    }
+
+    @Override
+    public void setDerivedCache(@Nullable DerivedCache cache) {
+        this.derivedCache = cache;
+    }
+
+    @Override
+    public @Nullable NbtCompound peekNbt() {
+        return nbt;
+    }
+}
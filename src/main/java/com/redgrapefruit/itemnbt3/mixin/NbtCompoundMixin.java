@@ -4,10 +4,18 @@ import com.redgrapefruit.itemnbt3.util.NbtCompoundMixinAccess;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @ApiStatus.Internal
@@ -15,8 +23,67 @@ import java.util.Map;
 public class NbtCompoundMixin implements NbtCompoundMixinAccess {
     @Shadow @Final private Map<String, NbtElement> entries;
 
+    // A plain field, since it is set before the compound is shared and never cleared, and it is read by every put
+    @Unique private boolean shared = false;
+
     @Override
     public void clearNbt() {
+        checkWritable();
+
         entries.clear();
     }
+
+    @Override
+    public boolean isShared() {
+        return shared;
+    }
+
+    @Override
+    public void markShared() {
+        shared = true;
+    }
+
+    @Override
+    public void canonicalizeKeys(@NotNull Map<String, String> table) {
+        // Re-putting the entries is a modification, and shared compounds were canonicalized before they were shared
+        if (shared) return;
+
+        List<String> replaced = null;
+
+        for (String key : entries.keySet()) {
+            final String canonical = table.get(key);
+
+            if (canonical != null && canonical != key) {
+                if (replaced == null) replaced = new ArrayList<>();
+                replaced.add(canonical);
+            }
+        }
+
+        if (replaced == null) return;
+
+        // A map keeps the old key when an equal one is put, so the entries are removed and put back
+        for (String canonical : replaced) {
+            entries.put(canonical, entries.remove(canonical));
+        }
+    }
+
+    @Inject(method = "put", at = @At("HEAD"))
+    private void guardPut(String key, NbtElement element, CallbackInfoReturnable<NbtElement> cir) {
+        checkWritable();
+    }
+
+    @Inject(method = {
+            "putByte", "putShort", "putInt", "putLong", "putUuid", "putFloat", "putDouble", "putString",
+            "putByteArray", "putIntArray", "putLongArray", "putBoolean", "remove"
+    }, at = @At("HEAD"))
+    private void guardWrite(CallbackInfo ci) {
+        checkWritable();
+    }
+
+    @Unique
+    private void checkWritable() {
+        if (shared) {
+            throw new UnsupportedOperationException("Shared item data can't be modified, request it from its ItemStack again to get a writable copy");
+        }
+    }
 }
@@ -0,0 +1,20 @@
+package com.redgrapefruit.itemnbt3.mixin;
+
+import com.redgrapefruit.itemnbt3.util.ThreadedAnvilChunkStorageMixinAccess;
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ThreadedAnvilChunkStorage;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+@ApiStatus.Internal
+@Mixin(ThreadedAnvilChunkStorage.class)
+public abstract class ThreadedAnvilChunkStorageMixin implements ThreadedAnvilChunkStorageMixinAccess {
+    @Shadow protected abstract Iterable<ChunkHolder> entryIterator();
+
+    @Override
+    public @NotNull Iterable<ChunkHolder> getChunkHolders() {
+        return entryIterator();
+    }
+}
@@ -0,0 +1,237 @@
+package com.redgrapefruit.itemnbt3.query;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * A {@link Column} holds the values of one field for many stacks in a primitive array, filled by a {@link ColumnExtractor}.
+ * <br><br>
+ * Entries without a value are <code>0</code> in the array and cleared in the presence bitmap. The aggregations are
+ * plain loops over the array, which the JIT vectorizes, and only walk the bitmap when some entries are missing.
+ */
+public final class Column {
+    private final @NotNull Type type;
+    private final int size;
+    private final int[] ints;
+    private final long[] longs;
+    private final double[] doubles;
+    private final @NotNull BitSet present;
+
+    Column(@NotNull Type type, int size, int[] ints, long[] longs, double[] doubles, @NotNull BitSet present) {
+        this.type = type;
+        this.size = size;
+        this.ints = ints;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.present = present;
+    }
+
+    public @NotNull Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The amount of entries, including the ones without a value.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The amount of entries with a value.
+     */
+    public int count() {
+        return present.cardinality();
+    }
+
+    public boolean isPresent(int index) {
+        Objects.checkIndex(index, size);
+
+        return present.get(index);
+    }
+
+    /**
+     * @return The backing array of an {@link Type#INT} column, which must not be modified.
+     */
+    public @NotNull int[] getInts() {
+        if (type != Type.INT) throw new IllegalStateException("Column of type " + type + " has no int values");
+
+        return ints;
+    }
+
+    /**
+     * @return The backing array of a {@link Type#LONG} column, which must not be modified.
+     */
+    public @NotNull long[] getLongs() {
+        if (type != Type.LONG) throw new IllegalStateException("Column of type " + type + " has no long values");
+
+        return longs;
+    }
+
+    /**
+     * @return The backing array of a {@link Type#DOUBLE} column, which must not be modified.
+     */
+    public @NotNull double[] getDoubles() {
+        if (type != Type.DOUBLE) throw new IllegalStateException("Column of type " + type + " has no double values");
+
+        return doubles;
+    }
+
+    /**
+     * @return A copy of the presence bitmap.
+     */
+    public @NotNull BitSet getPresent() {
+        return (BitSet) present.clone();
+    }
+
+    /**
+     * @return The value at the index as <code>double</code>, which is <code>0</code> if the entry has no value.
+     */
+    public double getDouble(int index) {
+        Objects.checkIndex(index, size);
+
+        return switch (type) {
+            case INT -> ints[index];
+            case LONG -> longs[index];
+            case DOUBLE -> doubles[index];
+        };
+    }
+
+    // AGGREGATIONS
+
+    /**
+     * @return The exact sum of an {@link Type#INT} or {@link Type#LONG} column.
+     */
+    public long sumLong() {
+        long sum = 0L;
+
+        // Missing entries are 0, so the whole array can be summed without looking at the bitmap
+        switch (type) {
+            case INT -> {
+                for (int i = 0; i < size; i++) sum += ints[i];
+            }
+            case LONG -> {
+                for (int i = 0; i < size; i++) sum += longs[i];
+            }
+            case DOUBLE -> throw new IllegalStateException("Column of type DOUBLE has no exact sum");
+        }
+
+        return sum;
+    }
+
+    /**
+     * @return The sum of the column as <code>double</code>.
+     */
+    public double sum() {
+        if (type != Type.DOUBLE) return sumLong();
+
+        double sum = 0.0;
+        for (int i = 0; i < size; i++) sum += doubles[i];
+
+        return sum;
+    }
+
+    /**
+     * @return The smallest value, or {@link Double#NaN} if no entry has a value.
+     */
+    public double min() {
+        if (present.isEmpty()) return Double.NaN;
+
+        if (present.cardinality() == size) {
+            switch (type) {
+                case INT -> {
+                    int min = Integer.MAX_VALUE;
+                    for (int i = 0; i < size; i++) min = Math.min(min, ints[i]);
+                    return min;
+                }
+                case LONG -> {
+                    long min = Long.MAX_VALUE;
+                    for (int i = 0; i < size; i++) min = Math.min(min, longs[i]);
+                    return min;
+                }
+                case DOUBLE -> {
+                    double min = Double.POSITIVE_INFINITY;
+                    for (int i = 0; i < size; i++) min = Math.min(min, doubles[i]);
+                    return min;
+                }
+            }
+        }
+
+        double min = Double.POSITIVE_INFINITY;
+
+        for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+            min = Math.min(min, getDouble(i));
+        }
+
+        return min;
+    }
+
+    /**
+     * @return The largest value, or {@link Double#NaN} if no entry has a value.
+     */
+    public double max() {
+        if (present.isEmpty()) return Double.NaN;
+
+        if (present.cardinality() == size) {
+            switch (type) {
+                case INT -> {
+                    int max = Integer.MIN_VALUE;
+                    for (int i = 0; i < size; i++) max = Math.max(max, ints[i]);
+                    return max;
+                }
+                case LONG -> {
+                    long max = Long.MIN_VALUE;
+                    for (int i = 0; i < size; i++) max = Math.max(max, longs[i]);
+                    return max;
+                }
+                case DOUBLE -> {
+                    double max = Double.NEGATIVE_INFINITY;
+                    for (int i = 0; i < size; i++) max = Math.max(max, doubles[i]);
+                    return max;
+                }
+            }
+        }
+
+        double max = Double.NEGATIVE_INFINITY;
+
+        for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+            max = Math.max(max, getDouble(i));
+        }
+
+        return max;
+    }
+
+    /**
+     * Counts the values in equally wide buckets between the bounds. Values outside the bounds are not counted.
+     *
+     * @param min The lower bound of the first bucket, inclusive.
+     * @param max The upper bound of the last bucket, inclusive.
+     * @param buckets The amount of buckets.
+     * @return The amount of values in every bucket.
+     */
+    public @NotNull long[] histogram(double min, double max, int buckets) {
+        if (buckets <= 0) throw new IllegalArgumentException("Histogram needs at least one bucket");
+        if (!(max > min)) throw new IllegalArgumentException("Histogram bounds " + min + " and " + max + " are empty");
+
+        final long[] counts = new long[buckets];
+        final double scale = buckets / (max - min);
+
+        for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+            final double value = getDouble(i);
+            if (!(value >= min && value <= max)) continue;
+
+            counts[Math.min((int) ((value - min) * scale), buckets - 1)]++;
+        }
+
+        return counts;
+    }
+
+    /**
+     * The primitive type of the values in a {@link Column}.
+     */
+    public enum Type {
+        INT, LONG, DOUBLE
+    }
+}
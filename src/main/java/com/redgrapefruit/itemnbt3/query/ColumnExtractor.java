@@ -0,0 +1,201 @@
+package com.redgrapefruit.itemnbt3.query;
+
+import com.redgrapefruit.itemnbt3.serializer.BuiltinTypeSerializer;
+import com.redgrapefruit.itemnbt3.serializer.TypeSerializer;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * A {@link ColumnExtractor} reads one numeric field of a {@link Specification} from many stacks into a {@link Column},
+ * without decoding the rest of their data into {@link com.redgrapefruit.itemnbt3.specification.DataCompound}s.
+ * <br><br>
+ * Fields stored under their own key with a builtin number serializer are read straight from the NBT without boxing.
+ * Other fields are read through {@link Specification#readField(NbtCompound, String)}, which only decodes the whole
+ * compound for data of an old version, polymorphic data or fields in the struct layout.
+ * <br><br>
+ * Integers up to <code>int</code>, booleans (as 0 and 1) and enums (as their ordinal) are extracted into
+ * {@link Column.Type#INT} columns, <code>long</code>s into {@link Column.Type#LONG} and floating point numbers into
+ * {@link Column.Type#DOUBLE}. Stacks without data of the {@link Specification} have no value.
+ */
+public final class ColumnExtractor {
+    private final @NotNull Specification specification;
+    private final @NotNull String key;
+    private final @NotNull Column.Type type;
+    // The value of a field missing from the compound, read once while compiling
+    private final @NotNull Object missing;
+    // Whether the field can be read straight from the NBT instead of through the Specification
+    private final boolean direct;
+
+    private ColumnExtractor(@NotNull Specification specification, @NotNull String key, @NotNull Column.Type type, @NotNull Object missing, boolean direct) {
+        this.specification = specification;
+        this.key = key;
+        this.type = type;
+        this.missing = missing;
+        this.direct = direct;
+    }
+
+    /**
+     * Compiles an extractor for a root or packed field.
+     *
+     * @param specification The {@link Specification} of the field.
+     * @param key The key of the field.
+     * @return The compiled {@link ColumnExtractor}.
+     */
+    public static @NotNull ColumnExtractor compile(@NotNull Specification specification, @NotNull String key) {
+        Objects.requireNonNull(specification);
+        Objects.requireNonNull(key);
+
+        final Object missing = specification.readField(new NbtCompound(), key);
+        final Column.Type type = typeOf(missing);
+        if (type == null) throw new IllegalArgumentException("Field " + key + " of " + specification.getId() + " is not numeric and can't be extracted");
+
+        final TypeSerializer<?> serializer = specification.getSerializer(key);
+        final boolean direct = specification.isStoredSeparately(key) && (serializer == BuiltinTypeSerializer.BYTE
+                || serializer == BuiltinTypeSerializer.SHORT
+                || serializer == BuiltinTypeSerializer.INT
+                || serializer == BuiltinTypeSerializer.LONG
+                || serializer == BuiltinTypeSerializer.FLOAT
+                || serializer == BuiltinTypeSerializer.DOUBLE);
+
+        return new ColumnExtractor(specification, key, type, missing, direct);
+    }
+
+    /**
+     * Extracts the field from the data of every stack.
+     *
+     * @param stacks The {@link ItemStack}s, which may contain <code>null</code>s.
+     * @return The {@link Column} with an entry for every stack.
+     */
+    public @NotNull Column extract(@NotNull Iterable<ItemStack> stacks) {
+        Objects.requireNonNull(stacks);
+
+        final Builder builder = new Builder(type);
+
+        for (ItemStack stack : stacks) {
+            builder.add(stack == null || stack.isEmpty() ? null : Utilities.peekSubNbt(stack, specification.getId()));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Extracts the field from the compounds of the {@link Specification}, like the ones read by a
+     * {@link com.redgrapefruit.itemnbt3.io.SelectiveNbtReader} or a {@link com.redgrapefruit.itemnbt3.tools.RegionScanner}.
+     *
+     * @param compounds The compounds, which may contain <code>null</code>s for entries without data.
+     * @return The {@link Column} with an entry for every compound.
+     */
+    public @NotNull Column extractNbt(@NotNull Iterable<NbtCompound> compounds) {
+        Objects.requireNonNull(compounds);
+
+        final Builder builder = new Builder(type);
+
+        for (NbtCompound nbt : compounds) {
+            builder.add(nbt);
+        }
+
+        return builder.build();
+    }
+
+    public @NotNull Column.Type getType() {
+        return type;
+    }
+
+    private static @Nullable Column.Type typeOf(@NotNull Object value) {
+        if (value instanceof Long) return Column.Type.LONG;
+        if (value instanceof Float || value instanceof Double) return Column.Type.DOUBLE;
+        if (value instanceof Number || value instanceof Boolean || value instanceof Enum<?>) return Column.Type.INT;
+
+        return null;
+    }
+
+    private static long toLong(@NotNull Object value) {
+        if (value instanceof Number number) return number.longValue();
+        if (value instanceof Boolean bool) return bool ? 1L : 0L;
+
+        return ((Enum<?>) value).ordinal();
+    }
+
+    /**
+     * Grows the arrays of a {@link Column} while extracting.
+     */
+    private final class Builder {
+        private final @NotNull Column.Type type;
+        private int[] ints;
+        private long[] longs;
+        private double[] doubles;
+        private final @NotNull BitSet present = new BitSet();
+        private int size = 0;
+
+        private Builder(@NotNull Column.Type type) {
+            this.type = type;
+
+            switch (type) {
+                case INT -> ints = new int[64];
+                case LONG -> longs = new long[64];
+                case DOUBLE -> doubles = new double[64];
+            }
+        }
+
+        private void add(@Nullable NbtCompound nbt) {
+            final int index = size++;
+
+            switch (type) {
+                case INT -> {
+                    if (index == ints.length) ints = Arrays.copyOf(ints, index * 2);
+                }
+                case LONG -> {
+                    if (index == longs.length) longs = Arrays.copyOf(longs, index * 2);
+                }
+                case DOUBLE -> {
+                    if (index == doubles.length) doubles = Arrays.copyOf(doubles, index * 2);
+                }
+            }
+
+            if (nbt == null) return;
+            present.set(index);
+
+            if (direct) {
+                // Numeric getters of NbtCompound convert between number types like the builtin serializers do
+                if (!nbt.contains(key, NbtElement.NUMBER_TYPE)) {
+                    put(index, missing);
+                } else {
+                    switch (type) {
+                        case INT -> ints[index] = nbt.getInt(key);
+                        case LONG -> longs[index] = nbt.getLong(key);
+                        case DOUBLE -> doubles[index] = nbt.getDouble(key);
+                    }
+                }
+
+                return;
+            }
+
+            put(index, specification.readField(nbt, key));
+        }
+
+        private void put(int index, @NotNull Object value) {
+            switch (type) {
+                case INT -> ints[index] = (int) toLong(value);
+                case LONG -> longs[index] = toLong(value);
+                case DOUBLE -> doubles[index] = ((Number) value).doubleValue();
+            }
+        }
+
+        private @NotNull Column build() {
+            return switch (type) {
+                case INT -> new Column(type, size, Arrays.copyOf(ints, size), null, null, present);
+                case LONG -> new Column(type, size, null, Arrays.copyOf(longs, size), null, present);
+                case DOUBLE -> new Column(type, size, null, null, Arrays.copyOf(doubles, size), present);
+            };
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.redgrapefruit.itemnbt3.query;
+
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.ItemStackMixinAccess;
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * An {@link InventoryIndex} keeps selected numeric fields of a {@link Specification} for every slot of an {@link Inventory}
+ * in primitive columns, so queries like "all slots with a charge below 10" or "the total weight" don't decode any stack.
+ * <br><br>
+ * Every query first refreshes the index: a slot is only decoded again if it holds a different {@link ItemStack} or the
+ * stack has been written to since, which is detected through a write counter on the stack. Writes through the
+ * {@link com.redgrapefruit.itemnbt3.DataClient}, replacements of the stack's NBT and requests of the
+ * {@link Specification}'s compound through {@link ItemStack#getSubNbt(String)} are counted. Reading the stack's NBT
+ * through {@link ItemStack#getNbt()} doesn't cause a decode, and neither does modifying it through that root
+ * {@link NbtCompound}.
+ * <br><br>
+ * Integers, booleans (as 0 and 1) and enums (as their ordinal) are indexed as <code>long</code>, all numbers also
+ * as <code>double</code>. Slots without data of the {@link Specification} and slots where a field is missing
+ * don't match any query on that field.
+ * <br><br>
+ * Like the inventory itself, an index must only be used from the thread owning the inventory.
+ */
+public final class InventoryIndex {
+    private final @NotNull Inventory inventory;
+    private final @NotNull Specification specification;
+    private final @NotNull String[] keys;
+
+    private @Nullable ItemStack[] stacks = new ItemStack[0];
+    private int[] writeCounts = new int[0];
+    private long[][] longColumns;
+    private double[][] doubleColumns;
+    // Per column, the slots that have a value for the field
+    private final @NotNull BitSet[] present;
+
+    public InventoryIndex(@NotNull Inventory inventory, @NotNull Specification specification, @NotNull String... keys) {
+        Objects.requireNonNull(inventory);
+        Objects.requireNonNull(specification);
+        Objects.requireNonNull(keys);
+
+        if (keys.length == 0) throw new IllegalArgumentException("An inventory index needs at least one field");
+
+        this.inventory = inventory;
+        this.specification = specification;
+        this.keys = keys.clone();
+        this.longColumns = new long[keys.length][0];
+        this.doubleColumns = new double[keys.length][0];
+        this.present = new BitSet[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            present[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Decodes the slots that have changed since the last refresh. Called by every query.
+     *
+     * @return The amount of decoded slots.
+     */
+    public int refresh() {
+        final int size = inventory.size();
+        if (size != stacks.length) resize(size);
+
+        int decoded = 0;
+
+        for (int slot = 0; slot < size; slot++) {
+            final ItemStack stack = inventory.getStack(slot);
+            final int writeCount = stack == null ? 0 : ((ItemStackMixinAccess) (Object) stack).getWriteCount();
+
+            if (stack == stacks[slot] && writeCount == writeCounts[slot]) continue;
+
+            stacks[slot] = stack;
+            writeCounts[slot] = writeCount;
+            update(slot, stack);
+            ++decoded;
+        }
+
+        return decoded;
+    }
+
+    /**
+     * Finds the slots whose value of the field is in the given range.
+     *
+     * @param key The key of the indexed field.
+     * @param min The minimum value, inclusive.
+     * @param max The maximum value, inclusive.
+     * @return The matching slots in ascending order.
+     */
+    public @NotNull int[] findRange(@NotNull String key, long min, long max) {
+        final int column = indexOf(key);
+        refresh();
+
+        final long[] values = longColumns[column];
+        final int[] found = new int[present[column].cardinality()];
+        int count = 0;
+
+        for (int slot = present[column].nextSetBit(0); slot >= 0; slot = present[column].nextSetBit(slot + 1)) {
+            if (values[slot] >= min && values[slot] <= max) found[count++] = slot;
+        }
+
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * A <code>double</code> variant of {@link InventoryIndex#findRange(String, long, long)}.
+     */
+    public @NotNull int[] findRange(@NotNull String key, double min, double max) {
+        final int column = indexOf(key);
+        refresh();
+
+        final double[] values = doubleColumns[column];
+        final int[] found = new int[present[column].cardinality()];
+        int count = 0;
+
+        for (int slot = present[column].nextSetBit(0); slot >= 0; slot = present[column].nextSetBit(slot + 1)) {
+            if (values[slot] >= min && values[slot] <= max) found[count++] = slot;
+        }
+
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Finds the slots whose value of the field equals the given value.
+     *
+     * @param key The key of the indexed field.
+     * @param value The value, compared as <code>long</code>.
+     * @return The matching slots in ascending order.
+     */
+    public @NotNull int[] findEqual(@NotNull String key, long value) {
+        return findRange(key, value, value);
+    }
+
+    /**
+     * @return The amount of slots with a value for the field.
+     */
+    public int count(@NotNull String key) {
+        final int column = indexOf(key);
+        refresh();
+
+        return present[column].cardinality();
+    }
+
+    /**
+     * @return The sum of the field over all slots with a value for it, computed as <code>long</code>.
+     */
+    public long sumLong(@NotNull String key) {
+        final int column = indexOf(key);
+        refresh();
+
+        final long[] values = longColumns[column];
+        long sum = 0L;
+
+        for (int slot = present[column].nextSetBit(0); slot >= 0; slot = present[column].nextSetBit(slot + 1)) {
+            sum += values[slot];
+        }
+
+        return sum;
+    }
+
+    /**
+     * @return The sum of the field over all slots with a value for it, computed as <code>double</code>.
+     */
+    public double sum(@NotNull String key) {
+        final int column = indexOf(key);
+        refresh();
+
+        final double[] values = doubleColumns[column];
+        double sum = 0.0;
+
+        for (int slot = present[column].nextSetBit(0); slot >= 0; slot = present[column].nextSetBit(slot + 1)) {
+            sum += values[slot];
+        }
+
+        return sum;
+    }
+
+    /**
+     * @return The smallest value of the field, or {@link Double#NaN} if no slot has a value for it.
+     */
+    public double min(@NotNull String key) {
+        final int column = indexOf(key);
+        refresh();
+
+        final double[] values = doubleColumns[column];
+        double min = Double.NaN;
+
+        for (int slot = present[column].nextSetBit(0); slot >= 0; slot = present[column].nextSetBit(slot + 1)) {
+            if (Double.isNaN(min) || values[slot] < min) min = values[slot];
+        }
+
+        return min;
+    }
+
+    /**
+     * @return The largest value of the field, or {@link Double#NaN} if no slot has a value for it.
+     */
+    public double max(@NotNull String key) {
+        final int column = indexOf(key);
+        refresh();
+
+        final double[] values = doubleColumns[column];
+        double max = Double.NaN;
+
+        for (int slot = present[column].nextSetBit(0); slot >= 0; slot = present[column].nextSetBit(slot + 1)) {
+            if (Double.isNaN(max) || values[slot] > max) max = values[slot];
+        }
+
+        return max;
+    }
+
+    public @NotNull Inventory getInventory() {
+        return inventory;
+    }
+
+    public @NotNull Specification getSpecification() {
+        return specification;
+    }
+
+    private void update(int slot, @Nullable ItemStack stack) {
+        final NbtCompound nbt = stack == null || stack.isEmpty() ? null : Utilities.peekSubNbt(stack, specification.getId());
+
+        if (nbt == null) {
+            for (BitSet column : present) {
+                column.clear(slot);
+            }
+
+            return;
+        }
+
+        final DataCompound compound = new DataCompound();
+        specification.readNbt(nbt, compound);
+
+        for (int i = 0; i < keys.length; i++) {
+            final Object value = compound.get(keys[i]);
+
+            if (value == null) {
+                present[i].clear(slot);
+                continue;
+            }
+
+            if (value instanceof Number number) {
+                longColumns[i][slot] = number.longValue();
+                doubleColumns[i][slot] = number.doubleValue();
+            } else if (value instanceof Boolean bool) {
+                longColumns[i][slot] = bool ? 1L : 0L;
+                doubleColumns[i][slot] = bool ? 1.0 : 0.0;
+            } else if (value instanceof Enum<?> constant) {
+                longColumns[i][slot] = constant.ordinal();
+                doubleColumns[i][slot] = constant.ordinal();
+            } else {
+                throw new IllegalStateException("Field " + keys[i] + " of " + specification.getId() + " is not numeric and can't be indexed");
+            }
+
+            present[i].set(slot);
+        }
+    }
+
+    private void resize(int size) {
+        stacks = Arrays.copyOf(stacks, size);
+        writeCounts = Arrays.copyOf(writeCounts, size);
+
+        for (int i = 0; i < keys.length; i++) {
+            longColumns[i] = Arrays.copyOf(longColumns[i], size);
+            doubleColumns[i] = Arrays.copyOf(doubleColumns[i], size);
+            if (present[i].length() > size) present[i].clear(size, present[i].length());
+        }
+    }
+
+    private int indexOf(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) return i;
+        }
+
+        throw new IllegalArgumentException("Field " + key + " of " + specification.getId() + " is not indexed");
+    }
+}
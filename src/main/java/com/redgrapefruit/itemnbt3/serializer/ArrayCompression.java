@@ -0,0 +1,371 @@
+package com.redgrapefruit.itemnbt3.serializer;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encoders and decoders behind the compressed array serializers in {@link BuiltinTypeSerializer}.
+ * <br><br>
+ * Every encoding starts with the length of the original array as a varint, so that decoding can allocate
+ * the output array once. An empty input decodes into an empty array.
+ * <br><br>
+ * Since the data may come from the network, the length is checked before allocating: it must not exceed
+ * {@link #MAX_LENGTH}, nor the amount of elements the rest of the input could possibly encode.
+ */
+@ApiStatus.Internal
+final class ArrayCompression {
+    /**
+     * The largest amount of elements a compressed array may decode into.
+     */
+    static final int MAX_LENGTH = 1 << 21;
+
+    // Deflate compresses at most about 1032:1
+    private static final int DEFLATE_RATIO = 1032;
+    // A single run can cover any amount of elements
+    private static final int RUN_RATIO = MAX_LENGTH;
+
+    private ArrayCompression() {
+        throw new RuntimeException("ArrayCompression is not meant to be instantiated");
+    }
+
+    // RUN-LENGTH
+
+    static @NotNull byte[] encodeRunLength(@NotNull byte[] array) {
+        final ByteSink sink = new ByteSink(array.length / 4 + 8);
+        sink.writeLength(array.length);
+
+        int i = 0;
+        while (i < array.length) {
+            final byte value = array[i];
+            int run = 1;
+            while (i + run < array.length && array[i + run] == value) ++run;
+
+            sink.write(value);
+            sink.writeVarInt(run);
+            i += run;
+        }
+
+        return sink.toByteArray();
+    }
+
+    static @NotNull byte[] decodeRunLengthBytes(@NotNull byte[] data) {
+        final ByteSource source = new ByteSource(data);
+        final byte[] array = new byte[source.readLength(RUN_RATIO)];
+
+        int i = 0;
+        while (i < array.length) {
+            final byte value = source.read();
+            final int run = source.readRun(array.length - i);
+            Arrays.fill(array, i, i + run, value);
+            i += run;
+        }
+
+        return array;
+    }
+
+    static @NotNull byte[] encodeRunLength(@NotNull int[] array) {
+        final ByteSink sink = new ByteSink(array.length / 2 + 8);
+        sink.writeLength(array.length);
+
+        int i = 0;
+        while (i < array.length) {
+            final int value = array[i];
+            int run = 1;
+            while (i + run < array.length && array[i + run] == value) ++run;
+
+            sink.writeVarInt(zigZag(value));
+            sink.writeVarInt(run);
+            i += run;
+        }
+
+        return sink.toByteArray();
+    }
+
+    static @NotNull int[] decodeRunLengthInts(@NotNull byte[] data) {
+        final ByteSource source = new ByteSource(data);
+        final int[] array = new int[source.readLength(RUN_RATIO)];
+
+        int i = 0;
+        while (i < array.length) {
+            final int value = unZigZag(source.readVarInt());
+            final int run = source.readRun(array.length - i);
+            Arrays.fill(array, i, i + run, value);
+            i += run;
+        }
+
+        return array;
+    }
+
+    static @NotNull byte[] encodeRunLength(@NotNull long[] array) {
+        final ByteSink sink = new ByteSink(array.length + 8);
+        sink.writeLength(array.length);
+
+        int i = 0;
+        while (i < array.length) {
+            final long value = array[i];
+            int run = 1;
+            while (i + run < array.length && array[i + run] == value) ++run;
+
+            sink.writeVarLong(zigZag(value));
+            sink.writeVarInt(run);
+            i += run;
+        }
+
+        return sink.toByteArray();
+    }
+
+    static @NotNull long[] decodeRunLengthLongs(@NotNull byte[] data) {
+        final ByteSource source = new ByteSource(data);
+        final long[] array = new long[source.readLength(RUN_RATIO)];
+
+        int i = 0;
+        while (i < array.length) {
+            final long value = unZigZag(source.readVarLong());
+            final int run = source.readRun(array.length - i);
+            Arrays.fill(array, i, i + run, value);
+            i += run;
+        }
+
+        return array;
+    }
+
+    // DELTA + VARINT
+
+    static @NotNull byte[] encodeDelta(@NotNull int[] array) {
+        final ByteSink sink = new ByteSink(array.length * 2 + 8);
+        sink.writeLength(array.length);
+
+        int previous = 0;
+        for (int value : array) {
+            sink.writeVarInt(zigZag(value - previous));
+            previous = value;
+        }
+
+        return sink.toByteArray();
+    }
+
+    static @NotNull int[] decodeDeltaInts(@NotNull byte[] data) {
+        final ByteSource source = new ByteSource(data);
+        final int[] array = new int[source.readLength(1)];
+
+        int previous = 0;
+        for (int i = 0; i < array.length; i++) {
+            previous += unZigZag(source.readVarInt());
+            array[i] = previous;
+        }
+
+        return array;
+    }
+
+    static @NotNull byte[] encodeDelta(@NotNull long[] array) {
+        final ByteSink sink = new ByteSink(array.length * 3 + 8);
+        sink.writeLength(array.length);
+
+        long previous = 0L;
+        for (long value : array) {
+            sink.writeVarLong(zigZag(value - previous));
+            previous = value;
+        }
+
+        return sink.toByteArray();
+    }
+
+    static @NotNull long[] decodeDeltaLongs(@NotNull byte[] data) {
+        final ByteSource source = new ByteSource(data);
+        final long[] array = new long[source.readLength(1)];
+
+        long previous = 0L;
+        for (int i = 0; i < array.length; i++) {
+            previous += unZigZag(source.readVarLong());
+            array[i] = previous;
+        }
+
+        return array;
+    }
+
+    // DEFLATE
+
+    static @NotNull byte[] encodeDeflate(@NotNull byte[] array) {
+        final ByteSink sink = new ByteSink(array.length / 2 + 16);
+        sink.writeLength(array.length);
+
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(array);
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                sink.ensure(64);
+                sink.size += deflater.deflate(sink.buffer, sink.size, sink.buffer.length - sink.size);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return sink.toByteArray();
+    }
+
+    static @NotNull byte[] decodeDeflate(@NotNull byte[] data) {
+        final ByteSource source = new ByteSource(data);
+        final byte[] array = new byte[source.readLength(DEFLATE_RATIO)];
+        if (array.length == 0) return array;
+
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, source.position, data.length - source.position);
+
+            int read = 0;
+            while (read < array.length && !inflater.finished()) {
+                final int count = inflater.inflate(array, read, array.length - read);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                read += count;
+            }
+
+            if (read < array.length) throw new IllegalArgumentException("Corrupted deflated byte array: truncated stream");
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupted deflated byte array", e);
+        } finally {
+            inflater.end();
+        }
+
+        return array;
+    }
+
+    // HELPERS
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A minimal unsynchronized replacement for {@link java.io.ByteArrayOutputStream}.
+     */
+    private static final class ByteSink {
+        private byte[] buffer;
+        private int size;
+
+        private ByteSink(int capacity) {
+            buffer = new byte[Math.max(capacity, 16)];
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        private void writeLength(int length) {
+            if (length > MAX_LENGTH) throw new IllegalArgumentException("Array of " + length + " elements exceeds the compression limit of " + MAX_LENGTH);
+
+            writeVarInt(length);
+        }
+
+        private void write(byte value) {
+            ensure(1);
+            buffer[size++] = value;
+        }
+
+        private void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0L) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private @NotNull byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    /**
+     * A cursor over an encoded byte array.
+     */
+    private static final class ByteSource {
+        private final byte[] data;
+        private int position;
+
+        private ByteSource(@NotNull byte[] data) {
+            this.data = data;
+        }
+
+        /**
+         * Reads the length of the original array and checks it against {@link #MAX_LENGTH} and against the rest of the
+         * input, of which every byte can encode at most the given amount of elements.
+         */
+        private int readLength(int elementsPerByte) {
+            if (data.length == 0) return 0;
+
+            final int length = readVarInt();
+            if (length < 0) throw new IllegalArgumentException("Corrupted compressed array: negative length");
+            if (length > MAX_LENGTH) throw new IllegalArgumentException("Compressed array of " + length + " elements exceeds the limit of " + MAX_LENGTH);
+            if (length > (long) remaining() * elementsPerByte) throw new IllegalArgumentException("Corrupted compressed array: length exceeds the remaining data");
+
+            return length;
+        }
+
+        private int remaining() {
+            return data.length - position;
+        }
+
+        private int readRun(int remaining) {
+            final int run = readVarInt();
+            if (run <= 0 || run > remaining) throw new IllegalArgumentException("Corrupted compressed array: invalid run length");
+
+            return run;
+        }
+
+        private byte read() {
+            if (position >= data.length) throw new IllegalArgumentException("Corrupted compressed array: unexpected end");
+
+            return data[position++];
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final byte b = read();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Corrupted compressed array: varint too long");
+        }
+
+        private long readVarLong() {
+            long value = 0L;
+            for (int shift = 0; shift < 70; shift += 7) {
+                final byte b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Corrupted compressed array: varlong too long");
+        }
+    }
+}
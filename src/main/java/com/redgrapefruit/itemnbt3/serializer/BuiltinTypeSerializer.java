@@ -1,6 +1,7 @@
 package com.redgrapefruit.itemnbt3.serializer;
 
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
 import org.apache.logging.log4j.util.TriConsumer;
 import org.jetbrains.annotations.NotNull;
 
@@ -39,6 +40,11 @@ public final class BuiltinTypeSerializer<T> implements TypeSerializer<T> {
         writer.accept(nbt, key, value == null ? fallback : value);
     }
 
+    @Override
+    public @NotNull T getFallback() {
+        return fallback;
+    }
+
     // Built-in serializers covered by the NbtCompound
 
     public static final @NotNull BuiltinTypeSerializer<Byte> BYTE = new BuiltinTypeSerializer<>(NbtCompound::putByte, NbtCompound::getByte, (byte)0);
@@ -49,8 +55,38 @@ public final class BuiltinTypeSerializer<T> implements TypeSerializer<T> {
     public static final @NotNull BuiltinTypeSerializer<Float> FLOAT = new BuiltinTypeSerializer<>(NbtCompound::putFloat, NbtCompound::getFloat, 0f);
     public static final @NotNull BuiltinTypeSerializer<Double> DOUBLE = new BuiltinTypeSerializer<>(NbtCompound::putDouble, NbtCompound::getDouble, 0.0);
     public static final @NotNull BuiltinTypeSerializer<String> STRING = new BuiltinTypeSerializer<>(NbtCompound::putString, NbtCompound::getString, "");
-    public static final @NotNull BuiltinTypeSerializer<byte[]> BYTE_ARRAY = new BuiltinTypeSerializer<>(NbtCompound::putByteArray, NbtCompound::getByteArray, new byte[0]);
-    public static final @NotNull BuiltinTypeSerializer<int[]> INT_ARRAY = new BuiltinTypeSerializer<>(NbtCompound::putIntArray, NbtCompound::getIntArray, new int[0]);
-    public static final @NotNull BuiltinTypeSerializer<long[]> LONG_ARRAY = new BuiltinTypeSerializer<>(NbtCompound::putLongArray, NbtCompound::getLongArray, new long[0]);
+    // NbtCompound hands out the backing arrays of its elements, which may belong to a compound shared by several
+    // stacks or read concurrently, so arrays are copied and modifying them in place never reaches the stored data
+    public static final @NotNull BuiltinTypeSerializer<byte[]> BYTE_ARRAY = new BuiltinTypeSerializer<>(NbtCompound::putByteArray, (nbt, key) -> nbt.getByteArray(key).clone(), new byte[0]);
+    public static final @NotNull BuiltinTypeSerializer<int[]> INT_ARRAY = new BuiltinTypeSerializer<>(NbtCompound::putIntArray, (nbt, key) -> nbt.getIntArray(key).clone(), new int[0]);
+    public static final @NotNull BuiltinTypeSerializer<long[]> LONG_ARRAY = new BuiltinTypeSerializer<>(NbtCompound::putLongArray, (nbt, key) -> nbt.getLongArray(key).clone(), new long[0]);
     public static final @NotNull BuiltinTypeSerializer<Boolean> BOOL = new BuiltinTypeSerializer<>(NbtCompound::putBoolean, NbtCompound::getBoolean, false);
+
+    // Compressed serializers for large arrays. Arrays stored uncompressed by the serializers above are still
+    // readable by the int and long variants, which allows switching an existing field to compression.
+
+    public static final @NotNull BuiltinTypeSerializer<byte[]> RUN_LENGTH_BYTE_ARRAY = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putByteArray(key, ArrayCompression.encodeRunLength(value)),
+            (nbt, key) -> ArrayCompression.decodeRunLengthBytes(nbt.getByteArray(key)),
+            new byte[0]);
+    public static final @NotNull BuiltinTypeSerializer<byte[]> DEFLATE_BYTE_ARRAY = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putByteArray(key, ArrayCompression.encodeDeflate(value)),
+            (nbt, key) -> ArrayCompression.decodeDeflate(nbt.getByteArray(key)),
+            new byte[0]);
+    public static final @NotNull BuiltinTypeSerializer<int[]> RUN_LENGTH_INT_ARRAY = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putByteArray(key, ArrayCompression.encodeRunLength(value)),
+            (nbt, key) -> nbt.contains(key, NbtElement.INT_ARRAY_TYPE) ? nbt.getIntArray(key).clone() : ArrayCompression.decodeRunLengthInts(nbt.getByteArray(key)),
+            new int[0]);
+    public static final @NotNull BuiltinTypeSerializer<int[]> DELTA_INT_ARRAY = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putByteArray(key, ArrayCompression.encodeDelta(value)),
+            (nbt, key) -> nbt.contains(key, NbtElement.INT_ARRAY_TYPE) ? nbt.getIntArray(key).clone() : ArrayCompression.decodeDeltaInts(nbt.getByteArray(key)),
+            new int[0]);
+    public static final @NotNull BuiltinTypeSerializer<long[]> RUN_LENGTH_LONG_ARRAY = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putByteArray(key, ArrayCompression.encodeRunLength(value)),
+            (nbt, key) -> nbt.contains(key, NbtElement.LONG_ARRAY_TYPE) ? nbt.getLongArray(key).clone() : ArrayCompression.decodeRunLengthLongs(nbt.getByteArray(key)),
+            new long[0]);
+    public static final @NotNull BuiltinTypeSerializer<long[]> DELTA_LONG_ARRAY = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putByteArray(key, ArrayCompression.encodeDelta(value)),
+            (nbt, key) -> nbt.contains(key, NbtElement.LONG_ARRAY_TYPE) ? nbt.getLongArray(key).clone() : ArrayCompression.decodeDeltaLongs(nbt.getByteArray(key)),
+            new long[0]);
 }
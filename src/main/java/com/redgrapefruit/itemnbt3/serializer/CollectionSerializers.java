@@ -0,0 +1,375 @@
+package com.redgrapefruit.itemnbt3.serializer;
+
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * {@link TypeSerializer}s for collections of primitive values.
+ * <br><br>
+ * Numeric collections are packed into a single <code>NbtIntArray</code> or <code>NbtLongArray</code> instead of
+ * an <code>NbtList</code> of boxed elements. <code>float</code>s and <code>double</code>s are stored as their raw
+ * bits, <code>boolean</code>s in a byte array, and {@link String}s in an <code>NbtList</code>.
+ * Maps must have {@link String} keys, which are interned on read, and are stored as a nested compound.
+ * <br><br>
+ * Fastutil collections ({@link IntList}, {@link IntSet}, {@link LongList}, {@link LongSet}) are read and written
+ * without boxing, plain {@link java.util} collections are read into an {@link ArrayList}, a {@link LinkedHashSet}
+ * or a {@link LinkedHashMap}.
+ */
+public final class CollectionSerializers {
+    private static final @NotNull Map<Class<?>, TypeSerializer<?>> lists = new HashMap<>();
+    private static final @NotNull Map<Class<?>, TypeSerializer<?>> sets = new HashMap<>();
+    private static final @NotNull Map<TypeSerializer<?>, TypeSerializer<?>> maps = new HashMap<>();
+
+    private CollectionSerializers() {
+        throw new RuntimeException("CollectionSerializers is not meant to be instantiated");
+    }
+
+    // Fastutil collections
+
+    public static final @NotNull BuiltinTypeSerializer<IntList> INT_LIST = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putIntArray(key, value.toIntArray()),
+            (nbt, key) -> new IntArrayList(nbt.getIntArray(key)),
+            new IntArrayList());
+    public static final @NotNull BuiltinTypeSerializer<LongList> LONG_LIST = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putLongArray(key, value.toLongArray()),
+            (nbt, key) -> new LongArrayList(nbt.getLongArray(key)),
+            new LongArrayList());
+    public static final @NotNull BuiltinTypeSerializer<IntSet> INT_SET = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putIntArray(key, value.toIntArray()),
+            (nbt, key) -> new IntOpenHashSet(nbt.getIntArray(key)),
+            new IntOpenHashSet());
+    public static final @NotNull BuiltinTypeSerializer<LongSet> LONG_SET = new BuiltinTypeSerializer<>(
+            (nbt, key, value) -> nbt.putLongArray(key, value.toLongArray()),
+            (nbt, key) -> new LongOpenHashSet(nbt.getLongArray(key)),
+            new LongOpenHashSet());
+
+    /**
+     * Gets the serializer for a {@link List} of the given element type.
+     *
+     * @param element The class of the elements.
+     * @param <E> The element type.
+     * @return The cached serializer.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> @NotNull TypeSerializer<List<E>> listOf(@NotNull Class<E> element) {
+        Objects.requireNonNull(element);
+
+        return (TypeSerializer<List<E>>) lists.computeIfAbsent(element, clazz -> {
+            final Packing packing = Packing.of(clazz);
+            return new BuiltinTypeSerializer<List<Object>>(
+                    (nbt, key, value) -> packing.write(nbt, key, value),
+                    (nbt, key) -> packing.read(nbt, key, ArrayList::new),
+                    List.of());
+        });
+    }
+
+    /**
+     * Gets the serializer for a {@link Set} of the given element type.
+     *
+     * @param element The class of the elements.
+     * @param <E> The element type.
+     * @return The cached serializer.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> @NotNull TypeSerializer<Set<E>> setOf(@NotNull Class<E> element) {
+        Objects.requireNonNull(element);
+
+        return (TypeSerializer<Set<E>>) sets.computeIfAbsent(element, clazz -> {
+            final Packing packing = Packing.of(clazz);
+            return new BuiltinTypeSerializer<Set<Object>>(
+                    (nbt, key, value) -> packing.write(nbt, key, value),
+                    (nbt, key) -> packing.read(nbt, key, size -> new LinkedHashSet<>(capacity(size))),
+                    Set.of());
+        });
+    }
+
+    /**
+     * Gets the serializer for a {@link Map} with {@link String} keys and values handled by the given serializer.
+     *
+     * @param values The serializer for the values.
+     * @param <V> The value type.
+     * @return The cached serializer.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> @NotNull TypeSerializer<Map<String, V>> mapOf(@NotNull TypeSerializer<V> values) {
+        Objects.requireNonNull(values);
+
+        return (TypeSerializer<Map<String, V>>) maps.computeIfAbsent(values, serializer -> {
+            final TypeSerializer<Object> valueSerializer = (TypeSerializer<Object>) serializer;
+
+            return new BuiltinTypeSerializer<Map<String, Object>>(
+                    (nbt, key, value) -> {
+                        final NbtCompound subNbt = new NbtCompound();
+                        for (Map.Entry<String, Object> entry : value.entrySet()) {
+                            valueSerializer.writeNbt(entry.getKey(), subNbt, entry.getValue());
+                        }
+                        nbt.put(key, subNbt);
+                    },
+                    (nbt, key) -> {
+                        final NbtCompound subNbt = nbt.getCompound(key);
+                        final Map<String, Object> map = new LinkedHashMap<>(capacity(subNbt.getSize()));
+                        for (String entryKey : subNbt.getKeys()) {
+                            map.put(Utilities.internKey(entryKey), valueSerializer.readNbt(entryKey, subNbt));
+                        }
+                        return map;
+                    },
+                    Map.of());
+        });
+    }
+
+    /**
+     * Finds a collection serializer for the generic type of a field.
+     *
+     * @param type The generic type.
+     * @return The serializer, or <code>null</code> if the type is not a supported collection.
+     */
+    @ApiStatus.Internal
+    static @Nullable TypeSerializer<?> resolve(@NotNull Type type) {
+        if (type instanceof Class<?> clazz) {
+            if (isList(clazz) || isSet(clazz) || isMap(clazz)) {
+                throw new IllegalArgumentException("Collection type " + clazz.getSimpleName() + " is missing type arguments");
+            }
+
+            return null;
+        }
+
+        if (!(type instanceof ParameterizedType parameterized) || !(parameterized.getRawType() instanceof Class<?> raw)) return null;
+
+        final Type[] arguments = parameterized.getActualTypeArguments();
+
+        if (isList(raw)) return listOf(argumentClass(arguments[0], type));
+        if (isSet(raw)) return setOf(argumentClass(arguments[0], type));
+
+        if (isMap(raw)) {
+            if (arguments[0] != String.class) {
+                throw new IllegalArgumentException("Only maps with String keys are supported, got " + type.getTypeName());
+            }
+
+            final TypeSerializer<?> values = SerializerRegistry.get(argumentClass(arguments[1], type));
+            if (values == null) {
+                throw new IllegalArgumentException("No serializer registered for the values of " + type.getTypeName());
+            }
+
+            return mapOf(values);
+        }
+
+        return null;
+    }
+
+    private static boolean isList(@NotNull Class<?> clazz) {
+        return clazz == List.class || clazz == Collection.class || clazz == ArrayList.class;
+    }
+
+    private static boolean isSet(@NotNull Class<?> clazz) {
+        return clazz == Set.class || clazz == HashSet.class || clazz == LinkedHashSet.class;
+    }
+
+    private static boolean isMap(@NotNull Class<?> clazz) {
+        return clazz == Map.class || clazz == HashMap.class || clazz == LinkedHashMap.class;
+    }
+
+    private static @NotNull Class<?> argumentClass(@NotNull Type argument, @NotNull Type owner) {
+        if (argument instanceof Class<?> clazz) return clazz;
+
+        throw new IllegalArgumentException("Unsupported type argument " + argument.getTypeName() + " in " + owner.getTypeName());
+    }
+
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    /**
+     * The packed NBT encodings of the supported element types.
+     */
+    private enum Packing {
+        INT {
+            @Override
+            void write(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Collection<?> values) {
+                if (values instanceof IntCollection ints) {
+                    nbt.putIntArray(key, ints.toIntArray());
+                    return;
+                }
+
+                final int[] array = new int[values.size()];
+                int i = 0;
+                for (Object value : values) array[i++] = ((Number) value).intValue();
+                nbt.putIntArray(key, array);
+            }
+
+            @Override
+            <C extends Collection<Object>> @NotNull C read(@NotNull NbtCompound nbt, @NotNull String key, @NotNull IntFunction<C> factory) {
+                final int[] array = nbt.getIntArray(key);
+                final C values = factory.apply(array.length);
+                for (int value : array) values.add(value);
+                return values;
+            }
+        },
+        SHORT {
+            @Override
+            void write(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Collection<?> values) {
+                INT.write(nbt, key, values);
+            }
+
+            @Override
+            <C extends Collection<Object>> @NotNull C read(@NotNull NbtCompound nbt, @NotNull String key, @NotNull IntFunction<C> factory) {
+                final int[] array = nbt.getIntArray(key);
+                final C values = factory.apply(array.length);
+                for (int value : array) values.add((short) value);
+                return values;
+            }
+        },
+        BYTE {
+            @Override
+            void write(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Collection<?> values) {
+                final byte[] array = new byte[values.size()];
+                int i = 0;
+                for (Object value : values) array[i++] = (Byte) value;
+                nbt.putByteArray(key, array);
+            }
+
+            @Override
+            <C extends Collection<Object>> @NotNull C read(@NotNull NbtCompound nbt, @NotNull String key, @NotNull IntFunction<C> factory) {
+                final byte[] array = nbt.getByteArray(key);
+                final C values = factory.apply(array.length);
+                for (byte value : array) values.add(value);
+                return values;
+            }
+        },
+        BOOLEAN {
+            @Override
+            void write(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Collection<?> values) {
+                final byte[] array = new byte[values.size()];
+                int i = 0;
+                for (Object value : values) array[i++] = (Boolean) value ? (byte) 1 : (byte) 0;
+                nbt.putByteArray(key, array);
+            }
+
+            @Override
+            <C extends Collection<Object>> @NotNull C read(@NotNull NbtCompound nbt, @NotNull String key, @NotNull IntFunction<C> factory) {
+                final byte[] array = nbt.getByteArray(key);
+                final C values = factory.apply(array.length);
+                for (byte value : array) values.add(value != 0);
+                return values;
+            }
+        },
+        LONG {
+            @Override
+            void write(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Collection<?> values) {
+                if (values instanceof LongCollection longs) {
+                    nbt.putLongArray(key, longs.toLongArray());
+                    return;
+                }
+
+                final long[] array = new long[values.size()];
+                int i = 0;
+                for (Object value : values) array[i++] = (Long) value;
+                nbt.putLongArray(key, array);
+            }
+
+            @Override
+            <C extends Collection<Object>> @NotNull C read(@NotNull NbtCompound nbt, @NotNull String key, @NotNull IntFunction<C> factory) {
+                final long[] array = nbt.getLongArray(key);
+                final C values = factory.apply(array.length);
+                for (long value : array) values.add(value);
+                return values;
+            }
+        },
+        FLOAT {
+            @Override
+            void write(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Collection<?> values) {
+                final int[] array = new int[values.size()];
+                int i = 0;
+                for (Object value : values) array[i++] = Float.floatToRawIntBits((Float) value);
+                nbt.putIntArray(key, array);
+            }
+
+            @Override
+            <C extends Collection<Object>> @NotNull C read(@NotNull NbtCompound nbt, @NotNull String key, @NotNull IntFunction<C> factory) {
+                final int[] array = nbt.getIntArray(key);
+                final C values = factory.apply(array.length);
+                for (int value : array) values.add(Float.intBitsToFloat(value));
+                return values;
+            }
+        },
+        DOUBLE {
+            @Override
+            void write(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Collection<?> values) {
+                final long[] array = new long[values.size()];
+                int i = 0;
+                for (Object value : values) array[i++] = Double.doubleToRawLongBits((Double) value);
+                nbt.putLongArray(key, array);
+            }
+
+            @Override
+            <C extends Collection<Object>> @NotNull C read(@NotNull NbtCompound nbt, @NotNull String key, @NotNull IntFunction<C> factory) {
+                final long[] array = nbt.getLongArray(key);
+                final C values = factory.apply(array.length);
+                for (long value : array) values.add(Double.longBitsToDouble(value));
+                return values;
+            }
+        },
+        STRING {
+            @Override
+            void write(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Collection<?> values) {
+                final NbtList list = new NbtList();
+                for (Object value : values) list.add(NbtString.of((String) value));
+                nbt.put(key, list);
+            }
+
+            @Override
+            <C extends Collection<Object>> @NotNull C read(@NotNull NbtCompound nbt, @NotNull String key, @NotNull IntFunction<C> factory) {
+                final NbtList list = nbt.getList(key, NbtElement.STRING_TYPE);
+                final C values = factory.apply(list.size());
+                for (int i = 0; i < list.size(); i++) values.add(list.getString(i));
+                return values;
+            }
+        };
+
+        abstract void write(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Collection<?> values);
+
+        abstract <C extends Collection<Object>> @NotNull C read(@NotNull NbtCompound nbt, @NotNull String key, @NotNull IntFunction<C> factory);
+
+        static @NotNull Packing of(@NotNull Class<?> element) {
+            if (element == Integer.class) return INT;
+            if (element == Short.class) return SHORT;
+            if (element == Byte.class) return BYTE;
+            if (element == Boolean.class) return BOOLEAN;
+            if (element == Long.class) return LONG;
+            if (element == Float.class) return FLOAT;
+            if (element == Double.class) return DOUBLE;
+            if (element == String.class) return STRING;
+
+            throw new IllegalArgumentException("Unsupported collection element type " + element.getSimpleName());
+        }
+    }
+}
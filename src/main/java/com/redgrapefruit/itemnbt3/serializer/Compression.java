@@ -0,0 +1,26 @@
+package com.redgrapefruit.itemnbt3.serializer;
+
+/**
+ * The compression methods that the built-in array serializers support.
+ * <br><br>
+ * All compressed arrays are stored as a byte array in NBT.
+ */
+public enum Compression {
+    /**
+     * The array is stored as-is.
+     */
+    NONE,
+    /**
+     * Runs of repeated values are stored as a value and a run length. Works best for arrays with long runs of zeros.
+     */
+    RUN_LENGTH,
+    /**
+     * The differences between neighbouring values are stored as variable-length integers.
+     * Works best for sorted or slowly changing arrays.
+     */
+    DELTA_VARINT,
+    /**
+     * The array is compressed with a {@link java.util.zip.Deflater}. Only available for byte arrays.
+     */
+    DEFLATE
+}
@@ -0,0 +1,88 @@
+package com.redgrapefruit.itemnbt3.serializer;
+
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * An {@link EnumTypeSerializer} stores an enum constant by its ordinal.
+ * <br><br>
+ * The enum's <code>values()</code> array is cached once, so reading doesn't clone it every time.
+ * Enums with up to 256 constants are stored in a single byte. Unknown ordinals are read as the first constant.
+ *
+ * @param <E> The enum type that this serializer handles.
+ */
+public final class EnumTypeSerializer<E extends Enum<E>> implements TypeSerializer<E> {
+    // Created once per enum class, and safe to look up from any thread
+    private static final @NotNull ClassValue<EnumTypeSerializer<?>> SERIALIZERS = new ClassValue<>() {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected EnumTypeSerializer<?> computeValue(@NotNull Class<?> clazz) {
+            return new EnumTypeSerializer(clazz);
+        }
+    };
+
+    private final @NotNull E[] values;
+    private final boolean fitsInByte;
+
+    private EnumTypeSerializer(@NotNull Class<E> clazz) {
+        this.values = clazz.getEnumConstants();
+        this.fitsInByte = values.length <= 256;
+
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Enum " + clazz.getSimpleName() + " has no constants to serialize");
+        }
+    }
+
+    /**
+     * Gets the cached serializer for an enum class.
+     *
+     * @param clazz The enum class.
+     * @param <E> The enum type.
+     * @return The serializer for that enum.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>> @NotNull EnumTypeSerializer<E> of(@NotNull Class<E> clazz) {
+        Objects.requireNonNull(clazz);
+
+        return (EnumTypeSerializer<E>) SERIALIZERS.get(clazz);
+    }
+
+    /**
+     * @return The cached constants of the enum, which must not be modified.
+     */
+    public @NotNull E[] getValues() {
+        return values;
+    }
+
+    /**
+     * @param ordinal An ordinal.
+     * @return The constant with that ordinal, or the first constant if it is out of range.
+     */
+    public @NotNull E byOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < values.length ? values[ordinal] : values[0];
+    }
+
+    @Override
+    public @NotNull E getFallback() {
+        return values[0];
+    }
+
+    @Override
+    public E readNbt(@NotNull String key, @NotNull NbtCompound nbt) {
+        return byOrdinal(fitsInByte ? nbt.getByte(key) & 0xFF : nbt.getInt(key));
+    }
+
+    @Override
+    public void writeNbt(@NotNull String key, @NotNull NbtCompound nbt, @NotNull E value) {
+        //noinspection ConstantConditions
+        final int ordinal = value == null ? 0 : value.ordinal();
+
+        if (fitsInByte) {
+            nbt.putByte(key, (byte) ordinal);
+        } else {
+            nbt.putInt(key, ordinal);
+        }
+    }
+}
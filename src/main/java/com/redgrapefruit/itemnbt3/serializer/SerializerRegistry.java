@@ -1,10 +1,21 @@
 package com.redgrapefruit.itemnbt3.serializer;
 
+import com.redgrapefruit.itemnbt3.linking.Compressed;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.reflect.Field;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -16,6 +27,12 @@ import java.util.UUID;
  * <br><br>
  * If a type is a <b>composite type</b>: can be broken down into primitives/already-handled-types/other-composite-types,
  * a serializer for it is not needed.
+ * <br><br>
+ * Array types can additionally have compressed serializers, one per {@link Compression} method, which are selected
+ * with the {@link Compressed} annotation.
+ * <br><br>
+ * Generic {@link java.util.List}, {@link java.util.Set} and {@link java.util.Map} fields are resolved through
+ * {@link CollectionSerializers} based on their type arguments, enums through a cached {@link EnumTypeSerializer}.
  */
 public final class SerializerRegistry {
     private static final @NotNull Map<Class<?>, TypeSerializer<?>> registry = new HashMap<>();
@@ -33,6 +50,30 @@ public final class SerializerRegistry {
         registry.put(int[].class, BuiltinTypeSerializer.INT_ARRAY);
         registry.put(long[].class, BuiltinTypeSerializer.LONG_ARRAY);
         registry.put(boolean.class, BuiltinTypeSerializer.BOOL);
+
+        registry.put(IntList.class, CollectionSerializers.INT_LIST);
+        registry.put(IntArrayList.class, CollectionSerializers.INT_LIST);
+        registry.put(LongList.class, CollectionSerializers.LONG_LIST);
+        registry.put(LongArrayList.class, CollectionSerializers.LONG_LIST);
+        registry.put(IntSet.class, CollectionSerializers.INT_SET);
+        registry.put(IntOpenHashSet.class, CollectionSerializers.INT_SET);
+        registry.put(LongSet.class, CollectionSerializers.LONG_SET);
+        registry.put(LongOpenHashSet.class, CollectionSerializers.LONG_SET);
+    }
+
+    private static final @NotNull Map<Compression, Map<Class<?>, TypeSerializer<?>>> compressedRegistry = new EnumMap<>(Compression.class);
+
+    static {
+        for (Compression compression : Compression.values()) {
+            compressedRegistry.put(compression, new HashMap<>());
+        }
+
+        compressedRegistry.get(Compression.RUN_LENGTH).put(byte[].class, BuiltinTypeSerializer.RUN_LENGTH_BYTE_ARRAY);
+        compressedRegistry.get(Compression.RUN_LENGTH).put(int[].class, BuiltinTypeSerializer.RUN_LENGTH_INT_ARRAY);
+        compressedRegistry.get(Compression.RUN_LENGTH).put(long[].class, BuiltinTypeSerializer.RUN_LENGTH_LONG_ARRAY);
+        compressedRegistry.get(Compression.DELTA_VARINT).put(int[].class, BuiltinTypeSerializer.DELTA_INT_ARRAY);
+        compressedRegistry.get(Compression.DELTA_VARINT).put(long[].class, BuiltinTypeSerializer.DELTA_LONG_ARRAY);
+        compressedRegistry.get(Compression.DEFLATE).put(byte[].class, BuiltinTypeSerializer.DEFLATE_BYTE_ARRAY);
     }
 
     private static final @NotNull Logger LOGGER = LogManager.getLogger();
@@ -60,13 +101,77 @@ public final class SerializerRegistry {
         registry.put(clazz, serializer);
     }
 
+    /**
+     * Registers a custom compressed serializer for a non-composite type.
+     *
+     * @param clazz The class of the non-composite type.
+     * @param compression The {@link Compression} method that this serializer implements.
+     * @param serializer The serializer for that type.
+     * @param <T> That type in generics.
+     */
+    public static <T> void register(@NotNull Class<T> clazz, @NotNull Compression compression, @NotNull TypeSerializer<T> serializer) {
+        Objects.requireNonNull(clazz);
+        Objects.requireNonNull(compression);
+        Objects.requireNonNull(serializer);
+
+        if (compression == Compression.NONE) {
+            register(clazz, serializer);
+            return;
+        }
+
+        final Map<Class<?>, TypeSerializer<?>> compressed = compressedRegistry.get(compression);
+
+        if (compressed.containsKey(clazz)) {
+            LOGGER.warn("Tried to register duplicate compressed serializer");
+            return;
+        }
+
+        compressed.put(clazz, serializer);
+    }
+
     @ApiStatus.Internal
     public static boolean contains(@NotNull Class<?> clazz) {
-        return registry.containsKey(clazz);
+        return registry.containsKey(clazz) || clazz.isEnum();
     }
 
     @ApiStatus.Internal
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public static TypeSerializer<?> get(@NotNull Class<?> clazz) {
-        return registry.get(clazz);
+        final TypeSerializer<?> serializer = registry.get(clazz);
+        if (serializer == null && clazz.isEnum()) return EnumTypeSerializer.of((Class) clazz);
+
+        return serializer;
+    }
+
+    @ApiStatus.Internal
+    public static TypeSerializer<?> get(@NotNull Class<?> clazz, @NotNull Compression compression) {
+        if (compression == Compression.NONE) return registry.get(clazz);
+
+        return compressedRegistry.get(compression).get(clazz);
+    }
+
+    /**
+     * Finds the serializer for a reflect-field, taking its {@link Compressed} annotation and generic type into account.
+     *
+     * @param field The reflect-field.
+     * @return The serializer, or <code>null</code> if the field is of a composite type.
+     */
+    @ApiStatus.Internal
+    public static TypeSerializer<?> resolve(@NotNull Field field) {
+        Objects.requireNonNull(field);
+
+        if (!field.isAnnotationPresent(Compressed.class)) {
+            final TypeSerializer<?> serializer = get(field.getType());
+            return serializer != null ? serializer : CollectionSerializers.resolve(field.getGenericType());
+        }
+
+        final Compression compression = field.getAnnotation(Compressed.class).value();
+        final TypeSerializer<?> serializer = get(field.getType(), compression);
+
+        if (serializer == null) {
+            throw new IllegalArgumentException("No " + compression + " serializer registered for field " + field.getName() + " of type " + field.getType().getSimpleName());
+        }
+
+        return serializer;
     }
 }
@@ -1,15 +1,18 @@
 package com.redgrapefruit.itemnbt3.serializer;
 
+import com.redgrapefruit.itemnbt3.tree.ValueType;
 import net.minecraft.nbt.NbtCompound;
 import org.jetbrains.annotations.NotNull;
 
 /**
  * A {@link TypeSerializer} provides you with the means of serializing the {@link T} data type into its
  * NBT representation and back.
+ * <br><br>
+ * Its {@link ValueType#getFallback()} is written in place of a missing value by backends other than NBT.
  *
  * @param <T> The data type that this {@link TypeSerializer} handles
  */
-public interface TypeSerializer<T> {
+public interface TypeSerializer<T> extends ValueType<T> {
     /**
      * Read your data type from its NBT representation.
      *
@@ -0,0 +1,19 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link Migrator} upgrades the stored data of a {@link Specification} by one version, for example by renaming a key,
+ * converting a value to another type or restructuring a nested compound.
+ * <br><br>
+ * Migrators work on the raw NBT, since old data doesn't match the current {@link Specification}. Keys that are missing
+ * should be tolerated, because elided or never-written fields are missing as well.
+ */
+@FunctionalInterface
+public interface Migrator {
+    /**
+     * @param nbt The compound of the {@link Specification}, to be modified in place.
+     */
+    void migrate(@NotNull NbtCompound nbt);
+}
@@ -0,0 +1,277 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import com.redgrapefruit.itemnbt3.serializer.EnumTypeSerializer;
+import com.redgrapefruit.itemnbt3.tree.DataTree;
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The {@link PackedLayout} is the compiled plan for the packed fields of a {@link Specification}.
+ * <br><br>
+ * Every packed field gets a fixed bit range in one of the packed words, in the order the fields were added.
+ * A field that doesn't fit into the remaining bits of a word starts a new word.
+ * Words are stored as <code>NbtLong</code>s under the keys <code>^packed0</code>, <code>^packed1</code> and so on.
+ */
+final class PackedLayout {
+    static final @NotNull String KEY_PREFIX = "^packed";
+
+    enum Kind {
+        BOOL(DataCompound.BOOL, 1L),
+        BYTE(DataCompound.BYTE, 0xFFL),
+        SHORT(DataCompound.SHORT, 0xFFFFL),
+        INT(DataCompound.INT, 0xFFFFFFFFL),
+        ENUM((byte) 0, 0xFFFFFFFFL);
+
+        // The kind of DataCompound cell the values are kept in, 0 for enums, which aren't
+        private final byte cell;
+        // Masks the sign-extension of the cell's bits off, leaving the unsigned value
+        private final long unsigned;
+
+        Kind(byte cell, long unsigned) {
+            this.cell = cell;
+            this.unsigned = unsigned;
+        }
+    }
+
+    private String[] names = new String[0];
+    private Kind[] kinds = new Kind[0];
+    private EnumTypeSerializer<?>[] enums = new EnumTypeSerializer<?>[0];
+    private int[] words = new int[0];
+    private int[] shifts = new int[0];
+    private long[] masks = new long[0];
+    private String[] wordKeys = new String[0];
+    private int[] wordStarts = new int[0];
+    private int size = 0;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(@NotNull String name) {
+        return indexOf(name) != -1;
+    }
+
+    int indexOf(@NotNull String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) return i;
+        }
+
+        return -1;
+    }
+
+    @NotNull String[] getWordKeys() {
+        return wordKeys;
+    }
+
+    void add(@NotNull String name, @NotNull Kind kind, int bits, @Nullable EnumTypeSerializer<?> serializer) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(kind);
+
+        if (contains(name)) return;
+
+        if (kind == Kind.BOOL) bits = 1;
+        if (kind == Kind.ENUM) {
+            Objects.requireNonNull(serializer);
+            bits = Math.max(bits, 32 - Integer.numberOfLeadingZeros(Math.max(serializer.getValues().length - 1, 1)));
+        }
+
+        final int maxBits = switch (kind) {
+            case BOOL -> 1;
+            case BYTE -> 8;
+            case SHORT -> 16;
+            case INT, ENUM -> 32;
+        };
+
+        if (bits < 1 || bits > maxBits) {
+            throw new IllegalArgumentException("Packed field " + name + " must have between 1 and " + maxBits + " bits, got " + bits);
+        }
+
+        int word = size == 0 ? 0 : words[size - 1];
+        int shift = size == 0 ? 0 : shifts[size - 1] + Long.bitCount(masks[size - 1]);
+
+        if (shift + bits > Long.SIZE) {
+            ++word;
+            shift = 0;
+        }
+
+        names = Arrays.copyOf(names, size + 1);
+        kinds = Arrays.copyOf(kinds, size + 1);
+        enums = Arrays.copyOf(enums, size + 1);
+        words = Arrays.copyOf(words, size + 1);
+        shifts = Arrays.copyOf(shifts, size + 1);
+        masks = Arrays.copyOf(masks, size + 1);
+
+        names[size] = name;
+        kinds[size] = kind;
+        enums[size] = serializer;
+        words[size] = word;
+        shifts[size] = shift;
+        masks[size] = bits == Long.SIZE ? -1L : (1L << bits) - 1L;
+        ++size;
+
+        if (word >= wordKeys.length) {
+            wordKeys = Arrays.copyOf(wordKeys, word + 1);
+            wordKeys[word] = Utilities.internKey(KEY_PREFIX + word);
+            wordStarts = Arrays.copyOf(wordStarts, word + 1);
+            wordStarts[word] = size - 1;
+        }
+    }
+
+    void write(@NotNull NbtCompound nbt, @NotNull DataCompound compound) {
+        write(nbt, compound, null, Set.of());
+    }
+
+    void read(@NotNull NbtCompound nbt, @NotNull DataCompound compound) {
+        read(nbt, compound, null);
+    }
+
+    /**
+     * Writes the words, leaving out the ones equal to the word of the defaults unless they contain one of the kept fields.
+     */
+    void write(@NotNull NbtCompound nbt, @NotNull DataCompound compound, @Nullable DataCompound defaults, @NotNull Set<String> kept) {
+        for (int word = 0; word < wordKeys.length; word++) {
+            final long bits = pack(word, compound);
+
+            if (defaults != null && bits == pack(word, defaults) && !containsAny(word, kept)) continue;
+
+            nbt.putLong(wordKeys[word], bits);
+        }
+    }
+
+    /**
+     * Reads the words, taking missing ones from the defaults if there are any.
+     */
+    void read(@NotNull NbtCompound nbt, @NotNull DataCompound compound, @Nullable DataCompound defaults) {
+        for (int word = 0; word < wordKeys.length; word++) {
+            final long bits = defaults != null && !nbt.contains(wordKeys[word]) ? pack(word, defaults) : nbt.getLong(wordKeys[word]);
+            unpack(word, bits, compound);
+        }
+    }
+
+    private boolean containsAny(int word, @NotNull Set<String> fields) {
+        if (fields.isEmpty()) return false;
+
+        for (int i = wordStarts[word]; i < size && words[i] == word; i++) {
+            if (fields.contains(names[i])) return true;
+        }
+
+        return false;
+    }
+
+    void write(@NotNull DataTree tree, @NotNull DataCompound compound) {
+        for (int word = 0; word < wordKeys.length; word++) {
+            tree.putLong(wordKeys[word], pack(word, compound));
+        }
+    }
+
+    void read(@NotNull DataTree tree, @NotNull DataCompound compound) {
+        for (int word = 0; word < wordKeys.length; word++) {
+            unpack(word, tree.getLong(wordKeys[word]), compound);
+        }
+    }
+
+    /**
+     * Reads a single field, taking its word from the defaults if it is missing and there are any.
+     */
+    @NotNull Object read(@NotNull NbtCompound nbt, int index, @Nullable DataCompound defaults) {
+        final int word = words[index];
+        final long bits = defaults != null && !nbt.contains(wordKeys[word]) ? pack(word, defaults) : nbt.getLong(wordKeys[word]);
+
+        return decode(index, (bits >>> shifts[index]) & masks[index]);
+    }
+
+    /**
+     * @return The bits of all fields in the given word.
+     */
+    long pack(int word, @NotNull DataCompound compound) {
+        long bits = 0L;
+
+        for (int i = wordStarts[word]; i < size && words[i] == word; i++) {
+            bits |= (encode(i, compound.getCell(names[i])) & masks[i]) << shifts[i];
+        }
+
+        return bits;
+    }
+
+    /**
+     * Puts the values of all fields in the given word into the compound.
+     */
+    void unpack(int word, long bits, @NotNull DataCompound compound) {
+        for (int i = wordStarts[word]; i < size && words[i] == word; i++) {
+            final long value = (bits >>> shifts[i]) & masks[i];
+
+            // The typed puts update the compound's cells in place instead of boxing
+            switch (kinds[i]) {
+                case BOOL -> compound.putBool(names[i], value != 0L);
+                case BYTE -> compound.putByte(names[i], (byte) value);
+                case SHORT -> compound.putShort(names[i], (short) value);
+                case INT -> compound.putInt(names[i], (int) value);
+                case ENUM -> compound.put(names[i], enums[i].byOrdinal((int) value));
+            }
+        }
+    }
+
+    /**
+     * @return The amount of packed fields that differ between the two compounds.
+     */
+    int countChanged(@NotNull DataCompound before, @NotNull DataCompound after) {
+        int changed = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (!before.valueEquals(names[i], after)) ++changed;
+        }
+
+        return changed;
+    }
+
+    /**
+     * @param cell The value as the compound holds it, see {@link DataCompound#getCell(String)}.
+     */
+    private long encode(int index, @Nullable Object cell) {
+        if (cell == null) return 0L;
+
+        final Kind kind = kinds[index];
+        final long encoded;
+
+        if (cell instanceof DataCompound.Primitive primitive && primitive.getKind() == kind.cell) {
+            encoded = primitive.getBits() & kind.unsigned;
+        } else {
+            // Values put without the typed methods, which fail like a cast if they have another type
+            final Object value = DataCompound.unwrap(cell);
+
+            encoded = switch (kind) {
+                case BOOL -> (Boolean) value ? 1L : 0L;
+                case BYTE -> (Byte) value & 0xFFL;
+                case SHORT -> (Short) value & 0xFFFFL;
+                case INT -> (Integer) value & 0xFFFFFFFFL;
+                case ENUM -> ((Enum<?>) value).ordinal();
+            };
+        }
+
+        if ((encoded & ~masks[index]) != 0) {
+            throw new IllegalArgumentException("Value " + DataCompound.unwrap(cell) + " of packed field " + names[index] + " does not fit into " + Long.bitCount(masks[index]) + " bits");
+        }
+
+        return encoded;
+    }
+
+    private @NotNull Object decode(int index, long bits) {
+        return switch (kinds[index]) {
+            case BOOL -> Boolean.valueOf(bits != 0L);
+            case BYTE -> Byte.valueOf((byte) bits);
+            case SHORT -> Short.valueOf((short) bits);
+            case INT -> Integer.valueOf((int) bits);
+            case ENUM -> enums[index].byOrdinal((int) bits);
+        };
+    }
+}
@@ -1,23 +1,43 @@
 package com.redgrapefruit.itemnbt3.specification;
 
 import com.redgrapefruit.itemnbt3.CustomData;
-import com.redgrapefruit.itemnbt3.linking.AllowInheritance;
+import com.redgrapefruit.itemnbt3.jfr.GenerationEvent;
+import com.redgrapefruit.itemnbt3.jfr.ReadNbtEvent;
+import com.redgrapefruit.itemnbt3.jfr.WriteNbtEvent;
 import com.redgrapefruit.itemnbt3.linking.Auto;
 import com.redgrapefruit.itemnbt3.linking.Composite;
+import com.redgrapefruit.itemnbt3.linking.Packed;
 import com.redgrapefruit.itemnbt3.serializer.BuiltinTypeSerializer;
+import com.redgrapefruit.itemnbt3.serializer.CollectionSerializers;
+import com.redgrapefruit.itemnbt3.serializer.Compression;
+import com.redgrapefruit.itemnbt3.serializer.EnumTypeSerializer;
 import com.redgrapefruit.itemnbt3.serializer.TypeSerializer;
 import com.redgrapefruit.itemnbt3.serializer.SerializerRegistry;
+import com.redgrapefruit.itemnbt3.tree.DataTree;
+import com.redgrapefruit.itemnbt3.tree.FlatDataTree;
+import com.redgrapefruit.itemnbt3.tree.NbtDataTree;
+import com.redgrapefruit.itemnbt3.util.NbtCompoundMixinAccess;
 import com.redgrapefruit.itemnbt3.util.Utilities;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * A {@link Specification} is the core for specification-based serialization.
@@ -27,75 +47,1103 @@ import java.util.UUID;
  *     <li>Your <b>root tree</b> with a {@link TypeSerializer} for every field</li>
  *     <li>Your <b>nested tree</b> with nested {@link Specification}s, if you have more than one level of nesting</li>
  *     <li>Your <b>identifier</b>, which serves the same purpose as an NBT category in {@link CustomData}</li>
+ *     <li>Your <b>packed fields</b>, small fields which share <code>long</code>s instead of having their own keys</li>
  * </ul>
+ * Optionally, the root tree can be stored as a single byte array in a {@link StructLayout}.
+ * <br><br>
+ * Fields can have default values, which make up the data of a stack that is used for the first time.
+ * <br><br>
+ * A {@link Specification} can be polymorphic. It then has no fields of its own and stores one of its variants,
+ * identified by an ordinal under {@link #TYPE_KEY}.
+ * <br><br>
+ * A {@link Specification} can be versioned. Data stored by an older version is upgraded by the registered
+ * {@link Migrator}s the next time it is read.
+ * <br>
  * The {@link Builder} is preferred for building out {@link Specification}s manually.
  */
 public final class Specification {
-    private final @NotNull Map<String, TypeSerializer<?>> rootTree = new HashMap<>();
-    private final @NotNull Map<String, Specification> nestedTree = new HashMap<>();
+    /**
+     * The key of the version inside the compound of a versioned {@link Specification}.
+     */
+    public static final @NotNull String VERSION_KEY = "^version";
+
+    /**
+     * The key of the variant ordinal inside the compound of a polymorphic {@link Specification}.
+     */
+    public static final @NotNull String TYPE_KEY = "^type";
+
+    /**
+     * The key of the list of keys that a delta written by {@link #writeDelta} removes before its entries are merged.
+     */
+    public static final @NotNull String REMOVED_KEY = "^removed";
+
+    // The alternatives of a polymorphic specification, indexed by their stored ordinal
+    private @NotNull Specification[] variants = new Specification[0];
+
+    private final @NotNull Map<String, TypeSerializer<?>> rootTree = new LinkedHashMap<>();
+    private final @NotNull Map<String, Specification> nestedTree = new LinkedHashMap<>();
+    private final @NotNull PackedLayout packed = new PackedLayout();
     private final @NotNull String id;
 
-    public Specification(@NotNull String id) {
-        Objects.requireNonNull(id);
+    // Array copies of the trees, iterated on the hot paths without iterators or capturing lambdas
+    private @NotNull String[] rootKeys = new String[0];
+    private @NotNull TypeSerializer<?>[] rootSerializers = new TypeSerializer<?>[0];
+    // The kinds of the plain built-in serializers, whose numbers and booleans are read and written without boxing
+    private @NotNull StructLayout.Kind[] rootKinds = new StructLayout.Kind[0];
+    private @NotNull String[] nestedKeys = new String[0];
+    private @NotNull Specification[] nestedSpecs = new Specification[0];
+
+    // -1 if the struct layout is disabled, computed lazily since fields can still be added after enabling it
+    private int structVersion = -1;
+    private @Nullable StructLayout structLayout = null;
+
+    // Canonical instances of every key of this specification, see canonicalizeKeys
+    private @Nullable Map<String, String> keyTable = null;
+
+    private final @NotNull Map<String, Object> defaults = new HashMap<>();
+    private final @NotNull Map<String, Supplier<?>> defaultSuppliers = new HashMap<>();
+    // The state of a stack that is used for the first time, computed lazily and only ever copied
+    private volatile @Nullable DefaultState defaultState = null;
+    private boolean elideDefaults = false;
+
+    private final @NotNull Map<String, DerivedProperty<?>> derivedProperties = new HashMap<>();
+    // Whether all dependencies of each property are immutable here, so that its value can outlive the compound.
+    // Kept per specification, since a property can be declared by several with different field types
+    private @NotNull DerivedProperty<?>[] derivedOrder = new DerivedProperty<?>[0];
+    private boolean[] derivedStable = new boolean[0];
+
+    private int version = 0;
+    // Migrators by the version they upgrade from, and their compositions by (from, to)
+    private final @NotNull Map<Integer, Migrator> migrators = new HashMap<>();
+    private final @NotNull Map<Long, Migrator> upgrades = new ConcurrentHashMap<>();
+
+    public Specification(@NotNull String id) {
+        Objects.requireNonNull(id);
+
+        this.id = id;
+    }
+
+    /**
+     * Add a new element to the {@link Specification}'s root tree.
+     *
+     * @param key The NBT key.
+     * @param serializer The {@link TypeSerializer} to read & write that key.
+     */
+    public void add(@NotNull String key, @NotNull TypeSerializer<?> serializer) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(serializer);
+
+        key = Utilities.internKey(key);
+
+        if (rootTree.putIfAbsent(key, serializer) == null) {
+            rootKeys = Utilities.append(rootKeys, key);
+            rootSerializers = Utilities.append(rootSerializers, serializer);
+            rootKinds = Arrays.copyOf(rootKinds, rootKinds.length + 1);
+            rootKinds[rootKinds.length - 1] = StructLayout.Kind.of(serializer);
+            structLayout = null;
+            keyTable = null;
+            invalidateDefaults();
+
+            // A shared random fallback would give every stack the same UUID
+            if (serializer == BuiltinTypeSerializer.UUID) defaultSuppliers.putIfAbsent(key, UUID::randomUUID);
+        }
+    }
+
+    /**
+     * Adds a new element to the {@link Specification}'s nested tree.
+     *
+     * @param key The NBT key.
+     * @param specification The nested {@link Specification}.
+     */
+    public void add(@NotNull String key, @NotNull Specification specification) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(specification);
+
+        key = Utilities.internKey(key);
+
+        if (nestedTree.putIfAbsent(key, specification) == null) {
+            nestedKeys = Utilities.append(nestedKeys, key);
+            nestedSpecs = Utilities.append(nestedSpecs, specification);
+            keyTable = null;
+            invalidateDefaults();
+        }
+    }
+
+    /**
+     * Adds a new packed field, which is stored in a shared <code>long</code> together with the other packed fields.
+     * <br><br>
+     * Packed fields are laid out in the order they are added, so that order must stay the same for stored data to remain readable.
+     *
+     * @param key The key of the field in the {@link DataCompound}.
+     * @param type The type of the field: <code>boolean</code>, <code>byte</code>, <code>short</code>, <code>int</code> or an enum.
+     * @param bits The amount of bits for the field. Ignored for <code>boolean</code>s, a minimum for enums.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void addPacked(@NotNull String key, @NotNull Class<?> type, int bits) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(type);
+
+        key = Utilities.internKey(key);
+        keyTable = null;
+        invalidateDefaults();
+
+        if (type == boolean.class || type == Boolean.class) {
+            packed.add(key, PackedLayout.Kind.BOOL, 1, null);
+        } else if (type == byte.class || type == Byte.class) {
+            packed.add(key, PackedLayout.Kind.BYTE, bits, null);
+        } else if (type == short.class || type == Short.class) {
+            packed.add(key, PackedLayout.Kind.SHORT, bits, null);
+        } else if (type == int.class || type == Integer.class) {
+            packed.add(key, PackedLayout.Kind.INT, bits, null);
+        } else if (type.isEnum()) {
+            packed.add(key, PackedLayout.Kind.ENUM, bits, EnumTypeSerializer.of((Class) type));
+        } else {
+            throw new IllegalArgumentException("Type " + type.getSimpleName() + " of field " + key + " can't be packed");
+        }
+    }
+
+    /**
+     * Adds a variant, which makes this {@link Specification} polymorphic. Its own fields are then ignored.
+     * <br><br>
+     * Variants are identified by the order they are added in, stored as a single byte, so new variants must only be appended.
+     *
+     * @param variant The {@link Specification} of the variant.
+     */
+    public void addVariant(@NotNull Specification variant) {
+        Objects.requireNonNull(variant);
+
+        if (variants.length == 256) throw new IllegalStateException("Specification " + id + " can't have more than 256 variants");
+
+        variants = Utilities.append(variants, variant);
+        keyTable = null;
+        invalidateDefaults();
+    }
+
+    public boolean isPolymorphic() {
+        return variants.length != 0;
+    }
+
+    private @NotNull Specification getVariant(int ordinal) {
+        if (ordinal < 0 || ordinal >= variants.length) {
+            throw new IllegalStateException("Specification " + id + " has no variant " + ordinal);
+        }
+
+        return variants[ordinal];
+    }
+
+    /**
+     * @return The ordinal of the variant stored in the compound, the first variant if there is none yet.
+     */
+    private static int getVariantOrdinal(@NotNull DataCompound compound) {
+        final Integer ordinal = compound.get(TYPE_KEY);
+        return ordinal == null ? 0 : ordinal;
+    }
+
+    /**
+     * Declares a {@link DerivedProperty} computed from fields of this {@link Specification}.
+     *
+     * @param property The {@link DerivedProperty}, whose dependencies must be root or packed fields of this {@link Specification}.
+     */
+    public void addDerived(@NotNull DerivedProperty<?> property) {
+        Objects.requireNonNull(property);
+
+        boolean stable = true;
+
+        for (String dependency : property.getDependencies()) {
+            if (!rootTree.containsKey(dependency) && !packed.contains(dependency)) {
+                throw new IllegalArgumentException("Derived property " + property.getName() + " depends on unknown field " + dependency);
+            }
+
+            if (!packed.contains(dependency) && !isImmutable(rootTree.get(dependency))) stable = false;
+        }
+
+        if (derivedProperties.putIfAbsent(property.getName(), property) != null) {
+            throw new IllegalArgumentException("Specification " + id + " already has a derived property " + property.getName());
+        }
+
+        derivedOrder = Utilities.append(derivedOrder, property);
+        derivedStable = Arrays.copyOf(derivedStable, derivedStable.length + 1);
+        derivedStable[derivedStable.length - 1] = stable;
+    }
+
+    /**
+     * @return Whether the property is declared by this {@link Specification} and only depends on immutable fields,
+     * so that its value stays valid after the compound it was computed for is gone.
+     */
+    @ApiStatus.Internal
+    public boolean isStableDerived(@NotNull DerivedProperty<?> property) {
+        for (int i = 0; i < derivedOrder.length; i++) {
+            if (derivedOrder[i] == property) return derivedStable[i];
+        }
+
+        return false;
+    }
+
+    private static boolean isImmutable(@NotNull TypeSerializer<?> serializer) {
+        final StructLayout.Kind kind = StructLayout.Kind.of(serializer);
+
+        return kind != null && kind != StructLayout.Kind.BYTE_ARRAY && kind != StructLayout.Kind.INT_ARRAY && kind != StructLayout.Kind.LONG_ARRAY;
+    }
+
+    /**
+     * @return The {@link DerivedProperty} with the given name.
+     * @throws IllegalArgumentException If there is no such property.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> @NotNull DerivedProperty<T> getDerived(@NotNull String name) {
+        Objects.requireNonNull(name);
+
+        final DerivedProperty<?> property = derivedProperties.get(name);
+        if (property == null) throw new IllegalArgumentException("Specification " + id + " has no derived property " + name);
+
+        return (DerivedProperty<T>) property;
+    }
+
+    /**
+     * Stores the root tree as one byte array read at computed offsets instead of as separate NBT entries.
+     * <br><br>
+     * Only fields with a plain {@link BuiltinTypeSerializer} are laid out, the rest keep their own keys.
+     * Data written with a different schema version or different fields is read from the separate entries instead,
+     * so the version must be bumped whenever the root tree changes in a way that should discard stored structs.
+     *
+     * @param version The schema version stored in the header of the array, between 0 and {@link Short#MAX_VALUE}.
+     */
+    public void useStructLayout(int version) {
+        if (version < 0 || version > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Struct schema version must be between 0 and " + Short.MAX_VALUE);
+        }
+
+        structVersion = version;
+        structLayout = null;
+        invalidateDefaults();
+    }
+
+    /**
+     * Sets the default value of a field, which is used instead of the serializer's fallback when a stack is used for the first time.
+     *
+     * @param key The key of a root or packed field.
+     * @param value The default value, shared by all stacks, so it should be immutable.
+     */
+    public void setDefault(@NotNull String key, @NotNull Object value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+
+        checkDefaultKey(key);
+        key = Utilities.internKey(key);
+
+        defaultSuppliers.remove(key);
+        defaults.put(key, value);
+        invalidateDefaults();
+    }
+
+    /**
+     * Sets a supplier for the default value of a field, which is called for every stack that is used for the first time.
+     * Meant for values that must be unique per stack, {@link UUID} fields get {@link UUID#randomUUID()} automatically.
+     *
+     * @param key The key of a root or packed field.
+     * @param supplier The supplier of the default value.
+     */
+    public void setDefaultSupplier(@NotNull String key, @NotNull Supplier<?> supplier) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(supplier);
+
+        checkDefaultKey(key);
+        key = Utilities.internKey(key);
+
+        defaults.remove(key);
+        defaultSuppliers.put(key, supplier);
+        invalidateDefaults();
+    }
+
+    /**
+     * Omits fields that are equal to their default value when writing, and fills them in from the defaults when reading.
+     * This shrinks the NBT of mostly-default stacks on disk, in packets and in stack comparisons.
+     * <br><br>
+     * Fields with a default supplier and fields in a {@link StructLayout} are always written.
+     * Nested compounds that end up empty are left out as well.
+     * Data written with elision can't be read correctly without it, so it can't be turned off again once enabled.
+     */
+    public void useDefaultElision() {
+        elideDefaults = true;
+    }
+
+    @ApiStatus.Internal
+    public boolean isElidingDefaults() {
+        return elideDefaults;
+    }
+
+    /**
+     * Sets the current version of this {@link Specification}, which is stored in every written compound.
+     * Raise it whenever a change makes old data unreadable, and register a {@link Migrator} from the previous version.
+     *
+     * @param version The version, 0 for unversioned data.
+     */
+    public void setVersion(int version) {
+        if (version < 0) throw new IllegalArgumentException("Specification version can't be negative");
+
+        this.version = version;
+        upgrades.clear();
+        keyTable = null;
+        invalidateDefaults();
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Registers a {@link Migrator} that upgrades data from the given version to the next one.
+     *
+     * @param from The version the {@link Migrator} upgrades from.
+     * @param migrator The {@link Migrator}.
+     */
+    public void addMigrator(int from, @NotNull Migrator migrator) {
+        Objects.requireNonNull(migrator);
+
+        if (from < 0) throw new IllegalArgumentException("Migrated version can't be negative");
+        if (migrators.putIfAbsent(from, migrator) != null) {
+            throw new IllegalArgumentException("Specification " + id + " already has a migrator from version " + from);
+        }
+
+        upgrades.clear();
+    }
+
+    /**
+     * Composes the registered {@link Migrator}s into a single upgrade between two versions. The composition is cached.
+     *
+     * @param from The version of the data.
+     * @param to The target version.
+     * @return The composed {@link Migrator}.
+     * @throws IllegalStateException If a {@link Migrator} in between is missing.
+     */
+    public @NotNull Migrator getUpgrade(int from, int to) {
+        if (from < 0 || from > to) throw new IllegalArgumentException("Can't upgrade from version " + from + " to " + to);
+
+        return upgrades.computeIfAbsent(((long) from << 32) | to, key -> {
+            final Migrator[] steps = new Migrator[to - from];
+
+            for (int step = from; step < to; step++) {
+                steps[step - from] = migrators.get(step);
+
+                if (steps[step - from] == null) {
+                    throw new IllegalStateException("Specification " + id + " has no migrator from version " + step);
+                }
+            }
+
+            if (steps.length == 0) return nbt -> {};
+            if (steps.length == 1) return steps[0];
+
+            return nbt -> {
+                for (Migrator step : steps) step.migrate(nbt);
+            };
+        });
+    }
+
+    /**
+     * Upgrades stored data in place to the current version, including nested compounds. Meant for offline tools,
+     * data used through the {@link com.redgrapefruit.itemnbt3.DataClient} is upgraded lazily when it is read.
+     *
+     * @param nbt The compound of this {@link Specification}.
+     * @return Whether anything has been upgraded.
+     */
+    public boolean migrate(@NotNull NbtCompound nbt) {
+        Objects.requireNonNull(nbt);
+
+        if (isPolymorphic()) {
+            final int ordinal = nbt.getByte(TYPE_KEY) & 0xFF;
+            return ordinal < variants.length && variants[ordinal].migrate(nbt);
+        }
+
+        boolean migrated = false;
+
+        // Empty compounds are fully elided current data, see readNbt
+        final int stored = nbt.getInt(VERSION_KEY);
+        if (stored < version && !nbt.isEmpty()) {
+            getUpgrade(stored, version).migrate(nbt);
+            nbt.putInt(VERSION_KEY, version);
+            migrated = true;
+        }
+
+        for (int i = 0; i < nestedKeys.length; i++) {
+            if (nbt.get(nestedKeys[i]) instanceof NbtCompound subNbt) {
+                migrated |= nestedSpecs[i].migrate(subNbt);
+            }
+        }
+
+        return migrated;
+    }
+
+    /**
+     * A batch variant of {@link #migrate(NbtCompound)}.
+     *
+     * @param compounds The compounds of this {@link Specification}.
+     * @return The amount of upgraded compounds.
+     */
+    public int migrateAll(@NotNull Iterable<NbtCompound> compounds) {
+        Objects.requireNonNull(compounds);
+
+        int migrated = 0;
+
+        for (NbtCompound nbt : compounds) {
+            if (migrate(nbt)) ++migrated;
+        }
+
+        return migrated;
+    }
+
+    private void checkDefaultKey(@NotNull String key) {
+        if (!rootTree.containsKey(key) && !packed.contains(key)) {
+            throw new IllegalArgumentException("Can't set the default of unknown field " + key);
+        }
+    }
+
+    private void invalidateDefaults() {
+        defaultState = null;
+    }
+
+    /**
+     * Writes the default state into the empty compound of a stack that is used for the first time.
+     * <br><br>
+     * The state is computed once and copied afterwards. Only the fields with a default supplier are written
+     * through their serializers again. The template is not updated when a nested {@link Specification} is changed
+     * after it has been computed, so {@link Specification}s should be complete before they are used.
+     *
+     * @param nbt The empty compound of the stack.
+     * @param compound Receives the default state, matching the written data.
+     */
+    @ApiStatus.Internal
+    public void writeDefaults(@NotNull NbtCompound nbt, @NotNull DataCompound compound) {
+        Objects.requireNonNull(nbt);
+        Objects.requireNonNull(compound);
+
+        // Both copies come from the same state, even if another thread publishes a new one meanwhile
+        final DefaultState state = getDefaultState();
+        state.compound.copyInto(compound);
+
+        if (putDefaultSuppliers(compound)) {
+            writeNbt(nbt, compound);
+        } else {
+            nbt.copyFrom(state.nbt);
+        }
+    }
+
+    /**
+     * Puts the default state into a compound without writing it anywhere, for backends other than NBT.
+     *
+     * @param compound Receives the default state.
+     * @return Whether a default supplier has put a value, so that the state differs from the template.
+     */
+    @ApiStatus.Internal
+    public boolean writeDefaults(@NotNull DataCompound compound) {
+        Objects.requireNonNull(compound);
+
+        getDefaultCompound().copyInto(compound);
+
+        return putDefaultSuppliers(compound);
+    }
+
+    private @NotNull DataCompound getDefaultCompound() {
+        return getDefaultState().compound;
+    }
+
+    private @NotNull DefaultState getDefaultState() {
+        DefaultState state = defaultState;
+
+        if (state == null) {
+            final DataCompound values = new DataCompound();
+            putDefaults(values);
+
+            // Normalizes the values through the serializers once, so that the template matches what a read would produce
+            final NbtCompound written = new NbtCompound();
+            writeNbt(written, values, null);
+            final DataCompound read = new DataCompound();
+            readNbt(written, read, null);
+
+            // Threads racing here compute equal states, whichever is published last wins
+            state = new DefaultState(written, read);
+            defaultState = state;
+        }
+
+        return state;
+    }
+
+    /**
+     * The default state in both representations. It is published as a whole through a volatile field, so that a
+     * thread that sees it also sees both templates fully built. Neither template is modified after that.
+     */
+    private static final class DefaultState {
+        private final @NotNull NbtCompound nbt;
+        private final @NotNull DataCompound compound;
+
+        private DefaultState(@NotNull NbtCompound nbt, @NotNull DataCompound compound) {
+            this.nbt = nbt;
+            this.compound = compound;
+        }
+    }
+
+    private void putDefaults(@NotNull DataCompound compound) {
+        if (isPolymorphic()) {
+            variants[0].putDefaults(compound);
+            return;
+        }
+
+        defaults.forEach(compound::put);
+
+        for (int i = 0; i < nestedKeys.length; i++) {
+            nestedSpecs[i].putDefaults(compound.getOrCreateCompound(nestedKeys[i]));
+        }
+    }
+
+    /**
+     * @return Whether any supplier has been called, including in nested {@link Specification}s.
+     */
+    private boolean putDefaultSuppliers(@NotNull DataCompound compound) {
+        if (isPolymorphic()) return variants[getVariantOrdinal(compound)].putDefaultSuppliers(compound);
+
+        boolean supplied = !defaultSuppliers.isEmpty();
+
+        defaultSuppliers.forEach((key, supplier) -> compound.put(key, supplier.get()));
+
+        for (int i = 0; i < nestedKeys.length; i++) {
+            supplied |= nestedSpecs[i].putDefaultSuppliers(compound.getOrCreateCompound(nestedKeys[i]));
+        }
+
+        return supplied;
+    }
+
+    /**
+     * @return The {@link StructLayout} of the root tree or <code>null</code> if it isn't stored as a struct.
+     */
+    @ApiStatus.Internal
+    public @Nullable StructLayout getStructLayout() {
+        if (structVersion < 0) return null;
+
+        if (structLayout == null) {
+            structLayout = StructLayout.compute(structVersion, rootKeys, rootSerializers);
+        }
+
+        return structLayout;
+    }
+
+    @ApiStatus.Internal
+    public void writeNbt(@NotNull NbtCompound nbt, @NotNull DataCompound compound) {
+        Objects.requireNonNull(nbt);
+        Objects.requireNonNull(compound);
+
+        final WriteNbtEvent event = WriteNbtEvent.start();
+
+        writeNbt(nbt, compound, elideDefaults ? getDefaultCompound() : null);
+
+        if (event != null) event.complete(this, nbt);
+    }
+
+    /**
+     * @param defaults The default values of the elided fields, or <code>null</code> to write every field.
+     */
+    private void writeNbt(@NotNull NbtCompound nbt, @NotNull DataCompound compound, @Nullable DataCompound defaults) {
+        if (isPolymorphic()) {
+            final int ordinal = getVariantOrdinal(compound);
+
+            getVariant(ordinal).writeNbt(nbt, compound);
+            nbt.putByte(TYPE_KEY, (byte) ordinal);
+            return;
+        }
+
+        final StructLayout layout = getStructLayout();
+        if (layout != null) nbt.putByteArray(StructLayout.KEY, layout.encode(compound));
+
+        for (int i = 0; i < rootKeys.length; i++) {
+            if (layout != null && layout.covers(i)) {
+                // Entries from before the struct layout was enabled waste space, and would be read as current if the struct stopped matching
+                if (nbt.contains(rootKeys[i])) nbt.remove(rootKeys[i]);
+                continue;
+            }
+
+            if (defaults != null && compound.contains(rootKeys[i]) && compound.valueEquals(rootKeys[i], defaults) && !defaultSuppliers.containsKey(rootKeys[i])) {
+                continue;
+            }
+
+            if (!writePrimitive(nbt, compound, rootKeys[i], rootKinds[i])) {
+                rootSerializers[i].writeNbt(rootKeys[i], nbt, compound.get(rootKeys[i]));
+            }
+        }
+
+        packed.write(nbt, compound, defaults, defaultSuppliers.keySet());
+
+        for (int i = 0; i < nestedKeys.length; i++) {
+            final NbtCompound subNbt = Utilities.getOrCreateSubNbt(nbt, nestedKeys[i]);
+            nestedSpecs[i].writeNbt(subNbt, compound.getOrCreateCompound(nestedKeys[i]));
+
+            if (defaults != null && subNbt.isEmpty()) nbt.remove(nestedKeys[i]);
+        }
+
+        // Fully elided data is removed altogether, so it has no old version that could need an upgrade
+        if (version > 0 && !(defaults != null && nbt.isEmpty())) nbt.putInt(VERSION_KEY, version);
+    }
+
+    @ApiStatus.Internal
+    public void readNbt(@NotNull NbtCompound nbt, @NotNull DataCompound compound) {
+        Objects.requireNonNull(nbt);
+        Objects.requireNonNull(compound);
+
+        final ReadNbtEvent event = ReadNbtEvent.start();
+
+        readNbt(nbt, compound, elideDefaults ? getDefaultCompound() : null);
+
+        if (event != null) event.complete(this, nbt);
+    }
+
+    /**
+     * @param defaults The default values of the elided fields, or <code>null</code> if nothing is elided.
+     */
+    private void readNbt(@NotNull NbtCompound nbt, @NotNull DataCompound compound, @Nullable DataCompound defaults) {
+        if (isPolymorphic()) {
+            final int ordinal = nbt.getByte(TYPE_KEY) & 0xFF;
+
+            getVariant(ordinal).readNbt(nbt, compound);
+            compound.put(TYPE_KEY, ordinal);
+            return;
+        }
+
+        // Old data is upgraded in a copy, which replaces the stored data on the next write. An empty compound is
+        // fully elided current data, since the version is only left out when nothing else is written either
+        if (version > 0 && !nbt.isEmpty()) {
+            final int stored = nbt.getInt(VERSION_KEY);
+
+            if (stored < version) {
+                nbt = nbt.copy();
+                getUpgrade(stored, version).migrate(nbt);
+            }
+        }
+
+        // Falls back to the separate entries for data written before the struct layout was enabled or changed
+        final StructLayout layout = getStructLayout();
+        final boolean structured = layout != null && layout.decode(nbt.getByteArray(StructLayout.KEY), compound);
+
+        for (int i = 0; i < rootKeys.length; i++) {
+            if (structured && layout.covers(i)) continue;
+
+            if (defaults != null && !nbt.contains(rootKeys[i]) && defaults.contains(rootKeys[i])) {
+                compound.putCopyOf(rootKeys[i], defaults);
+                continue;
+            }
+
+            if (!readPrimitive(nbt, compound, rootKeys[i], rootKinds[i])) {
+                compound.put(rootKeys[i], rootSerializers[i].readNbt(rootKeys[i], nbt));
+            }
+        }
+
+        packed.read(nbt, compound, defaults);
+
+        // getCompound doesn't insert missing compounds, so reading never modifies the NBT
+        for (int i = 0; i < nestedKeys.length; i++) {
+            nestedSpecs[i].readNbt(nbt.getCompound(nestedKeys[i]), compound.getOrCreateCompound(nestedKeys[i]));
+        }
+    }
+
+    /**
+     * Writes a number or boolean of a plain built-in serializer straight from its cell.
+     *
+     * @return <code>false</code> if the field has another serializer or no value, which the serializer has to handle.
+     */
+    private static boolean writePrimitive(@NotNull NbtCompound nbt, @NotNull DataCompound compound, @NotNull String key, @Nullable StructLayout.Kind kind) {
+        if (kind == null || !compound.contains(key)) return false;
+
+        switch (kind) {
+            case BYTE -> nbt.putByte(key, compound.getByte(key));
+            case SHORT -> nbt.putShort(key, compound.getShort(key));
+            case INT -> nbt.putInt(key, compound.getInt(key));
+            case LONG -> nbt.putLong(key, compound.getLong(key));
+            case FLOAT -> nbt.putFloat(key, compound.getFloat(key));
+            case DOUBLE -> nbt.putDouble(key, compound.getDouble(key));
+            case BOOL -> nbt.putBoolean(key, compound.getBool(key));
+            default -> {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads a number or boolean of a plain built-in serializer into its cell.
+     *
+     * @return <code>false</code> if the field has another serializer, which has to read it.
+     */
+    private static boolean readPrimitive(@NotNull NbtCompound nbt, @NotNull DataCompound compound, @NotNull String key, @Nullable StructLayout.Kind kind) {
+        if (kind == null) return false;
+
+        switch (kind) {
+            case BYTE -> compound.putByte(key, nbt.getByte(key));
+            case SHORT -> compound.putShort(key, nbt.getShort(key));
+            case INT -> compound.putInt(key, nbt.getInt(key));
+            case LONG -> compound.putLong(key, nbt.getLong(key));
+            case FLOAT -> compound.putFloat(key, nbt.getFloat(key));
+            case DOUBLE -> compound.putDouble(key, nbt.getDouble(key));
+            case BOOL -> compound.putBool(key, nbt.getBoolean(key));
+            default -> {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the data into any {@link DataTree} backend.
+     *
+     * @param tree The target {@link DataTree}.
+     * @param compound The {@link DataCompound} with the data.
+     */
+    @ApiStatus.Internal
+    public void writeTree(@NotNull DataTree tree, @NotNull DataCompound compound) {
+        Objects.requireNonNull(tree);
+        Objects.requireNonNull(compound);
+
+        if (tree instanceof NbtDataTree nbtTree) {
+            writeNbt(nbtTree.getNbt(), compound);
+            return;
+        }
+
+        if (isPolymorphic()) {
+            final int ordinal = getVariantOrdinal(compound);
+
+            tree.write(TYPE_KEY, BuiltinTypeSerializer.BYTE, (byte) ordinal);
+            getVariant(ordinal).writeTree(tree, compound);
+            return;
+        }
+
+        for (int i = 0; i < rootKeys.length; i++) {
+            tree.write(rootKeys[i], rootSerializers[i], compound.get(rootKeys[i]));
+        }
+
+        packed.write(tree, compound);
+
+        for (int i = 0; i < nestedKeys.length; i++) {
+            nestedSpecs[i].writeTree(tree.getOrCreateChild(nestedKeys[i]), compound.getOrCreateCompound(nestedKeys[i]));
+        }
+    }
+
+    /**
+     * Reads the data from any {@link DataTree} backend. Values the backend can't provide are left out of the compound.
+     *
+     * @param tree The {@link DataTree} with the data.
+     * @param compound The target {@link DataCompound}.
+     */
+    @ApiStatus.Internal
+    public void readTree(@NotNull DataTree tree, @NotNull DataCompound compound) {
+        Objects.requireNonNull(tree);
+        Objects.requireNonNull(compound);
+
+        if (tree instanceof NbtDataTree nbtTree) {
+            readNbt(nbtTree.getNbt(), compound);
+            return;
+        }
+
+        if (isPolymorphic()) {
+            final Byte stored = tree.read(TYPE_KEY, BuiltinTypeSerializer.BYTE);
+            final int ordinal = stored == null ? 0 : stored & 0xFF;
+
+            getVariant(ordinal).readTree(tree, compound);
+            compound.put(TYPE_KEY, ordinal);
+            return;
+        }
+
+        for (int i = 0; i < rootKeys.length; i++) {
+            // Backends may hand out the stored value or a shared fallback, which the compound must not modify
+            final Object value = tree.read(rootKeys[i], rootSerializers[i]);
+            if (value != null) compound.put(rootKeys[i], DataCompound.copyValue(value));
+        }
 
-        this.id = id;
+        packed.read(tree, compound);
+
+        for (int i = 0; i < nestedKeys.length; i++) {
+            // Reading must not add children, a missing one reads like an empty tree
+            final DataTree child = tree.getChild(nestedKeys[i]);
+            nestedSpecs[i].readTree(child == null ? new FlatDataTree(1) : child, compound.getOrCreateCompound(nestedKeys[i]));
+        }
     }
 
     /**
-     * Add a new element to the {@link Specification}'s root tree.
+     * Writes only the entries that differ between two {@link DataCompound}s into the given NBT.
+     * <br><br>
+     * The entries are copied from the NBT the data has been written to, so that the delta reproduces it exactly.
+     * Changed entries that aren't stored, like elided defaults, are listed under {@link #REMOVED_KEY} instead. Compound
+     * values are listed there as well, so that they replace the old compound instead of being merged into it.
+     * Nested compounds are only written if they contain at least one changed entry.
      *
-     * @param key The NBT key.
-     * @param serializer The {@link TypeSerializer} to read & write that key.
+     * @param nbt The {@link NbtCompound} for the changed entries.
+     * @param before The data before the change.
+     * @param after The data after the change.
+     * @param stored The NBT <code>after</code> has been written to.
+     * @return The amount of changed entries.
      */
-    public void add(@NotNull String key, @NotNull TypeSerializer<?> serializer) {
-        Objects.requireNonNull(key);
-        Objects.requireNonNull(serializer);
+    @ApiStatus.Internal
+    public int writeDelta(@NotNull NbtCompound nbt, @NotNull DataCompound before, @NotNull DataCompound after, @NotNull NbtCompound stored) {
+        Objects.requireNonNull(nbt);
+        Objects.requireNonNull(before);
+        Objects.requireNonNull(after);
+        Objects.requireNonNull(stored);
+
+        if (isPolymorphic()) {
+            final int ordinal = getVariantOrdinal(after);
+
+            // A different variant has nothing in common with the previous data, so it's sent as a whole
+            if (ordinal != getVariantOrdinal(before)) {
+                getVariant(ordinal).writeNbt(nbt, after);
+                nbt.putByte(TYPE_KEY, (byte) ordinal);
+                return getFieldCount();
+            }
+
+            return getVariant(ordinal).writeDelta(nbt, before, after, stored);
+        }
+
+        int changed = 0;
+        final NbtList removed = new NbtList();
+        final StructLayout layout = getStructLayout();
+        boolean structChanged = false;
+
+        for (int i = 0; i < rootKeys.length; i++) {
+            final String key = rootKeys[i];
+
+            if (!Objects.deepEquals(before.get(key), after.get(key))) {
+                if (layout != null && layout.covers(i)) {
+                    structChanged = true;
+                } else {
+                    writeStored(nbt, stored, key, removed);
+                }
+
+                ++changed;
+            }
+        }
+
+        // The struct is a single NBT entry, so any change to a laid out field resends the whole array
+        if (structChanged) writeStored(nbt, stored, StructLayout.KEY, removed);
+
+        final int packedChanged = packed.countChanged(before, after);
+        if (packedChanged > 0) {
+            for (String key : packed.getWordKeys()) writeStored(nbt, stored, key, removed);
+            changed += packedChanged;
+        }
+
+        for (int i = 0; i < nestedKeys.length; i++) {
+            final String key = nestedKeys[i];
+            final DataCompound nestedBefore = before.getCompound(key);
+            final DataCompound nestedAfter = after.getCompound(key);
+            if (nestedAfter == null) continue;
+
+            final NbtCompound subNbt = new NbtCompound();
+            final NbtCompound nestedStored = stored.get(key) instanceof NbtCompound compound ? compound : new NbtCompound();
+            final int nestedChanged = nestedSpecs[i].writeDelta(subNbt, nestedBefore == null ? new DataCompound() : nestedBefore, nestedAfter, nestedStored);
+            if (nestedChanged == 0) continue;
 
-        rootTree.putIfAbsent(key, serializer);
+            // Fully elided nested data isn't stored at all
+            if (stored.contains(key)) {
+                nbt.put(key, subNbt);
+            } else {
+                removed.add(NbtString.of(key));
+            }
+
+            changed += nestedChanged;
+        }
+
+        // The version is mirrored too, since it is elided together with the data
+        if (changed > 0 && version > 0) writeStored(nbt, stored, VERSION_KEY, removed);
+        if (!removed.isEmpty()) nbt.put(REMOVED_KEY, removed);
+
+        return changed;
     }
 
     /**
-     * Adds a new element to the {@link Specification}'s nested tree.
+     * Copies a stored entry into a delta, or lists it as removed if it isn't stored.
+     */
+    private static void writeStored(@NotNull NbtCompound nbt, @NotNull NbtCompound stored, @NotNull String key, @NotNull NbtList removed) {
+        final NbtElement element = stored.get(key);
+
+        // Compounds replace the old value instead of being merged into it
+        if (element == null || element instanceof NbtCompound) removed.add(NbtString.of(key));
+        if (element != null) nbt.put(key, element.copy());
+    }
+
+    /**
+     * @return The amount of entries in this {@link Specification}, including all nested entries.
+     */
+    @ApiStatus.Internal
+    public int getFieldCount() {
+        if (isPolymorphic()) {
+            int largest = 0;
+
+            for (Specification variant : variants) {
+                largest = Math.max(largest, variant.getFieldCount());
+            }
+
+            return largest + 1;
+        }
+
+        int count = rootTree.size() + packed.size();
+
+        for (Specification nested : nestedSpecs) {
+            count += nested.getFieldCount();
+        }
+
+        return count;
+    }
+
+    /**
+     * @return The NBT keys this {@link Specification} reads from its own compound, without the nested compounds.
+     */
+    @ApiStatus.Internal
+    public @NotNull String[] getStoredKeys() {
+        if (isPolymorphic()) {
+            String[] keys = new String[] {TYPE_KEY};
+
+            for (Specification variant : variants) {
+                for (String key : variant.getStoredKeys()) {
+                    if (!Arrays.asList(keys).contains(key)) keys = Utilities.append(keys, key);
+                }
+            }
+
+            return keys;
+        }
+
+        String[] keys = Arrays.copyOf(rootKeys, rootKeys.length);
+
+        for (String wordKey : packed.getWordKeys()) {
+            keys = Utilities.append(keys, wordKey);
+        }
+
+        if (structVersion >= 0) keys = Utilities.append(keys, StructLayout.KEY);
+        if (version > 0) keys = Utilities.append(keys, VERSION_KEY);
+
+        return keys;
+    }
+
+    /**
+     * Replaces the keys of freshly decoded NBT with the canonical {@link String} instances of this {@link Specification},
+     * so that the keys of many stacks don't each hold their own copy. Nested compounds are canonicalized recursively.
      *
-     * @param key The NBT key.
-     * @param specification The nested {@link Specification}.
+     * @param nbt The compound of this {@link Specification}.
      */
-    public void add(@NotNull String key, @NotNull Specification specification) {
+    @ApiStatus.Internal
+    public void canonicalizeKeys(@NotNull NbtCompound nbt) {
+        Objects.requireNonNull(nbt);
+
+        if (isPolymorphic()) {
+            final int ordinal = nbt.getByte(TYPE_KEY) & 0xFF;
+            if (ordinal < variants.length) variants[ordinal].canonicalizeKeys(nbt);
+            return;
+        }
+
+        if (keyTable == null) {
+            final Map<String, String> table = new HashMap<>();
+
+            for (String key : getStoredKeys()) table.put(key, key);
+            for (String key : nestedKeys) table.put(key, key);
+
+            keyTable = table;
+        }
+
+        ((NbtCompoundMixinAccess) nbt).canonicalizeKeys(keyTable);
+
+        for (int i = 0; i < nestedKeys.length; i++) {
+            if (nbt.get(nestedKeys[i]) instanceof NbtCompound subNbt) {
+                nestedSpecs[i].canonicalizeKeys(subNbt);
+            }
+        }
+    }
+
+    /**
+     * @return The keys of the nested {@link Specification}s.
+     */
+    @ApiStatus.Internal
+    public @NotNull String[] getNestedKeys() {
+        return nestedKeys.clone();
+    }
+
+    @ApiStatus.Internal
+    public @Nullable Specification getNested(@NotNull String key) {
         Objects.requireNonNull(key);
-        Objects.requireNonNull(specification);
 
-        nestedTree.putIfAbsent(key, specification);
+        return nestedTree.get(key);
     }
 
+    /**
+     * Reads a single root or packed field. Data of an old version, polymorphic data and fields stored in the struct
+     * layout need the whole compound to be decoded, so that upgrades and the variant are applied like on a full read.
+     *
+     * @param nbt The compound of this {@link Specification}.
+     * @param key The key of the field.
+     * @return The value of the field, as {@link Specification#readNbt(NbtCompound, DataCompound)} would read it.
+     */
     @ApiStatus.Internal
-    public void writeNbt(@NotNull NbtCompound nbt, @NotNull DataCompound compound) {
+    public @NotNull Object readField(@NotNull NbtCompound nbt, @NotNull String key) {
         Objects.requireNonNull(nbt);
-        Objects.requireNonNull(compound);
+        Objects.requireNonNull(key);
 
-        rootTree.forEach((key, serializer) -> {
-            serializer.writeNbt(key, nbt, compound.get(key));
-        });
+        if (isPolymorphic() || isOutdated(nbt)) {
+            final DataCompound compound = new DataCompound();
+            readNbt(nbt, compound);
 
-        nestedTree.forEach((key, spec) -> {
-            final NbtCompound subNbt = Utilities.getOrCreateSubNbt(nbt, key);
-            spec.writeNbt(subNbt, compound.getOrCreateCompound(key));
-        });
+            final Object value = compound.get(key);
+            if (value == null) throw new IllegalArgumentException("Field " + key + " is not a root or packed field of " + id);
+            return value;
+        }
+
+        final int rootIndex = Arrays.asList(rootKeys).indexOf(key);
+        final int packedIndex = packed.indexOf(key);
+        if (rootIndex == -1 && packedIndex == -1) throw new IllegalArgumentException("Field " + key + " is not a root or packed field of " + id);
+
+        if (!isStoredSeparately(key) && packedIndex == -1) {
+            final DataCompound compound = new DataCompound();
+            readNbt(nbt, compound);
+            return compound.get(key);
+        }
+
+        final DataCompound defaults = elideDefaults ? getDefaultCompound() : null;
+
+        if (packedIndex != -1) return packed.read(nbt, packedIndex, defaults);
+
+        if (defaults != null && !nbt.contains(key)) {
+            final Object value = defaults.get(key);
+            if (value != null) return DataCompound.copyValue(value);
+        }
+
+        return rootSerializers[rootIndex].readNbt(key, nbt);
     }
 
+    /**
+     * @return Whether the data was written by an older version and has to be upgraded when it is read.
+     */
     @ApiStatus.Internal
-    public void readNbt(@NotNull NbtCompound nbt, @NotNull DataCompound compound) {
-        Objects.requireNonNull(nbt);
-        Objects.requireNonNull(compound);
+    public boolean isOutdated(@NotNull NbtCompound nbt) {
+        // Empty compounds are fully elided current data, see readNbt
+        return version > 0 && !nbt.isEmpty() && nbt.getInt(VERSION_KEY) < version;
+    }
 
-        rootTree.forEach((key, serializer) -> {
-            final Object value = serializer.readNbt(key, nbt);
-            compound.put(key, value);
-        });
+    /**
+     * @return Whether the root field is always stored under its own key, which is the case unless this {@link Specification}
+     * is versioned or polymorphic, or the field is part of the struct layout.
+     */
+    @ApiStatus.Internal
+    public boolean isStoredSeparately(@NotNull String key) {
+        Objects.requireNonNull(key);
 
-        nestedTree.forEach((key, spec) -> {
-            final NbtCompound subNbt = Utilities.getOrCreateSubNbt(nbt, key);
-            spec.readNbt(subNbt, compound.getOrCreateCompound(key));
-        });
+        final int rootIndex = Arrays.asList(rootKeys).indexOf(key);
+        if (rootIndex == -1 || version > 0 || isPolymorphic()) return false;
+
+        final StructLayout layout = getStructLayout();
+
+        return layout == null || !layout.covers(rootIndex);
+    }
+
+    /**
+     * @return The {@link TypeSerializer} of the root field, or <code>null</code> if there is no such root field.
+     */
+    @ApiStatus.Internal
+    public @Nullable TypeSerializer<?> getSerializer(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        return rootTree.get(key);
     }
 
     @ApiStatus.Internal
@@ -116,23 +1164,35 @@ public final class Specification {
     public static @NotNull Specification create(@NotNull Class<?> clazz) {
         Objects.requireNonNull(clazz);
 
-        if (clazz.isAnnotationPresent(Auto.class)) {
-            return createAutomatic(clazz);
+        final GenerationEvent event = new GenerationEvent();
+        event.begin();
+
+        final Class<?>[] variants = Utilities.getVariants(clazz);
+        final Specification spec;
+
+        if (variants != null) {
+            spec = new Specification(clazz.getSimpleName());
+            for (Class<?> variant : variants) spec.addVariant(create(variant));
         } else {
-            return createManual(clazz);
+            spec = clazz.isRecord() || clazz.isAnnotationPresent(Auto.class) ? createAutomatic(clazz) : createManual(clazz);
         }
+
+        event.complete(clazz, "Specification", spec.getFieldCount());
+        return spec;
     }
 
     private static @NotNull Specification createAutomatic(@NotNull Class<?> clazz) {
         final Specification spec = new Specification(clazz.getSimpleName());
 
-        final Field[] fields = clazz.isAnnotationPresent(AllowInheritance.class) ? clazz.getFields() : clazz.getDeclaredFields();
+        for (Field field : Utilities.getLinkedFields(clazz)) {
+            if (field.isAnnotationPresent(Packed.class)) {
+                spec.addPacked(field.getName(), field.getType(), field.getAnnotation(Packed.class).bits());
+                continue;
+            }
 
-        for (Field field : fields) {
-            if (!Modifier.isPublic(field.getModifiers())) continue;
+            final TypeSerializer<?> serializer = SerializerRegistry.resolve(field);
 
-            if (SerializerRegistry.contains(field.getType())) {
-                final TypeSerializer<?> serializer = SerializerRegistry.get(field.getType());
+            if (serializer != null) {
                 spec.add(field.getName(), serializer);
             } else {
                 spec.add(field.getName(), create(field.getType()));
@@ -145,11 +1205,7 @@ public final class Specification {
     private static @NotNull Specification createManual(@NotNull Class<?> clazz) {
         final Specification spec = new Specification(clazz.getSimpleName());
 
-        final Field[] fields = clazz.isAnnotationPresent(AllowInheritance.class) ? clazz.getFields() : clazz.getDeclaredFields();
-
-        for (Field field : fields) {
-            if (!Modifier.isPublic(field.getModifiers())) continue;
-
+        for (Field field : Utilities.getLinkedFields(clazz)) {
             if (field.isAnnotationPresent(com.redgrapefruit.itemnbt3.linking.Field.class)) {
                 final com.redgrapefruit.itemnbt3.linking.Field annotation = field.getAnnotation(com.redgrapefruit.itemnbt3.linking.Field.class);
 
@@ -158,7 +1214,11 @@ public final class Specification {
                     name = field.getName();
                 }
 
-                spec.add(name, SerializerRegistry.get(field.getType()));
+                if (field.isAnnotationPresent(Packed.class)) {
+                    spec.addPacked(name, field.getType(), field.getAnnotation(Packed.class).bits());
+                } else {
+                    spec.add(name, SerializerRegistry.resolve(field));
+                }
             }
 
             if (field.isAnnotationPresent(Composite.class)) {
@@ -180,9 +1240,19 @@ public final class Specification {
      * The {@link Builder} eases the creation of {@link Specification}s by providing a convenient interface.
      */
     public static class Builder {
-        private final @NotNull Map<String, TypeSerializer<?>> rootTree = new HashMap<>();
-        private final @NotNull Map<String, Specification> nestedTree = new HashMap<>();
+        // Kept in insertion order, so that the built Specification gets its fields in the declared order
+        private final @NotNull Map<String, TypeSerializer<?>> rootTree = new LinkedHashMap<>();
+        private final @NotNull Map<String, Specification> nestedTree = new LinkedHashMap<>();
+        private final @NotNull List<PackedEntry> packedEntries = new ArrayList<>();
+        private final @NotNull List<Specification> variants = new ArrayList<>();
+        private final @NotNull List<DerivedProperty<?>> derivedProperties = new ArrayList<>();
         private final @NotNull String id;
+        private int structVersion = -1;
+        private boolean elideDefaults = false;
+        private int version = 0;
+        private final @NotNull Map<Integer, Migrator> migrators = new HashMap<>();
+        private final @NotNull Map<String, Object> defaults = new HashMap<>();
+        private final @NotNull Map<String, Supplier<?>> defaultSuppliers = new HashMap<>();
 
         /**
          * Creates a new instance of a {@link Builder}.
@@ -219,6 +1289,44 @@ public final class Specification {
             return this;
         }
 
+        /**
+         * A builder variant of {@link Specification#addPacked(String, Class, int)}
+         */
+        public @NotNull Builder addPacked(@NotNull String key, @NotNull Class<?> type, int bits) {
+            Objects.requireNonNull(key);
+            Objects.requireNonNull(type);
+
+            packedEntries.add(new PackedEntry(key, type, bits));
+
+            return this;
+        }
+
+        /**
+         * Adds a new packed <code>boolean</code> field, which takes up a single bit.
+         * @param key The name of that field.
+         */
+        public @NotNull Builder addPackedBool(@NotNull String key) {
+            return addPacked(key, boolean.class, 1);
+        }
+
+        /**
+         * Adds a new packed enum field, which takes up as many bits as its ordinals need.
+         * @param key The name of that field.
+         * @param clazz The enum class.
+         */
+        public @NotNull Builder addPackedEnum(@NotNull String key, @NotNull Class<? extends Enum<?>> clazz) {
+            return addPacked(key, clazz, 0);
+        }
+
+        /**
+         * Adds a new enum field, stored by the constant's ordinal.
+         * @param key The name of that field.
+         * @param clazz The enum class.
+         */
+        public <E extends Enum<E>> @NotNull Builder addEnum(@NotNull String key, @NotNull Class<E> clazz) {
+            return add(key, EnumTypeSerializer.of(clazz));
+        }
+
         /**
          * Adds a new <code>byte</code> field.
          * @param key The name of that field.
@@ -307,6 +1415,45 @@ public final class Specification {
             return add(key, BuiltinTypeSerializer.LONG_ARRAY);
         }
 
+        /**
+         * Adds a new compressed byte-array field.
+         * @param key The name of that field.
+         * @param compression The {@link Compression} method.
+         */
+        public @NotNull Builder addByteArray(@NotNull String key, @NotNull Compression compression) {
+            return add(key, compressed(byte[].class, compression));
+        }
+
+        /**
+         * Adds a new compressed int-array field.
+         * @param key The name of that field.
+         * @param compression The {@link Compression} method.
+         */
+        public @NotNull Builder addIntArray(@NotNull String key, @NotNull Compression compression) {
+            return add(key, compressed(int[].class, compression));
+        }
+
+        /**
+         * Adds a new compressed long-array field.
+         * @param key The name of that field.
+         * @param compression The {@link Compression} method.
+         */
+        public @NotNull Builder addLongArray(@NotNull String key, @NotNull Compression compression) {
+            return add(key, compressed(long[].class, compression));
+        }
+
+        private static @NotNull TypeSerializer<?> compressed(@NotNull Class<?> clazz, @NotNull Compression compression) {
+            Objects.requireNonNull(compression);
+
+            final TypeSerializer<?> serializer = SerializerRegistry.get(clazz, compression);
+
+            if (serializer == null) {
+                throw new IllegalArgumentException("No " + compression + " serializer registered for " + clazz.getSimpleName());
+            }
+
+            return serializer;
+        }
+
         /**
          * Adds a new int-array field.
          * @param key The name of that field.
@@ -315,6 +1462,115 @@ public final class Specification {
             return add(key, BuiltinTypeSerializer.BOOL);
         }
 
+        /**
+         * Adds a new {@link List} field.
+         * @param key The name of that field.
+         * @param element The class of the list's elements.
+         */
+        public @NotNull Builder addList(@NotNull String key, @NotNull Class<?> element) {
+            return add(key, CollectionSerializers.listOf(element));
+        }
+
+        /**
+         * Adds a new {@link Set} field.
+         * @param key The name of that field.
+         * @param element The class of the set's elements.
+         */
+        public @NotNull Builder addSet(@NotNull String key, @NotNull Class<?> element) {
+            return add(key, CollectionSerializers.setOf(element));
+        }
+
+        /**
+         * Adds a new {@link Map} field with {@link String} keys.
+         * @param key The name of that field.
+         * @param values The {@link TypeSerializer} for the map's values.
+         */
+        public @NotNull Builder addMap(@NotNull String key, @NotNull TypeSerializer<?> values) {
+            return add(key, CollectionSerializers.mapOf(values));
+        }
+
+        /**
+         * A builder variant of {@link Specification#addVariant(Specification)}
+         */
+        public @NotNull Builder addVariant(@NotNull Specification variant) {
+            variants.add(variant);
+
+            return this;
+        }
+
+        /**
+         * A builder variant of {@link Specification#addDerived(DerivedProperty)}
+         */
+        public @NotNull Builder addDerived(@NotNull DerivedProperty<?> property) {
+            derivedProperties.add(property);
+
+            return this;
+        }
+
+        /**
+         * A builder variant of {@link Specification#useStructLayout(int)}
+         */
+        public @NotNull Builder useStructLayout(int version) {
+            structVersion = version;
+
+            return this;
+        }
+
+        /**
+         * A builder variant of {@link Specification#setVersion(int)}
+         */
+        public @NotNull Builder setVersion(int version) {
+            this.version = version;
+
+            return this;
+        }
+
+        /**
+         * A builder variant of {@link Specification#addMigrator(int, Migrator)}
+         */
+        public @NotNull Builder addMigrator(int from, @NotNull Migrator migrator) {
+            Objects.requireNonNull(migrator);
+
+            migrators.put(from, migrator);
+
+            return this;
+        }
+
+        /**
+         * A builder variant of {@link Specification#useDefaultElision()}
+         */
+        public @NotNull Builder useDefaultElision() {
+            elideDefaults = true;
+
+            return this;
+        }
+
+        /**
+         * A builder variant of {@link Specification#setDefault(String, Object)}
+         */
+        public @NotNull Builder setDefault(@NotNull String key, @NotNull Object value) {
+            Objects.requireNonNull(key);
+            Objects.requireNonNull(value);
+
+            defaultSuppliers.remove(key);
+            defaults.put(key, value);
+
+            return this;
+        }
+
+        /**
+         * A builder variant of {@link Specification#setDefaultSupplier(String, Supplier)}
+         */
+        public @NotNull Builder setDefaultSupplier(@NotNull String key, @NotNull Supplier<?> supplier) {
+            Objects.requireNonNull(key);
+            Objects.requireNonNull(supplier);
+
+            defaults.remove(key);
+            defaultSuppliers.put(key, supplier);
+
+            return this;
+        }
+
         /**
          * Constructs the final {@link Specification} out of the collected data.
          *
@@ -325,8 +1581,20 @@ public final class Specification {
 
             rootTree.forEach(spec::add);
             nestedTree.forEach(spec::add);
+            packedEntries.forEach(entry -> spec.addPacked(entry.key, entry.type, entry.bits));
+            variants.forEach(spec::addVariant);
+            derivedProperties.forEach(spec::addDerived);
+            if (structVersion >= 0) spec.useStructLayout(structVersion);
+            defaults.forEach(spec::setDefault);
+            defaultSuppliers.forEach(spec::setDefaultSupplier);
+            if (elideDefaults) spec.useDefaultElision();
+            spec.setVersion(version);
+            migrators.forEach(spec::addMigrator);
 
             return spec;
         }
+
+        private record PackedEntry(@NotNull String key, @NotNull Class<?> type, int bits) {
+        }
     }
 }
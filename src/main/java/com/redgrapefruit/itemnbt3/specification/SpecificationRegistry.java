@@ -0,0 +1,87 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import com.redgrapefruit.itemnbt3.util.NbtCompoundMixinAccess;
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import net.minecraft.nbt.NbtCompound;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The {@link SpecificationRegistry} holds the {@link Specification}s whose data is recognized when item NBT is decoded.
+ * <br><br>
+ * When a stack is read from disk or the network, the keys of every registered {@link Specification}'s compound are
+ * replaced with the {@link Specification}'s canonical {@link String} instances, so that millions of stacks share one
+ * instance per key instead of each allocating their own.
+ * <br><br>
+ * Register your {@link Specification}s during mod initialization, before any stacks are loaded.
+ */
+public final class SpecificationRegistry {
+    private static final @NotNull Map<String, Specification> registry = new HashMap<>();
+    // Canonical instances of the registered identifiers, for the keys of the stack's root compound
+    private static final @NotNull Map<String, String> ids = new HashMap<>();
+
+    private static final @NotNull Logger LOGGER = LogManager.getLogger();
+
+    private SpecificationRegistry() {
+        throw new RuntimeException("SpecificationRegistry is not meant to be instantiated");
+    }
+
+    /**
+     * Registers a {@link Specification} by its identifier.
+     *
+     * @param specification The {@link Specification} to register.
+     */
+    public static void register(@NotNull Specification specification) {
+        Objects.requireNonNull(specification);
+
+        if (registry.containsKey(specification.getId())) {
+            LOGGER.warn("Tried to register duplicate specification " + specification.getId());
+            return;
+        }
+
+        final String id = Utilities.internKey(specification.getId());
+        registry.put(id, specification);
+        ids.put(id, id);
+    }
+
+    public static @Nullable Specification get(@NotNull String id) {
+        Objects.requireNonNull(id);
+
+        return registry.get(id);
+    }
+
+    public static boolean contains(@NotNull String id) {
+        Objects.requireNonNull(id);
+
+        return registry.containsKey(id);
+    }
+
+    /**
+     * Canonicalizes the keys of all registered {@link Specification}s' compounds in the NBT of a stack.
+     *
+     * @param nbt The NBT of the stack, the <code>tag</code> compound.
+     */
+    @ApiStatus.Internal
+    public static void canonicalizeKeys(@Nullable NbtCompound nbt) {
+        if (nbt == null || nbt.isEmpty() || registry.isEmpty()) return;
+
+        boolean found = false;
+
+        // Only the registered identifiers are looked up, so stacks without specification data cost a lookup per identifier
+        for (Map.Entry<String, Specification> entry : registry.entrySet()) {
+            if (nbt.get(entry.getKey()) instanceof NbtCompound subNbt) {
+                entry.getValue().canonicalizeKeys(subNbt);
+                found = true;
+            }
+        }
+
+        if (found) ((NbtCompoundMixinAccess) nbt).canonicalizeKeys(ids);
+    }
+}
@@ -0,0 +1,367 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import com.redgrapefruit.itemnbt3.serializer.BuiltinTypeSerializer;
+import com.redgrapefruit.itemnbt3.serializer.TypeSerializer;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A {@link StructLayout} describes how the root fields of a {@link Specification} are stored in a single byte array,
+ * similar to a C struct.
+ * <br><br>
+ * The array starts with a header: a magic number, the schema version and a hash of the layout. It is followed by the
+ * fixed-size fields (numbers, booleans and {@link UUID}s) at offsets computed from the specification, and by a trailing
+ * section with the variable-length fields (strings and arrays), each prefixed with its length.
+ * <br><br>
+ * Only fields with one of the plain {@link BuiltinTypeSerializer}s are laid out. All other fields are still stored under
+ * their own keys next to the array.
+ */
+public final class StructLayout {
+    /**
+     * The key of the byte array inside the specification's compound.
+     */
+    public static final @NotNull String KEY = "^struct";
+
+    static final int HEADER_SIZE = 8;
+    private static final short MAGIC = 0x4953;
+
+    static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle FLOAT = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+
+    enum Kind {
+        LONG(8), DOUBLE(8), UUID(16), INT(4), FLOAT(4), SHORT(2), BYTE(1), BOOL(1),
+        STRING(-1), BYTE_ARRAY(-1), INT_ARRAY(-1), LONG_ARRAY(-1);
+
+        final int size;
+
+        Kind(int size) {
+            this.size = size;
+        }
+
+        boolean isFixed() {
+            return size > 0;
+        }
+
+        /**
+         * @return The kind of the plain {@link BuiltinTypeSerializer}, or <code>null</code> for any other serializer.
+         */
+        static @Nullable Kind of(@NotNull TypeSerializer<?> serializer) {
+            return KINDS.get(serializer);
+        }
+    }
+
+    private static final @NotNull Map<TypeSerializer<?>, Kind> KINDS = new IdentityHashMap<>();
+
+    static {
+        KINDS.put(BuiltinTypeSerializer.BYTE, Kind.BYTE);
+        KINDS.put(BuiltinTypeSerializer.SHORT, Kind.SHORT);
+        KINDS.put(BuiltinTypeSerializer.INT, Kind.INT);
+        KINDS.put(BuiltinTypeSerializer.LONG, Kind.LONG);
+        KINDS.put(BuiltinTypeSerializer.UUID, Kind.UUID);
+        KINDS.put(BuiltinTypeSerializer.FLOAT, Kind.FLOAT);
+        KINDS.put(BuiltinTypeSerializer.DOUBLE, Kind.DOUBLE);
+        KINDS.put(BuiltinTypeSerializer.BOOL, Kind.BOOL);
+        KINDS.put(BuiltinTypeSerializer.STRING, Kind.STRING);
+        KINDS.put(BuiltinTypeSerializer.BYTE_ARRAY, Kind.BYTE_ARRAY);
+        KINDS.put(BuiltinTypeSerializer.INT_ARRAY, Kind.INT_ARRAY);
+        KINDS.put(BuiltinTypeSerializer.LONG_ARRAY, Kind.LONG_ARRAY);
+    }
+
+    private final short version;
+    private final int hash;
+    private final int fixedEnd;
+    // Indexed by the root field index of the specification, -1 or null for fields that are not laid out
+    private final int[] offsets;
+    private final Kind[] kinds;
+    // The laid out fields: fixed ones sorted by size, variable-length ones in the order of the trailing section
+    private final @NotNull String[] keys;
+    private final @NotNull TypeSerializer<?>[] serializers;
+    private final @NotNull Kind[] fieldKinds;
+    private final int[] fieldOffsets;
+    private final @NotNull Map<String, Integer> fieldIndices = new HashMap<>();
+
+    private StructLayout(int version, @NotNull String[] rootKeys, @NotNull TypeSerializer<?>[] rootSerializers) {
+        this.version = (short) version;
+        this.offsets = new int[rootKeys.length];
+        this.kinds = new Kind[rootKeys.length];
+
+        final List<Integer> laidOut = new ArrayList<>();
+        for (int i = 0; i < rootKeys.length; i++) {
+            kinds[i] = KINDS.get(rootSerializers[i]);
+            offsets[i] = -1;
+            if (kinds[i] != null) laidOut.add(i);
+        }
+
+        // Biggest fields first keeps the fixed fields aligned, the key breaks ties for a stable order
+        laidOut.sort((a, b) -> {
+            final int byKind = kinds[a].compareTo(kinds[b]);
+            return byKind != 0 ? byKind : rootKeys[a].compareTo(rootKeys[b]);
+        });
+
+        keys = new String[laidOut.size()];
+        serializers = new TypeSerializer<?>[laidOut.size()];
+        fieldKinds = new Kind[laidOut.size()];
+        fieldOffsets = new int[laidOut.size()];
+
+        int offset = HEADER_SIZE;
+        int hash = 1;
+        for (int j = 0; j < laidOut.size(); j++) {
+            final int i = laidOut.get(j);
+
+            keys[j] = rootKeys[i];
+            serializers[j] = rootSerializers[i];
+            fieldKinds[j] = kinds[i];
+            fieldIndices.put(rootKeys[i], j);
+
+            if (kinds[i].isFixed()) {
+                offsets[i] = offset;
+                fieldOffsets[j] = offset;
+                offset += kinds[i].size;
+            } else {
+                fieldOffsets[j] = -1;
+            }
+
+            hash = 31 * hash + rootKeys[i].hashCode();
+            hash = 31 * hash + kinds[i].ordinal();
+        }
+
+        this.fixedEnd = offset;
+        this.hash = hash;
+    }
+
+    static @NotNull StructLayout compute(int version, @NotNull String[] rootKeys, @NotNull TypeSerializer<?>[] rootSerializers) {
+        return new StructLayout(version, rootKeys, rootSerializers);
+    }
+
+    /**
+     * @return Whether the root field with the given index is stored in the struct.
+     */
+    boolean covers(int rootIndex) {
+        return kinds[rootIndex] != null;
+    }
+
+    /**
+     * @return Whether the data has been written with this layout and schema version, and the stored lengths of its
+     * variable-length fields add up to its size. Only then may the offsets of the variable-length fields be computed.
+     */
+    @ApiStatus.Internal
+    public boolean matches(@Nullable byte[] data) {
+        return data != null
+                && data.length >= fixedEnd
+                && (short) SHORT.get(data, 0) == MAGIC
+                && (short) SHORT.get(data, 2) == version
+                && (int) INT.get(data, 4) == hash
+                && hasValidLengths(data);
+    }
+
+    private boolean hasValidLengths(@NotNull byte[] data) {
+        long offset = fixedEnd;
+
+        for (Kind kind : fieldKinds) {
+            if (kind.isFixed()) continue;
+            if (offset + 4 > data.length) return false;
+
+            final int length = (int) INT.get(data, (int) offset);
+            if (length < 0) return false;
+
+            offset += 4 + varSize(kind, (long) length);
+            if (offset > data.length) return false;
+        }
+
+        return offset == data.length;
+    }
+
+    int indexOf(@NotNull String key) {
+        final Integer index = fieldIndices.get(key);
+        if (index == null) throw new IllegalArgumentException("Field " + key + " is not part of the struct layout");
+
+        return index;
+    }
+
+    @NotNull Kind kindOf(int field) {
+        return fieldKinds[field];
+    }
+
+    int offsetOf(int field) {
+        return fieldOffsets[field];
+    }
+
+    /**
+     * Finds the start of a variable-length field by skipping over the ones before it.
+     *
+     * @param data Data that {@link #matches(byte[])} this layout, so that the stored lengths are known to be consistent.
+     */
+    int varOffsetOf(@NotNull byte[] data, int field) {
+        int offset = fixedEnd;
+
+        for (int j = 0; j < field; j++) {
+            if (!fieldKinds[j].isFixed()) offset += 4 + (int) varSize(fieldKinds[j], (int) INT.get(data, offset));
+        }
+
+        return offset;
+    }
+
+    private static long varSize(@NotNull Kind kind, long length) {
+        return switch (kind) {
+            case STRING, BYTE_ARRAY -> length;
+            case INT_ARRAY -> length * 4;
+            case LONG_ARRAY -> length * 8;
+            default -> 0;
+        };
+    }
+
+    @NotNull byte[] encode(@NotNull DataCompound compound) {
+        // Only the variable-length values are collected up front, since they determine the size
+        final Object[] values = new Object[keys.length];
+        int size = fixedEnd;
+
+        for (int j = 0; j < keys.length; j++) {
+            if (fieldKinds[j].isFixed()) continue;
+
+            Object value = compound.get(keys[j]);
+            if (value == null) value = serializers[j].getFallback();
+            if (fieldKinds[j] == Kind.STRING) value = ((String) value).getBytes(StandardCharsets.UTF_8);
+
+            values[j] = value;
+            size += 4 + (int) varSize(fieldKinds[j], Array.getLength(value));
+        }
+
+        final byte[] data = new byte[size];
+        SHORT.set(data, 0, MAGIC);
+        SHORT.set(data, 2, version);
+        INT.set(data, 4, hash);
+
+        int varOffset = fixedEnd;
+
+        for (int j = 0; j < keys.length; j++) {
+            final String key = keys[j];
+            final int offset = fieldOffsets[j];
+
+            // Missing numbers and booleans are written as the zero of their fallback
+            if (fieldKinds[j].isFixed() && fieldKinds[j] != Kind.UUID && !compound.contains(key)) continue;
+
+            switch (fieldKinds[j]) {
+                case BYTE -> data[offset] = compound.getByte(key);
+                case BOOL -> data[offset] = compound.getBool(key) ? (byte) 1 : (byte) 0;
+                case SHORT -> SHORT.set(data, offset, compound.getShort(key));
+                case INT -> INT.set(data, offset, compound.getInt(key));
+                case LONG -> LONG.set(data, offset, compound.getLong(key));
+                case FLOAT -> FLOAT.set(data, offset, compound.getFloat(key));
+                case DOUBLE -> DOUBLE.set(data, offset, compound.getDouble(key));
+                case UUID -> {
+                    UUID value = compound.getUUID(key);
+                    if (value == null) value = (UUID) serializers[j].getFallback();
+
+                    LONG.set(data, offset, value.getMostSignificantBits());
+                    LONG.set(data, offset + 8, value.getLeastSignificantBits());
+                }
+                case STRING, BYTE_ARRAY -> {
+                    final byte[] array = (byte[]) values[j];
+                    INT.set(data, varOffset, array.length);
+                    System.arraycopy(array, 0, data, varOffset + 4, array.length);
+                    varOffset += 4 + array.length;
+                }
+                case INT_ARRAY -> {
+                    final int[] array = (int[]) values[j];
+                    INT.set(data, varOffset, array.length);
+                    varOffset += 4;
+                    for (int element : array) {
+                        INT.set(data, varOffset, element);
+                        varOffset += 4;
+                    }
+                }
+                case LONG_ARRAY -> {
+                    final long[] array = (long[]) values[j];
+                    INT.set(data, varOffset, array.length);
+                    varOffset += 4;
+                    for (long element : array) {
+                        LONG.set(data, varOffset, element);
+                        varOffset += 8;
+                    }
+                }
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Decodes all laid out fields into the compound.
+     *
+     * @return <code>false</code> if the data doesn't match this layout, in which case nothing is decoded.
+     */
+    boolean decode(@Nullable byte[] data, @NotNull DataCompound compound) {
+        if (!matches(data)) return false;
+
+        int varOffset = fixedEnd;
+
+        for (int j = 0; j < keys.length; j++) {
+            final String key = keys[j];
+            final int offset = fieldOffsets[j];
+
+            switch (fieldKinds[j]) {
+                case BYTE -> compound.putByte(key, data[offset]);
+                case BOOL -> compound.putBool(key, data[offset] != 0);
+                case SHORT -> compound.putShort(key, (short) SHORT.get(data, offset));
+                case INT -> compound.putInt(key, (int) INT.get(data, offset));
+                case LONG -> compound.putLong(key, (long) LONG.get(data, offset));
+                case FLOAT -> compound.putFloat(key, (float) FLOAT.get(data, offset));
+                case DOUBLE -> compound.putDouble(key, (double) DOUBLE.get(data, offset));
+                case UUID -> compound.put(key, new UUID((long) LONG.get(data, offset), (long) LONG.get(data, offset + 8)));
+                case STRING, BYTE_ARRAY, INT_ARRAY, LONG_ARRAY -> {
+                    compound.put(key, readVar(data, varOffset, fieldKinds[j]));
+                    varOffset += 4 + (int) varSize(fieldKinds[j], (int) INT.get(data, varOffset));
+                }
+            }
+        }
+
+        return true;
+    }
+
+    static @NotNull Object readVar(@NotNull byte[] data, int offset, @NotNull Kind kind) {
+        final int length = (int) INT.get(data, offset);
+        final int start = offset + 4;
+
+        if (length < 0 || start + varSize(kind, (long) length) > data.length) {
+            throw new IllegalArgumentException("Corrupted struct: " + kind + " of length " + length + " exceeds the data");
+        }
+
+        switch (kind) {
+            case STRING:
+                return new String(data, start, length, StandardCharsets.UTF_8);
+            case BYTE_ARRAY: {
+                final byte[] array = new byte[length];
+                System.arraycopy(data, start, array, 0, length);
+                return array;
+            }
+            case INT_ARRAY: {
+                final int[] array = new int[length];
+                for (int i = 0; i < length; i++) array[i] = (int) INT.get(data, start + i * 4);
+                return array;
+            }
+            case LONG_ARRAY: {
+                final long[] array = new long[length];
+                for (int i = 0; i < length; i++) array[i] = (long) LONG.get(data, start + i * 8);
+                return array;
+            }
+            default:
+                throw new IllegalArgumentException("Kind " + kind + " is not variable-length");
+        }
+    }
+}
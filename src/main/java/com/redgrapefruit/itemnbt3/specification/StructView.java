@@ -0,0 +1,128 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A {@link StructView} reads and writes the fields of a struct-encoded {@link Specification} directly in the stored
+ * byte array, without decoding it into a {@link DataCompound}.
+ * <br><br>
+ * Fixed-size fields can be read and written in place. Variable-length fields (strings and arrays) can only be read,
+ * use a regular {@link DataCompound} to change them.
+ */
+public final class StructView {
+    private final @NotNull StructLayout layout;
+    private final @NotNull byte[] data;
+
+    @ApiStatus.Internal
+    public StructView(@NotNull StructLayout layout, @NotNull byte[] data) {
+        Objects.requireNonNull(layout);
+        Objects.requireNonNull(data);
+
+        if (!layout.matches(data)) {
+            throw new IllegalArgumentException("Data does not match the struct layout");
+        }
+
+        this.layout = layout;
+        this.data = data;
+    }
+
+    private int offset(@NotNull String key, @NotNull StructLayout.Kind kind) {
+        final int field = layout.indexOf(key);
+
+        if (layout.kindOf(field) != kind) {
+            throw new IllegalArgumentException("Field " + key + " is a " + layout.kindOf(field) + ", not a " + kind);
+        }
+
+        return kind.isFixed() ? layout.offsetOf(field) : layout.varOffsetOf(data, field);
+    }
+
+    public byte getByte(@NotNull String key) {
+        return data[offset(key, StructLayout.Kind.BYTE)];
+    }
+
+    public void putByte(@NotNull String key, byte value) {
+        data[offset(key, StructLayout.Kind.BYTE)] = value;
+    }
+
+    public short getShort(@NotNull String key) {
+        return (short) StructLayout.SHORT.get(data, offset(key, StructLayout.Kind.SHORT));
+    }
+
+    public void putShort(@NotNull String key, short value) {
+        StructLayout.SHORT.set(data, offset(key, StructLayout.Kind.SHORT), value);
+    }
+
+    public int getInt(@NotNull String key) {
+        return (int) StructLayout.INT.get(data, offset(key, StructLayout.Kind.INT));
+    }
+
+    public void putInt(@NotNull String key, int value) {
+        StructLayout.INT.set(data, offset(key, StructLayout.Kind.INT), value);
+    }
+
+    public long getLong(@NotNull String key) {
+        return (long) StructLayout.LONG.get(data, offset(key, StructLayout.Kind.LONG));
+    }
+
+    public void putLong(@NotNull String key, long value) {
+        StructLayout.LONG.set(data, offset(key, StructLayout.Kind.LONG), value);
+    }
+
+    public float getFloat(@NotNull String key) {
+        return (float) StructLayout.FLOAT.get(data, offset(key, StructLayout.Kind.FLOAT));
+    }
+
+    public void putFloat(@NotNull String key, float value) {
+        StructLayout.FLOAT.set(data, offset(key, StructLayout.Kind.FLOAT), value);
+    }
+
+    public double getDouble(@NotNull String key) {
+        return (double) StructLayout.DOUBLE.get(data, offset(key, StructLayout.Kind.DOUBLE));
+    }
+
+    public void putDouble(@NotNull String key, double value) {
+        StructLayout.DOUBLE.set(data, offset(key, StructLayout.Kind.DOUBLE), value);
+    }
+
+    public boolean getBool(@NotNull String key) {
+        return data[offset(key, StructLayout.Kind.BOOL)] != 0;
+    }
+
+    public void putBool(@NotNull String key, boolean value) {
+        data[offset(key, StructLayout.Kind.BOOL)] = value ? (byte) 1 : (byte) 0;
+    }
+
+    public @NotNull UUID getUUID(@NotNull String key) {
+        final int offset = offset(key, StructLayout.Kind.UUID);
+
+        return new UUID((long) StructLayout.LONG.get(data, offset), (long) StructLayout.LONG.get(data, offset + 8));
+    }
+
+    public void putUUID(@NotNull String key, @NotNull UUID value) {
+        Objects.requireNonNull(value);
+
+        final int offset = offset(key, StructLayout.Kind.UUID);
+        StructLayout.LONG.set(data, offset, value.getMostSignificantBits());
+        StructLayout.LONG.set(data, offset + 8, value.getLeastSignificantBits());
+    }
+
+    public @NotNull String getString(@NotNull String key) {
+        return (String) StructLayout.readVar(data, offset(key, StructLayout.Kind.STRING), StructLayout.Kind.STRING);
+    }
+
+    public @NotNull byte[] getByteArray(@NotNull String key) {
+        return (byte[]) StructLayout.readVar(data, offset(key, StructLayout.Kind.BYTE_ARRAY), StructLayout.Kind.BYTE_ARRAY);
+    }
+
+    public @NotNull int[] getIntArray(@NotNull String key) {
+        return (int[]) StructLayout.readVar(data, offset(key, StructLayout.Kind.INT_ARRAY), StructLayout.Kind.INT_ARRAY);
+    }
+
+    public @NotNull long[] getLongArray(@NotNull String key) {
+        return (long[]) StructLayout.readVar(data, offset(key, StructLayout.Kind.LONG_ARRAY), StructLayout.Kind.LONG_ARRAY);
+    }
+}
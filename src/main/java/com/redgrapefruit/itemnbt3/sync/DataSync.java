@@ -0,0 +1,180 @@
+package com.redgrapefruit.itemnbt3.sync;
+
+import com.redgrapefruit.itemnbt3.DataClient;
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The {@link DataSync} is an opt-in channel for syncing {@link Specification} data to the client.
+ * <br><br>
+ * Instead of letting vanilla resend the whole stack, only the entries changed by the action are sent,
+ * keyed by the {@link Specification}'s identifier and the slot of the stack. Entries that are no longer stored, like
+ * fields that went back to an elided default, are sent as removals, so the client's NBT stays equal to the server's.
+ * If the change is too large, the stack has not been initialized yet or its data has been removed, or the client
+ * can't receive the delta, the vanilla full sync is used instead.
+ */
+public final class DataSync {
+    public static final @NotNull Identifier DELTA_PACKET = new Identifier("itemnbt", "delta");
+
+    // If more than this part of the entries has changed, a full sync is cheaper than a delta
+    private static final double FULL_SYNC_THRESHOLD = 0.5;
+
+    private static final @NotNull Set<String> enabled = new HashSet<>();
+
+    private DataSync() {
+        throw new RuntimeException("DataSync is not meant to be instantiated");
+    }
+
+    /**
+     * Enables delta-syncing for the given {@link Specification}.
+     *
+     * @param specification The {@link Specification} to enable.
+     */
+    public static void enable(@NotNull Specification specification) {
+        Objects.requireNonNull(specification);
+
+        enabled.add(specification.getId());
+    }
+
+    public static boolean isEnabled(@NotNull Specification specification) {
+        Objects.requireNonNull(specification);
+
+        return enabled.contains(specification.getId());
+    }
+
+    /**
+     * A variant of {@link DataClient#use(ItemStack, Specification, Consumer)} for a stack in the player's currently
+     * open screen handler, which syncs the changes to the client as a delta.
+     *
+     * @param player The player, whose screen handler contains the stack.
+     * @param slot The slot index in the player's current screen handler.
+     * @param specification The specification to serialize with.
+     * @param action The lambda action where you can interact with the {@link DataCompound}.
+     */
+    public static void use(@NotNull ServerPlayerEntity player, int slot, @NotNull Specification specification, @NotNull Consumer<DataCompound> action) {
+        Objects.requireNonNull(player);
+        Objects.requireNonNull(specification);
+        Objects.requireNonNull(action);
+
+        final ScreenHandler handler = player.currentScreenHandler;
+        final ItemStack stack = handler.getSlot(slot).getStack();
+
+        if (!isEnabled(specification) || !ServerPlayNetworking.canSend(player, DELTA_PACKET)) {
+            DataClient.use(stack, specification, action);
+            return;
+        }
+
+        final NbtCompound delta = useWithDelta(stack, specification, action);
+        if (delta == null) return;
+
+        final PacketByteBuf buf = PacketByteBufs.create();
+        buf.writeVarInt(handler.syncId);
+        buf.writeVarInt(slot);
+        buf.writeString(specification.getId());
+        buf.writeNbt(delta);
+        ServerPlayNetworking.send(player, DELTA_PACKET, buf);
+
+        // Mark the slot as synced, so that vanilla doesn't resend the whole stack
+        handler.setPreviousTrackedSlot(slot, stack);
+    }
+
+    /**
+     * Runs a {@link DataClient#use(ItemStack, Specification, Consumer)} and computes the delta that reproduces the
+     * resulting NBT from the previous one with {@link #applyDelta(NbtCompound, NbtCompound)}.
+     *
+     * @return The delta, or <code>null</code> if nothing has changed or a full sync is needed.
+     */
+    @ApiStatus.Internal
+    public static @Nullable NbtCompound useWithDelta(@NotNull ItemStack stack, @NotNull Specification specification, @NotNull Consumer<DataCompound> action) {
+        // Freshly initialized data has no counterpart on the client, so it always goes through a full sync
+        final boolean initialized = Utilities.peekSubNbt(stack, specification.getId()) != null;
+        final DeltaCapture capture = new DeltaCapture(action);
+        DataClient.use(stack, specification, capture);
+
+        // Fully elided data has been removed from the stack altogether, which vanilla syncs as well
+        final NbtCompound stored = Utilities.peekSubNbt(stack, specification.getId());
+        if (!initialized || stored == null || capture.before == null || capture.after == null) return null;
+
+        final NbtCompound delta = new NbtCompound();
+        final int changed = specification.writeDelta(delta, capture.before, capture.after, stored);
+
+        if (changed == 0 || changed > specification.getFieldCount() * FULL_SYNC_THRESHOLD) return null;
+
+        return delta;
+    }
+
+    /**
+     * Applies a delta written by {@link Specification#writeDelta} to the receiving side's copy of the data: the entries
+     * listed under {@link Specification#REMOVED_KEY} are removed, then the remaining entries are merged in, recursing
+     * into nested compounds.
+     *
+     * @param nbt The writable compound of the {@link Specification}.
+     * @param delta The received delta.
+     */
+    @ApiStatus.Internal
+    public static void applyDelta(@NotNull NbtCompound nbt, @NotNull NbtCompound delta) {
+        Objects.requireNonNull(nbt);
+        Objects.requireNonNull(delta);
+
+        final NbtList removed = delta.getList(Specification.REMOVED_KEY, NbtElement.STRING_TYPE);
+        for (int i = 0; i < removed.size(); i++) {
+            nbt.remove(removed.getString(i));
+        }
+
+        for (String key : delta.getKeys()) {
+            if (key.equals(Specification.REMOVED_KEY)) continue;
+
+            if (delta.get(key) instanceof NbtCompound nested) {
+                NbtCompound target = nbt.get(key) instanceof NbtCompound compound ? compound : null;
+
+                if (target == null) {
+                    target = new NbtCompound();
+                    nbt.put(key, target);
+                }
+
+                applyDelta(target, nested);
+            } else {
+                nbt.put(key, Objects.requireNonNull(delta.get(key)).copy());
+            }
+        }
+    }
+
+    /**
+     * Records the state of the {@link DataCompound} before and after the user's action.
+     */
+    private static final class DeltaCapture implements Consumer<DataCompound> {
+        private final @NotNull Consumer<DataCompound> action;
+        private DataCompound before;
+        private DataCompound after;
+
+        private DeltaCapture(@NotNull Consumer<DataCompound> action) {
+            this.action = action;
+        }
+
+        @Override
+        public void accept(DataCompound compound) {
+            before = compound.copy();
+            action.accept(compound);
+            after = compound;
+        }
+    }
+}
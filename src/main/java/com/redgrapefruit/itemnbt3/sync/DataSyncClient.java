@@ -0,0 +1,44 @@
+package com.redgrapefruit.itemnbt3.sync;
+
+import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.screen.ScreenHandler;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Receives the deltas sent by {@link DataSync} and applies them to the client's copy of the stack.
+ */
+@ApiStatus.Internal
+@Environment(EnvType.CLIENT)
+public final class DataSyncClient implements ClientModInitializer {
+    @Override
+    public void onInitializeClient() {
+        ClientPlayNetworking.registerGlobalReceiver(DataSync.DELTA_PACKET, (client, handler, buf, responseSender) -> {
+            final int syncId = buf.readVarInt();
+            final int slot = buf.readVarInt();
+            final String id = buf.readString();
+            final NbtCompound delta = buf.readNbt();
+
+            client.execute(() -> apply(client, syncId, slot, id, delta));
+        });
+    }
+
+    private static void apply(MinecraftClient client, int syncId, int slot, String id, NbtCompound delta) {
+        if (client.player == null || delta == null) return;
+
+        // The screen has been closed in the meantime, it will be fully synced once reopened
+        final ScreenHandler handler = client.player.currentScreenHandler;
+        if (handler.syncId != syncId || slot < 0 || slot >= handler.slots.size()) return;
+
+        final ItemStack stack = handler.getSlot(slot).getStack();
+        if (stack.isEmpty()) return;
+
+        // Requesting the compound from the stack replaces a shared flyweight with a private copy, which can be merged into
+        DataSync.applyDelta(stack.getOrCreateSubNbt(id), delta);
+    }
+}
@@ -0,0 +1,83 @@
+package com.redgrapefruit.itemnbt3.tools;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.CommandDispatcher;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * The <code>/itemnbt footprint</code> command, which creates a {@link FootprintReport} over the loaded stacks of the
+ * server, walks it over the following ticks and then logs it and sends it to the player who started it.
+ * <br><br>
+ * Only the player's {@link UUID} is kept while the report runs, so that a player who disconnects meanwhile isn't
+ * retained. The report is then only logged, just like one started from the console.
+ */
+@ApiStatus.Internal
+public final class FootprintCommand {
+    private static final @NotNull Logger LOGGER = LogManager.getLogger();
+
+    // Stacks walked per tick, a few full player inventories
+    private static final int STACKS_PER_TICK = 512;
+
+    private static @Nullable FootprintReport running = null;
+    private static @Nullable UUID requester = null;
+
+    private FootprintCommand() {
+        throw new RuntimeException("FootprintCommand is not meant to be instantiated");
+    }
+
+    public static void register(@NotNull CommandDispatcher<ServerCommandSource> dispatcher) {
+        dispatcher.register(CommandManager.literal("itemnbt")
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(CommandManager.literal("footprint").executes(context -> start(context.getSource()))));
+    }
+
+    private static int start(@NotNull ServerCommandSource source) {
+        if (running != null) {
+            source.sendError(Text.literal("A footprint report is already running"));
+            return 0;
+        }
+
+        running = FootprintReport.ofServer(source.getServer());
+        requester = source.getEntity() instanceof ServerPlayerEntity player ? player.getUuid() : null;
+        source.sendFeedback(Text.literal("Started footprint report"), false);
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Walks the running report further. Called at the end of every server tick.
+     */
+    public static void tick(@NotNull MinecraftServer server) {
+        final FootprintReport report = running;
+        if (report == null || !report.step(STACKS_PER_TICK)) return;
+
+        final ServerPlayerEntity player = requester == null ? null : server.getPlayerManager().getPlayer(requester);
+
+        for (String line : report.format()) {
+            LOGGER.info(line);
+            if (player != null) player.sendMessage(Text.literal(line), false);
+        }
+
+        running = null;
+        requester = null;
+    }
+
+    /**
+     * Drops the running report, called when the server stops.
+     */
+    public static void cancel() {
+        running = null;
+        requester = null;
+    }
+}
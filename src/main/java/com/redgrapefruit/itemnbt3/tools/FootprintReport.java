@@ -0,0 +1,320 @@
+package com.redgrapefruit.itemnbt3.tools;
+
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.specification.SpecificationRegistry;
+import com.redgrapefruit.itemnbt3.util.ItemStackMixinAccess;
+import com.redgrapefruit.itemnbt3.util.NbtSizes;
+import com.redgrapefruit.itemnbt3.util.ThreadedAnvilChunkStorageMixinAccess;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.entity.decoration.ItemFrameEntity;
+import net.minecraft.inventory.Inventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.chunk.WorldChunk;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A {@link FootprintReport} estimates how much heap the data of every registered {@link Specification} takes up
+ * in a set of stacks, using the estimates of {@link NbtSizes}.
+ * <br><br>
+ * The stacks are walked in steps of a limited size, so that a report over all loaded stacks can be spread over
+ * several server ticks. Compounds shared by several stacks, like the flyweights of the
+ * {@link com.redgrapefruit.itemnbt3.FlyweightPool}, are only retained once. Compounds with equal content are recognized
+ * by a 64-bit hash, so the amount of distinct contents is an estimate as well.
+ * <br><br>
+ * Must only be used from the thread owning the stacks.
+ */
+public final class FootprintReport {
+    private final @NotNull Iterator<ItemStack> stacks;
+    private final @NotNull Map<String, Entry> entries = new HashMap<>();
+    private int scanned = 0;
+
+    public FootprintReport(@NotNull Iterator<ItemStack> stacks) {
+        Objects.requireNonNull(stacks);
+
+        this.stacks = stacks;
+    }
+
+    /**
+     * Creates a report over every slot of the inventories. Slots are read when they are reached, not when the report is created.
+     */
+    public static @NotNull FootprintReport ofInventories(@NotNull List<? extends Inventory> inventories) {
+        Objects.requireNonNull(inventories);
+
+        return new FootprintReport(new SlotIterator(List.copyOf(inventories)));
+    }
+
+    /**
+     * Creates a report over the loaded stacks of the server:
+     * <ul>
+     *     <li>the inventories and ender chests of the players currently online</li>
+     *     <li>the inventories of the block entities in loaded chunks, like chests and furnaces</li>
+     *     <li>the inventories of entities, like minecarts with chests</li>
+     *     <li>dropped items, the items in item frames and the equipment of mobs and armor stands</li>
+     * </ul>
+     * Which inventories and stacks there are is collected right away, the slots of the inventories are read when they
+     * are reached. Stacks stored elsewhere, for example in the block entity data of shulker boxes held as items, are
+     * not walked.
+     */
+    public static @NotNull FootprintReport ofServer(@NotNull MinecraftServer server) {
+        Objects.requireNonNull(server);
+
+        final List<Inventory> inventories = new ArrayList<>();
+        final List<ItemStack> stacks = new ArrayList<>();
+
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            inventories.add(player.getInventory());
+            inventories.add(player.getEnderChestInventory());
+        }
+
+        for (ServerWorld world : server.getWorlds()) {
+            final ThreadedAnvilChunkStorageMixinAccess chunks = (ThreadedAnvilChunkStorageMixinAccess) world.getChunkManager().threadedAnvilChunkStorage;
+
+            for (ChunkHolder holder : chunks.getChunkHolders()) {
+                final WorldChunk chunk = holder.getWorldChunk();
+                if (chunk == null) continue;
+
+                for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+                    if (blockEntity instanceof Inventory inventory) inventories.add(inventory);
+                }
+            }
+
+            for (Entity entity : world.iterateEntities()) {
+                // Players are walked through their inventories above, which include the equipment
+                if (entity instanceof ServerPlayerEntity) continue;
+
+                if (entity instanceof Inventory inventory) inventories.add(inventory);
+                if (entity instanceof ItemEntity item) stacks.add(item.getStack());
+                if (entity instanceof ItemFrameEntity frame) stacks.add(frame.getHeldItemStack());
+
+                for (ItemStack stack : entity.getItemsEquipped()) stacks.add(stack);
+            }
+        }
+
+        return new FootprintReport(new ConcatIterator(new SlotIterator(inventories), stacks.iterator()));
+    }
+
+    /**
+     * Walks the next stacks.
+     *
+     * @param budget The maximum amount of stacks to walk.
+     * @return Whether all stacks have been walked.
+     */
+    public boolean step(int budget) {
+        for (int i = 0; i < budget && stacks.hasNext(); i++) {
+            final ItemStack stack = stacks.next();
+            ++scanned;
+
+            if (stack == null || stack.isEmpty() || !stack.hasNbt()) continue;
+
+            // Requesting the NBT from the stack would make its shared compounds private
+            final NbtCompound nbt = Objects.requireNonNull(((ItemStackMixinAccess) (Object) stack).peekNbt());
+
+            for (String key : nbt.getKeys()) {
+                if (!(nbt.get(key) instanceof NbtCompound subNbt) || !SpecificationRegistry.contains(key)) continue;
+
+                entries.computeIfAbsent(key, Entry::new).add(subNbt);
+            }
+        }
+
+        return !stacks.hasNext();
+    }
+
+    /**
+     * Walks all remaining stacks at once.
+     */
+    public void run() {
+        step(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The amount of stacks walked so far, including the ones without any data.
+     */
+    public int getScannedCount() {
+        return scanned;
+    }
+
+    /**
+     * @return The entry of every {@link Specification} found so far, the ones retaining the most heap first.
+     */
+    public @NotNull List<Entry> getEntries() {
+        final List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(Comparator.comparingLong((Entry entry) -> entry.getRetained().getTotal()).reversed());
+
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * @return The report as human-readable lines, one per {@link Specification}.
+     */
+    public @NotNull List<String> format() {
+        final List<String> lines = new ArrayList<>();
+        lines.add("Scanned " + scanned + " stacks, found data of " + entries.size() + " specifications");
+
+        for (Entry entry : getEntries()) {
+            final NbtSizes.Breakdown retained = entry.getRetained();
+
+            lines.add(entry.getId() + ": " + entry.getStackCount() + " stacks, "
+                    + formatBytes(retained.getTotal()) + " retained of " + formatBytes(entry.getTotal().getTotal()) + " referenced"
+                    + " (keys " + formatBytes(retained.getKeys())
+                    + ", wrappers " + formatBytes(retained.getWrappers())
+                    + ", arrays " + formatBytes(retained.getArrays())
+                    + ", compounds " + formatBytes(retained.getCompounds()) + "), "
+                    + entry.getDistinctContentCount() + " distinct, "
+                    + String.format("%.1f", entry.getDuplicationRatio() * 100.0) + "% duplicated");
+        }
+
+        return lines;
+    }
+
+    private static @NotNull String formatBytes(long bytes) {
+        if (bytes < 1024L) return bytes + " B";
+        if (bytes < 1024L * 1024L) return String.format("%.1f KiB", bytes / 1024.0);
+
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * The footprint of the data of one {@link Specification}.
+     */
+    public static final class Entry {
+        private final @NotNull String id;
+        private int stacks = 0;
+        private final @NotNull NbtSizes.Breakdown total = new NbtSizes.Breakdown();
+        private final @NotNull NbtSizes.Breakdown retained = new NbtSizes.Breakdown();
+        private final @NotNull Set<NbtCompound> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final @NotNull LongSet contents = new LongOpenHashSet();
+
+        private Entry(@NotNull String id) {
+            this.id = id;
+        }
+
+        private void add(@NotNull NbtCompound subNbt) {
+            ++stacks;
+
+            final NbtSizes.Breakdown size = new NbtSizes.Breakdown();
+            NbtSizes.estimate(subNbt, size);
+            total.add(size);
+
+            if (instances.add(subNbt)) retained.add(size);
+            contents.add(((long) subNbt.hashCode() << 32) ^ size.getTotal());
+        }
+
+        public @NotNull String getId() {
+            return id;
+        }
+
+        public int getStackCount() {
+            return stacks;
+        }
+
+        /**
+         * @return The size of the data summed over all stacks, as if no compound was shared.
+         */
+        public @NotNull NbtSizes.Breakdown getTotal() {
+            return total;
+        }
+
+        /**
+         * @return The size of the data counting every shared compound once.
+         */
+        public @NotNull NbtSizes.Breakdown getRetained() {
+            return retained;
+        }
+
+        /**
+         * @return The amount of distinct compound instances.
+         */
+        public int getInstanceCount() {
+            return instances.size();
+        }
+
+        /**
+         * @return The estimated amount of distinct contents.
+         */
+        public int getDistinctContentCount() {
+            return contents.size();
+        }
+
+        /**
+         * @return The share of stacks whose data is equal to the data of another stack, between 0 and 1.
+         */
+        public double getDuplicationRatio() {
+            return stacks == 0 ? 0.0 : 1.0 - (double) contents.size() / stacks;
+        }
+    }
+
+    /**
+     * Iterates over the stacks of one iterator, then over the stacks of another.
+     */
+    private static final class ConcatIterator implements Iterator<ItemStack> {
+        private final @NotNull Iterator<ItemStack> first;
+        private final @NotNull Iterator<ItemStack> second;
+
+        private ConcatIterator(@NotNull Iterator<ItemStack> first, @NotNull Iterator<ItemStack> second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return first.hasNext() || second.hasNext();
+        }
+
+        @Override
+        public @Nullable ItemStack next() {
+            return first.hasNext() ? first.next() : second.next();
+        }
+    }
+
+    /**
+     * Iterates over the slots of several inventories, reading every slot only when it is reached.
+     */
+    private static final class SlotIterator implements Iterator<ItemStack> {
+        private final @NotNull List<? extends Inventory> inventories;
+        private int inventory = 0;
+        private int slot = 0;
+
+        private SlotIterator(@NotNull List<? extends Inventory> inventories) {
+            this.inventories = inventories;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (inventory < inventories.size() && slot >= inventories.get(inventory).size()) {
+                ++inventory;
+                slot = 0;
+            }
+
+            return inventory < inventories.size();
+        }
+
+        @Override
+        public @Nullable ItemStack next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            return inventories.get(inventory).getStack(slot++);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.redgrapefruit.itemnbt3.tools;
+
+import com.redgrapefruit.itemnbt3.io.SelectiveNbtReader;
+import com.redgrapefruit.itemnbt3.linking.DataLink;
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The {@link RegionScanner} is an offline tool for extracting item data in bulk from saved worlds, without a running server.
+ * <br><br>
+ * Region files (<code>.mca</code>) are memory-mapped and their chunks are decompressed and scanned in parallel.
+ * Player and level data (<code>.dat</code>) is scanned as a whole. Every compound stored under the {@link Specification}'s
+ * identifier, wherever it is in the tree (containers, entities, inventories), is read with a {@link SelectiveNbtReader}
+ * and passed to a {@link Sink}.
+ * <br><br>
+ * Corrupted chunks and files are logged and skipped, so that a single broken region doesn't stop a large scan.
+ */
+public final class RegionScanner {
+    private static final @NotNull Logger LOGGER = LogManager.getLogger();
+
+    private static final int SECTOR_SIZE = 4096;
+    private static final int CHUNKS_PER_REGION = 1024;
+
+    private static final int GZIP = 1;
+    private static final int ZLIB = 2;
+    private static final int UNCOMPRESSED = 3;
+    private static final int EXTERNAL_FLAG = 128;
+
+    private final @NotNull ThreadLocal<SelectiveNbtReader> readers;
+    private final @NotNull ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+    private final int parallelism;
+
+    /**
+     * Receives the compounds found by a {@link RegionScanner}. Called concurrently from the scanning threads.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @param file The region or data file the compound was found in.
+         * @param compound The read {@link DataCompound}.
+         */
+        void accept(@NotNull Path file, @NotNull DataCompound compound);
+
+        /**
+         * Creates a {@link Sink} that links every found compound to a new object.
+         *
+         * @param link The {@link DataLink} of the object's class.
+         * @param factory Creates a new object for every compound.
+         * @param consumer Receives the linked objects, concurrently.
+         * @param <T> The type of the objects.
+         * @return The linking {@link Sink}.
+         */
+        static <T> @NotNull Sink linking(@NotNull DataLink link, @NotNull Supplier<T> factory, @NotNull Consumer<T> consumer) {
+            Objects.requireNonNull(link);
+            Objects.requireNonNull(factory);
+            Objects.requireNonNull(consumer);
+
+            return (file, compound) -> {
+                final T instance = factory.get();
+                link.forwardLink(compound, instance);
+                consumer.accept(instance);
+            };
+        }
+    }
+
+    /**
+     * Creates a {@link RegionScanner} using all available processors.
+     *
+     * @param specification The {@link Specification} of the data to extract.
+     */
+    public RegionScanner(@NotNull Specification specification) {
+        this(specification, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param specification The {@link Specification} of the data to extract.
+     * @param parallelism The amount of threads used for scanning.
+     */
+    public RegionScanner(@NotNull Specification specification, int parallelism) {
+        Objects.requireNonNull(specification);
+
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+
+        this.readers = ThreadLocal.withInitial(() -> new SelectiveNbtReader(specification));
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Scans all <code>.mca</code> and <code>.dat</code> files under the given directory, for example a world folder.
+     *
+     * @param directory The directory to scan recursively.
+     * @param sink Receives the found compounds.
+     * @return The amount of found compounds.
+     * @throws IOException If the directory can't be listed.
+     */
+    public long scanDirectory(@NotNull Path directory, @NotNull Sink sink) throws IOException {
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(sink);
+
+        final List<Path> files;
+        try (Stream<Path> stream = Files.walk(directory)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(file -> isRegion(file) || isData(file))
+                    .collect(Collectors.toList());
+        }
+
+        return run(() -> files.parallelStream().mapToLong(file -> scanFile(file, sink)).sum(), files.size());
+    }
+
+    /**
+     * Scans a single <code>.mca</code> region file.
+     *
+     * @param file The region file.
+     * @param sink Receives the found compounds.
+     * @return The amount of found compounds.
+     */
+    public long scanRegion(@NotNull Path file, @NotNull Sink sink) {
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(sink);
+
+        return run(() -> scanFile(file, sink), 1);
+    }
+
+    private long run(@NotNull Supplier<Long> task, int fileCount) {
+        final long start = System.nanoTime();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            final long found = pool.submit(task::get).get();
+            LOGGER.info("Scanned " + fileCount + " files in " + (System.nanoTime() - start) / 1_000_000L + " ms, found " + found + " compounds");
+
+            return found;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Region scan was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Region scan failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private long scanFile(@NotNull Path file, @NotNull Sink sink) {
+        try {
+            return isRegion(file) ? scanRegionFile(file, sink) : scanDataFile(file, sink);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Skipping unreadable file " + file + ": " + e.getMessage());
+            return 0L;
+        }
+    }
+
+    private long scanDataFile(@NotNull Path file, @NotNull Sink sink) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            return readers.get().scan(input, compound -> sink.accept(file, compound));
+        }
+    }
+
+    private long scanRegionFile(@NotNull Path file, @NotNull Sink sink) throws IOException {
+        final MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Empty or truncated regions have no chunks
+            if (channel.size() < SECTOR_SIZE * 2L) return 0L;
+
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        }
+
+        final AtomicLong found = new AtomicLong();
+
+        IntStream.range(0, CHUNKS_PER_REGION).parallel().forEach(index -> {
+            try {
+                found.addAndGet(scanChunk(file, mapped, index, sink));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Skipping corrupted chunk " + index + " in " + file + ": " + e.getMessage());
+            }
+        });
+
+        return found.get();
+    }
+
+    private long scanChunk(@NotNull Path file, @NotNull ByteBuffer region, int index, @NotNull Sink sink) throws IOException {
+        final int location = region.getInt(index * 4);
+        if (location == 0) return 0L;
+
+        final long offset = (long) (location >>> 8) * SECTOR_SIZE;
+        final long sectors = location & 0xFF;
+        if (offset < SECTOR_SIZE * 2L || offset + 5 > region.limit()) throw new IOException("Chunk outside of the file");
+
+        final int length = region.getInt((int) offset);
+        final int compression = region.get((int) offset + 4) & 0xFF;
+        if (length < 1 || offset + 4 + length > region.limit() || length > sectors * SECTOR_SIZE) throw new IOException("Invalid chunk length " + length);
+
+        final InputStream raw;
+        if ((compression & EXTERNAL_FLAG) != 0) {
+            raw = Files.newInputStream(externalChunk(file, index));
+        } else {
+            raw = new ByteBufferInputStream(region.slice((int) offset + 5, length - 1));
+        }
+
+        final InputStream decompressed = switch (compression & ~EXTERNAL_FLAG) {
+            case GZIP -> new BufferedInputStream(new GZIPInputStream(raw));
+            case ZLIB -> {
+                final Inflater inflater = inflaters.get();
+                inflater.reset();
+                yield new BufferedInputStream(new InflaterInputStream(raw, inflater));
+            }
+            case UNCOMPRESSED -> raw;
+            default -> throw new IOException("Unknown chunk compression " + compression);
+        };
+
+        try (DataInputStream input = new DataInputStream(decompressed)) {
+            return readers.get().scan(input, compound -> sink.accept(file, compound));
+        }
+    }
+
+    /**
+     * @return The <code>c.x.z.mcc</code> file of an oversized chunk stored outside of its region.
+     */
+    private static @NotNull Path externalChunk(@NotNull Path region, int index) throws IOException {
+        final String[] parts = region.getFileName().toString().split("\\.");
+        if (parts.length != 4) throw new IOException("Can't locate external chunk of " + region);
+
+        try {
+            final int x = Integer.parseInt(parts[1]) * 32 + (index & 31);
+            final int z = Integer.parseInt(parts[2]) * 32 + (index >> 5);
+
+            return region.resolveSibling("c." + x + "." + z + ".mcc");
+        } catch (NumberFormatException e) {
+            throw new IOException("Can't locate external chunk of " + region, e);
+        }
+    }
+
+    private static boolean isRegion(@NotNull Path file) {
+        return file.getFileName().toString().endsWith(".mca");
+    }
+
+    private static boolean isData(@NotNull Path file) {
+        return file.getFileName().toString().endsWith(".dat");
+    }
+
+    /**
+     * An {@link InputStream} over a slice of the mapped region, so that chunks are never copied onto the heap.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final @NotNull ByteBuffer buffer;
+
+        private ByteBufferInputStream(@NotNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NotNull byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+
+            return count;
+        }
+
+        @Override
+        public long skip(long count) {
+            final int skipped = (int) Math.max(0L, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
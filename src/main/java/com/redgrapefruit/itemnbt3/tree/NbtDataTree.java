@@ -0,0 +1,84 @@
+package com.redgrapefruit.itemnbt3.tree;
+
+import com.redgrapefruit.itemnbt3.serializer.TypeSerializer;
+import com.redgrapefruit.itemnbt3.util.NbtCompoundMixinAccess;
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * The {@link DataTree} backend over Minecraft's {@link NbtCompound}, which is what item data is stored in.
+ * <br><br>
+ * Values are encoded by their {@link TypeSerializer}, so every {@link ValueType} handed to this backend must be one.
+ */
+public final class NbtDataTree implements DataTree {
+    private final @NotNull NbtCompound nbt;
+
+    public NbtDataTree(@NotNull NbtCompound nbt) {
+        Objects.requireNonNull(nbt);
+
+        this.nbt = nbt;
+    }
+
+    /**
+     * @return The wrapped {@link NbtCompound}.
+     */
+    public @NotNull NbtCompound getNbt() {
+        return nbt;
+    }
+
+    @Override
+    public <T> @Nullable T read(@NotNull String key, @NotNull ValueType<T> type) {
+        return serializerOf(type).readNbt(key, nbt);
+    }
+
+    @Override
+    public <T> void write(@NotNull String key, @NotNull ValueType<T> type, @Nullable T value) {
+        serializerOf(type).writeNbt(key, nbt, value);
+    }
+
+    @Override
+    public long getLong(@NotNull String key) {
+        return nbt.getLong(key);
+    }
+
+    @Override
+    public void putLong(@NotNull String key, long value) {
+        nbt.putLong(key, value);
+    }
+
+    @Override
+    public @NotNull DataTree getOrCreateChild(@NotNull String key) {
+        return new NbtDataTree(Utilities.getOrCreateSubNbt(nbt, key));
+    }
+
+    @Override
+    public @Nullable DataTree getChild(@NotNull String key) {
+        return nbt.contains(key, NbtElement.COMPOUND_TYPE) ? new NbtDataTree(nbt.getCompound(key)) : null;
+    }
+
+    @Override
+    public boolean contains(@NotNull String key) {
+        return nbt.contains(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return nbt.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        ((NbtCompoundMixinAccess) nbt).clearNbt();
+    }
+
+    private static <T> @NotNull TypeSerializer<T> serializerOf(@NotNull ValueType<T> type) {
+        if (type instanceof TypeSerializer<T> serializer) return serializer;
+
+        throw new IllegalArgumentException("Value type " + type + " has no NBT representation");
+    }
+}
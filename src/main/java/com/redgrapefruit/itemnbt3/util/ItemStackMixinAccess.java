@@ -0,0 +1,43 @@
+package com.redgrapefruit.itemnbt3.util;
+
+import com.redgrapefruit.itemnbt3.DerivedCache;
+import com.redgrapefruit.itemnbt3.specification.DataSnapshot;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+@ApiStatus.Internal
+public interface ItemStackMixinAccess {
+    /**
+     * @return The published snapshots of the stack's data, read with a volatile read. The map is never modified.
+     */
+    @Nullable Map<Specification, DataSnapshot> getSnapshots();
+
+    /**
+     * Publishes new snapshots with a volatile write.
+     */
+    void setSnapshots(@Nullable Map<Specification, DataSnapshot> snapshots);
+
+    /**
+     * @return A counter that changes whenever the stack's data is written through the {@link com.redgrapefruit.itemnbt3.DataClient},
+     * its NBT or one of its sub-compounds is replaced or removed, or the compound of a registered
+     * {@link Specification} is requested through {@link net.minecraft.item.ItemStack#getSubNbt(String)} or
+     * {@link net.minecraft.item.ItemStack#getOrCreateSubNbt(String)}, since whoever requested it may modify it.
+     * Reading the NBT through {@link net.minecraft.item.ItemStack#getNbt()} doesn't change it.
+     */
+    int getWriteCount();
+
+    void markWritten();
+
+    @Nullable DerivedCache getDerivedCache();
+
+    void setDerivedCache(@Nullable DerivedCache cache);
+
+    /**
+     * @return The stack's NBT, without counting as a request of its data. Must only be read.
+     */
+    @Nullable NbtCompound peekNbt();
+}
@@ -1,8 +1,24 @@
 package com.redgrapefruit.itemnbt3.util;
 
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
 
 @ApiStatus.Internal
 public interface NbtCompoundMixinAccess {
     void clearNbt();
+
+    /**
+     * @return Whether this compound is a flyweight shared between several stacks, which must not be modified.
+     */
+    boolean isShared();
+
+    void markShared();
+
+    /**
+     * Replaces every key that has an entry in the table with the {@link String} instance from the table.
+     * Does nothing for a shared compound.
+     */
+    void canonicalizeKeys(@NotNull Map<String, String> table);
 }
@@ -0,0 +1,145 @@
+package com.redgrapefruit.itemnbt3.util;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * Estimates the heap footprint of NBT trees, assuming a 64-bit JVM with compressed oops.
+ * <br><br>
+ * The numbers are approximations meant for statistics, not exact measurements.
+ */
+public final class NbtSizes {
+    // Object header plus fields of NbtCompound, its HashMap and an average table
+    private static final long COMPOUND = 16 + 48 + 64;
+    // HashMap.Node
+    private static final long ENTRY = 32;
+    // String object plus its byte array header
+    private static final long STRING = 24 + 16;
+    // Wrapper object of a primitive element
+    private static final long PRIMITIVE = 16;
+    private static final long ARRAY = 16 + 16;
+    private static final long LIST = 16 + 24 + 16;
+    private static final long REFERENCE = 4;
+
+    private NbtSizes() {
+        throw new RuntimeException("NbtSizes is not meant to be instantiated");
+    }
+
+    /**
+     * @return The estimated amount of bytes retained by the compound and everything in it, including its keys.
+     */
+    public static long estimate(@NotNull NbtCompound nbt) {
+        Objects.requireNonNull(nbt);
+
+        final Breakdown breakdown = new Breakdown();
+        estimate(nbt, breakdown);
+
+        return breakdown.getTotal();
+    }
+
+    /**
+     * Adds the estimated size of the compound and everything in it to the breakdown.
+     *
+     * @param nbt The compound.
+     * @param breakdown The {@link Breakdown} to add to.
+     */
+    public static void estimate(@NotNull NbtCompound nbt, @NotNull Breakdown breakdown) {
+        Objects.requireNonNull(nbt);
+        Objects.requireNonNull(breakdown);
+
+        breakdown.compounds += COMPOUND;
+
+        for (String key : nbt.getKeys()) {
+            breakdown.keys += ENTRY + STRING + key.length();
+            estimate(nbt, key, breakdown);
+        }
+    }
+
+    private static void estimate(@NotNull NbtCompound nbt, @NotNull String key, @NotNull Breakdown breakdown) {
+        switch (nbt.getType(key)) {
+            case NbtElement.BYTE_TYPE, NbtElement.SHORT_TYPE, NbtElement.INT_TYPE, NbtElement.FLOAT_TYPE -> breakdown.wrappers += PRIMITIVE;
+            case NbtElement.LONG_TYPE, NbtElement.DOUBLE_TYPE -> breakdown.wrappers += PRIMITIVE + 8;
+            case NbtElement.STRING_TYPE -> breakdown.wrappers += PRIMITIVE + STRING + nbt.getString(key).length();
+            case NbtElement.BYTE_ARRAY_TYPE -> breakdown.arrays += ARRAY + nbt.getByteArray(key).length;
+            case NbtElement.INT_ARRAY_TYPE -> breakdown.arrays += ARRAY + nbt.getIntArray(key).length * 4L;
+            case NbtElement.LONG_ARRAY_TYPE -> breakdown.arrays += ARRAY + nbt.getLongArray(key).length * 8L;
+            case NbtElement.COMPOUND_TYPE -> estimate(nbt.getCompound(key), breakdown);
+            case NbtElement.LIST_TYPE -> estimate((NbtList) Objects.requireNonNull(nbt.get(key)), breakdown);
+            default -> {}
+        }
+    }
+
+    private static void estimate(@NotNull NbtList list, @NotNull Breakdown breakdown) {
+        breakdown.compounds += LIST;
+
+        for (NbtElement element : list) {
+            breakdown.compounds += REFERENCE;
+
+            if (element instanceof NbtCompound compound) {
+                estimate(compound, breakdown);
+            } else if (element instanceof NbtList nested) {
+                estimate(nested, breakdown);
+            } else if (element instanceof NbtString string) {
+                breakdown.wrappers += PRIMITIVE + STRING + string.asString().length();
+            } else {
+                breakdown.wrappers += PRIMITIVE + 8;
+            }
+        }
+    }
+
+    /**
+     * The estimated size of NBT trees, split by what the bytes are spent on.
+     */
+    public static final class Breakdown {
+        private long keys = 0L;
+        private long wrappers = 0L;
+        private long arrays = 0L;
+        private long compounds = 0L;
+
+        /**
+         * @return The bytes of the map entries and the key {@link String}s.
+         */
+        public long getKeys() {
+            return keys;
+        }
+
+        /**
+         * @return The bytes of the {@link NbtElement} objects of numbers and strings, including the string contents.
+         */
+        public long getWrappers() {
+            return wrappers;
+        }
+
+        /**
+         * @return The bytes of the array elements, including their contents.
+         */
+        public long getArrays() {
+            return arrays;
+        }
+
+        /**
+         * @return The bytes of the compound and list objects themselves, including nested ones.
+         */
+        public long getCompounds() {
+            return compounds;
+        }
+
+        public long getTotal() {
+            return keys + wrappers + arrays + compounds;
+        }
+
+        public void add(@NotNull Breakdown other) {
+            Objects.requireNonNull(other);
+
+            keys += other.keys;
+            wrappers += other.wrappers;
+            arrays += other.arrays;
+            compounds += other.compounds;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.redgrapefruit.itemnbt3.util;
+
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * The set of {@link Specification}s that an opt-in feature is enabled for, checked on every use from any thread.
+ * <br><br>
+ * Checks are a volatile read and a scan of a short array, without any lock. Enabling copies the array, which only
+ * happens while the {@link Specification}s are set up. They are held strongly, like in their registries.
+ */
+@ApiStatus.Internal
+public final class SpecificationSet {
+    private volatile @NotNull Specification[] specifications = new Specification[0];
+
+    public synchronized void add(@NotNull Specification specification) {
+        Objects.requireNonNull(specification);
+
+        if (!contains(specification)) specifications = Utilities.append(specifications, specification);
+    }
+
+    public boolean contains(@NotNull Specification specification) {
+        for (Specification element : specifications) {
+            if (element == specification) return true;
+        }
+
+        return false;
+    }
+}
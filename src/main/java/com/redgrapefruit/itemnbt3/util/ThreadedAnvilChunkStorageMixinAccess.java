@@ -0,0 +1,16 @@
+package com.redgrapefruit.itemnbt3.util;
+
+import net.minecraft.server.world.ChunkHolder;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Accessor for the chunk map of a world, which Minecraft doesn't expose.
+ */
+@ApiStatus.Internal
+public interface ThreadedAnvilChunkStorageMixinAccess {
+    /**
+     * @return The holders of all chunks the world currently tracks, including ones that aren't fully loaded.
+     */
+    @NotNull Iterable<ChunkHolder> getChunkHolders();
+}
@@ -1,11 +1,24 @@
 package com.redgrapefruit.itemnbt3.util;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.redgrapefruit.itemnbt3.linking.AllowInheritance;
+import com.redgrapefruit.itemnbt3.linking.VariantOrdinal;
+import com.redgrapefruit.itemnbt3.linking.Variants;
+import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NbtCompound;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
 import java.util.Objects;
 
 public final class Utilities {
+    private static final Interner<String> KEYS = Interners.newWeakInterner();
+
     public static NbtCompound getOrCreateSubNbt(@NotNull NbtCompound nbt, @NotNull String name) {
         Objects.requireNonNull(nbt);
 
@@ -19,4 +32,110 @@ public final class Utilities {
 
         return output;
     }
+
+    /**
+     * Looks up a compound of the stack like {@link ItemStack#getSubNbt(String)}, but returns shared compounds as they are
+     * instead of giving the stack a private copy. The result must only be read.
+     */
+    public static @Nullable NbtCompound peekSubNbt(@NotNull ItemStack stack, @NotNull String key) {
+        Objects.requireNonNull(stack);
+        Objects.requireNonNull(key);
+
+        final NbtCompound nbt = ((ItemStackMixinAccess) (Object) stack).peekNbt();
+
+        return nbt != null && nbt.get(key) instanceof NbtCompound subNbt ? subNbt : null;
+    }
+
+    /**
+     * Returns a canonical instance of an NBT key, so that equal keys read from many compounds share one {@link String}.
+     */
+    public static @NotNull String internKey(@NotNull String key) {
+        Objects.requireNonNull(key);
+
+        return KEYS.intern(key);
+    }
+
+    /**
+     * Returns the fields that are considered when generating a {@link com.redgrapefruit.itemnbt3.specification.Specification}
+     * or a {@link com.redgrapefruit.itemnbt3.linking.DataLink} for the class.<br>
+     * These are the public fields, or the component fields of a record in the order of its components.
+     */
+    public static @NotNull Field[] getLinkedFields(@NotNull Class<?> clazz) {
+        Objects.requireNonNull(clazz);
+
+        if (clazz.isRecord()) {
+            final RecordComponent[] components = clazz.getRecordComponents();
+            final Field[] fields = new Field[components.length];
+
+            try {
+                for (int i = 0; i < components.length; i++) {
+                    fields[i] = clazz.getDeclaredField(components[i].getName());
+                }
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException("Record " + clazz.getSimpleName() + " has no field for one of its components", e);
+            }
+
+            return fields;
+        }
+
+        final Field[] fields = clazz.isAnnotationPresent(AllowInheritance.class) ? clazz.getFields() : clazz.getDeclaredFields();
+
+        return Arrays.stream(fields).filter(field -> Modifier.isPublic(field.getModifiers())).toArray(Field[]::new);
+    }
+
+    /**
+     * Returns the implementations a composite of the given type can hold: the {@link Variants} of the type, or the
+     * permitted subclasses of a sealed type ordered by their {@link VariantOrdinal}s. Sealed subclasses are replaced
+     * by their own permitted subclasses, so that every variant is stored under a single discriminator.
+     *
+     * @return The implementations in the order of their ordinals, or <code>null</code> if the type isn't polymorphic.
+     * @throws IllegalArgumentException If an implementation of a sealed type has no {@link VariantOrdinal},
+     * or the ordinals aren't unique and contiguous.
+     */
+    public static @Nullable Class<?>[] getVariants(@NotNull Class<?> clazz) {
+        Objects.requireNonNull(clazz);
+
+        if (clazz.isAnnotationPresent(Variants.class)) return clazz.getAnnotation(Variants.class).value().clone();
+        if (!clazz.isSealed()) return null;
+
+        // The order of getPermittedSubclasses is up to the compiler, so it can't be what the stored ordinals refer to
+        final Class<?>[] subclasses = getSealedImplementations(clazz, new Class<?>[0]);
+        final Class<?>[] variants = new Class<?>[subclasses.length];
+
+        for (Class<?> subclass : subclasses) {
+            final VariantOrdinal ordinal = subclass.getAnnotation(VariantOrdinal.class);
+
+            if (ordinal == null) {
+                throw new IllegalArgumentException("Implementation " + subclass.getSimpleName() + " of sealed type " + clazz.getSimpleName()
+                        + " needs a @VariantOrdinal, or the type needs @Variants");
+            }
+
+            if (ordinal.value() < 0 || ordinal.value() >= variants.length || variants[ordinal.value()] != null) {
+                throw new IllegalArgumentException("Ordinals of the implementations of sealed type " + clazz.getSimpleName()
+                        + " must be unique and range from 0 to " + (variants.length - 1) + ", got " + ordinal.value() + " on " + subclass.getSimpleName());
+            }
+
+            variants[ordinal.value()] = subclass;
+        }
+
+        return variants;
+    }
+
+    private static @NotNull Class<?>[] getSealedImplementations(@NotNull Class<?> clazz, @NotNull Class<?>[] implementations) {
+        for (Class<?> subclass : clazz.getPermittedSubclasses()) {
+            implementations = subclass.isSealed() ? getSealedImplementations(subclass, implementations) : append(implementations, subclass);
+        }
+
+        return implementations;
+    }
+
+    /**
+     * Returns a copy of the array with the element appended. Used for the array views of registries that are
+     * built once and iterated often.
+     */
+    public static <T> @NotNull T[] append(@NotNull T[] array, @NotNull T element) {
+        final T[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = element;
+        return result;
+    }
 }
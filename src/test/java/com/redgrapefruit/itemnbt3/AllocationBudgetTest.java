@@ -0,0 +1,300 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.redgrapefruit.itemnbt3.linking.DataLink;
+import com.redgrapefruit.itemnbt3.linking.Field;
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.util.NbtCompoundMixinAccess;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Keeps the allocations of the hot paths within fixed budgets per operation, so that boxing or copies that creep
+ * back into them fail the build.
+ * <br><br>
+ * Every operation is warmed up first, so that the budgets apply to compiled code. Writes are measured against the
+ * same values written into the {@link NbtCompound} directly, since the NBT elements themselves are allocated by
+ * Minecraft. Values are outside the caches of the boxed types, so that any boxing shows up.
+ */
+public class AllocationBudgetTest {
+    private static final int WARMUP = 20_000;
+    private static final int OPERATIONS = 50_000;
+
+    // Generous enough for a serialization event that escape analysis didn't remove, far below one boxed value per field
+    private static final long READ_BUDGET = 64;
+    private static final long WRITE_BUDGET = 64;
+    private static final long LINK_BUDGET = 64;
+    // A use decodes into a fresh compound, which costs its maps and an entry and a cell per field
+    private static final long USE_BUDGET_BASE = 256;
+    private static final long USE_BUDGET_PER_FIELD = 64;
+
+    private static final int FIELDS = 12;
+
+    private static com.sun.management.ThreadMXBean threads;
+    // Keeps the results of baseline operations alive, so that they aren't optimized away
+    private static Object sink;
+
+    private static final Specification FLAT = Specification.builder("AllocationFlat")
+            .addInt("a").addInt("b").addInt("c").addInt("d")
+            .addLong("e").addLong("f").addDouble("g").addDouble("h")
+            .addFloat("i").addShort("j").addByte("k").addBool("l")
+            .build();
+
+    private static final Specification NESTED = Specification.builder("AllocationNested")
+            .addInt("level")
+            .add("stats", FLAT)
+            .build();
+
+    private static final Specification ARRAYS = Specification.builder("AllocationArrays")
+            .addIntArray("ints").addLongArray("longs").addByteArray("bytes")
+            .build();
+
+    private static final Specification STRUCT = Specification.builder("AllocationStruct")
+            .addInt("a").addLong("b").addDouble("c").addBool("d")
+            .useStructLayout(1)
+            .build();
+
+    // Enough fields that boxing each of them exceeds the budgets
+    private static final Specification PACKED = Specification.builder("AllocationPacked")
+            .addPacked("a", int.class, 10).addPacked("b", int.class, 10).addPacked("c", int.class, 10)
+            .addPacked("d", int.class, 10).addPacked("e", int.class, 10).addPacked("f", int.class, 10)
+            .addPacked("g", short.class, 16).addPackedBool("h")
+            .build();
+
+    public static final class Stats {
+        @Field public int a = 100_000;
+        @Field public int b = 200_000;
+        @Field public long c = 3_000_000_000L;
+        @Field public double d = 4.5;
+        @Field public float e = 5.5f;
+        @Field public boolean f = true;
+
+        public Stats() {
+        }
+    }
+
+    @BeforeAll
+    public static void setup() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Allocation measurement is not supported by this JVM");
+
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation measurement is not supported by this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    public void readFlat() {
+        final NbtCompound nbt = new NbtCompound();
+        FLAT.writeNbt(nbt, flatValues(new DataCompound()));
+        final DataCompound compound = new DataCompound();
+
+        assertBudget("Specification.readNbt (flat)", READ_BUDGET, () -> FLAT.readNbt(nbt, compound));
+    }
+
+    @Test
+    public void readNested() {
+        final NbtCompound nbt = new NbtCompound();
+        final DataCompound values = new DataCompound();
+        values.putInt("level", 123_456);
+        flatValues(values.getOrCreateCompound("stats"));
+        NESTED.writeNbt(nbt, values);
+        final DataCompound compound = new DataCompound();
+
+        assertBudget("Specification.readNbt (nested)", READ_BUDGET, () -> NESTED.readNbt(nbt, compound));
+    }
+
+    @Test
+    public void readArrays() {
+        final NbtCompound nbt = new NbtCompound();
+        final DataCompound values = new DataCompound();
+        values.put("ints", new int[] {1, 2, 3});
+        values.put("longs", new long[] {4L, 5L});
+        values.put("bytes", new byte[] {6, 7});
+        ARRAYS.writeNbt(nbt, values);
+        final DataCompound compound = new DataCompound();
+
+        // Arrays are copied out of the NBT, so that modifying them never reaches the stored data
+        final long baseline = measure(() -> {
+            sink = nbt.getIntArray("ints").clone();
+            sink = nbt.getLongArray("longs").clone();
+            sink = nbt.getByteArray("bytes").clone();
+        });
+        assertBudget("Specification.readNbt (arrays)", baseline + READ_BUDGET, () -> ARRAYS.readNbt(nbt, compound));
+    }
+
+    @Test
+    public void readStruct() {
+        final NbtCompound nbt = new NbtCompound();
+        final DataCompound values = new DataCompound();
+        values.putInt("a", 100_000);
+        values.putLong("b", 3_000_000_000L);
+        values.putDouble("c", 4.5);
+        values.putBool("d", true);
+        STRUCT.writeNbt(nbt, values);
+        final DataCompound compound = new DataCompound();
+
+        assertBudget("Specification.readNbt (struct)", READ_BUDGET, () -> STRUCT.readNbt(nbt, compound));
+    }
+
+    @Test
+    public void readPacked() {
+        final NbtCompound nbt = new NbtCompound();
+        PACKED.writeNbt(nbt, packedValues(new DataCompound()));
+        final DataCompound compound = new DataCompound();
+
+        assertBudget("Specification.readNbt (packed)", READ_BUDGET, () -> PACKED.readNbt(nbt, compound));
+    }
+
+    @Test
+    public void writePacked() {
+        final DataCompound compound = packedValues(new DataCompound());
+        final NbtCompound nbt = new NbtCompound();
+        final NbtCompound direct = new NbtCompound();
+
+        // Both words are a single NbtLong each
+        final long baseline = measure(() -> {
+            direct.putLong("^packed0", 123_456_789L);
+            direct.putLong("^packed1", 987_654_321L);
+        });
+        assertBudget("Specification.writeNbt (packed)", baseline + WRITE_BUDGET, () -> PACKED.writeNbt(nbt, compound));
+    }
+
+    @Test
+    public void writeFlat() {
+        final DataCompound compound = flatValues(new DataCompound());
+        final NbtCompound nbt = new NbtCompound();
+        final NbtCompound direct = new NbtCompound();
+
+        final long baseline = measure(() -> writeDirectly(direct));
+        assertBudget("Specification.writeNbt (flat)", baseline + WRITE_BUDGET, () -> FLAT.writeNbt(nbt, compound));
+    }
+
+    @Test
+    public void writeNested() {
+        final DataCompound compound = new DataCompound();
+        compound.putInt("level", 123_456);
+        flatValues(compound.getOrCreateCompound("stats"));
+        final NbtCompound nbt = new NbtCompound();
+        final NbtCompound direct = new NbtCompound();
+        direct.put("stats", new NbtCompound());
+
+        final long baseline = measure(() -> {
+            direct.putInt("level", 123_456);
+            writeDirectly(direct.getCompound("stats"));
+        });
+        assertBudget("Specification.writeNbt (nested)", baseline + WRITE_BUDGET, () -> NESTED.writeNbt(nbt, compound));
+    }
+
+    @Test
+    public void forwardLink() {
+        final DataLink link = DataLink.create(Stats.class);
+        final DataCompound compound = new DataCompound();
+        link.backwardLink(compound, new Stats());
+        final Stats instance = new Stats();
+
+        assertBudget("DataLink.forwardLink", LINK_BUDGET, () -> link.forwardLink(compound, instance));
+    }
+
+    @Test
+    public void backwardLink() {
+        final DataLink link = DataLink.create(Stats.class);
+        final DataCompound compound = new DataCompound();
+        final Stats instance = new Stats();
+        link.backwardLink(compound, instance);
+
+        assertBudget("DataLink.backwardLink", LINK_BUDGET, () -> link.backwardLink(compound, instance));
+    }
+
+    @Test
+    public void use() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, FLAT, compound -> flatValues(compound));
+        final NbtCompound direct = new NbtCompound();
+
+        // The write-back clears the stack's compound, so its entries are allocated again
+        final long baseline = measure(() -> {
+            ((NbtCompoundMixinAccess) direct).clearNbt();
+            writeDirectly(direct);
+        });
+        assertBudget("DataClient.use (flat)", baseline + USE_BUDGET_BASE + USE_BUDGET_PER_FIELD * FIELDS,
+                () -> DataClient.use(stack, FLAT, compound -> compound.putInt("a", compound.getInt("a") + 1)));
+    }
+
+    private static @NotNull DataCompound packedValues(@NotNull DataCompound compound) {
+        compound.putInt("a", 1_000);
+        compound.putInt("b", 1_001);
+        compound.putInt("c", 1_002);
+        compound.putInt("d", 1_003);
+        compound.putInt("e", 1_004);
+        compound.putInt("f", 1_005);
+        compound.putShort("g", (short) 30_000);
+        compound.putBool("h", true);
+        return compound;
+    }
+
+    private static @NotNull DataCompound flatValues(@NotNull DataCompound compound) {
+        compound.putInt("a", 100_000);
+        compound.putInt("b", 200_000);
+        compound.putInt("c", 300_000);
+        compound.putInt("d", 400_000);
+        compound.putLong("e", 5_000_000_000L);
+        compound.putLong("f", 6_000_000_000L);
+        compound.putDouble("g", 7.25);
+        compound.putDouble("h", 8.25);
+        compound.putFloat("i", 9.5f);
+        compound.putShort("j", (short) 10_000);
+        compound.putByte("k", (byte) 11);
+        compound.putBool("l", true);
+        return compound;
+    }
+
+    private static void writeDirectly(@NotNull NbtCompound nbt) {
+        nbt.putInt("a", 100_000);
+        nbt.putInt("b", 200_000);
+        nbt.putInt("c", 300_000);
+        nbt.putInt("d", 400_000);
+        nbt.putLong("e", 5_000_000_000L);
+        nbt.putLong("f", 6_000_000_000L);
+        nbt.putDouble("g", 7.25);
+        nbt.putDouble("h", 8.25);
+        nbt.putFloat("i", 9.5f);
+        nbt.putShort("j", (short) 10_000);
+        nbt.putByte("k", (byte) 11);
+        nbt.putBoolean("l", true);
+    }
+
+    private static void assertBudget(@NotNull String name, long budget, @NotNull Runnable operation) {
+        final long allocated = measure(operation);
+
+        assertTrue(allocated <= budget, name + " allocates " + allocated + " bytes per operation, the budget is " + budget);
+    }
+
+    /**
+     * @return The bytes allocated by the current thread per operation, after warming up.
+     */
+    private static long measure(@NotNull Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) operation.run();
+
+        final long thread = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(thread);
+
+        for (int i = 0; i < OPERATIONS; i++) operation.run();
+
+        return (threads.getThreadAllocatedBytes(thread) - before) / OPERATIONS;
+    }
+}
@@ -0,0 +1,144 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.specification.SpecificationRegistry;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Asynchronous uses decode and transform on a worker, and only write back on the main thread if nothing changed meanwhile.
+ */
+public class AsyncUseTest {
+    private static final Specification COUNTER = Specification.builder("AsyncCounter")
+            .addInt("count").addIntArray("slots")
+            .build();
+
+    private static ExecutorService mainThread;
+    private static ExecutorService workers;
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+
+        SpecificationRegistry.register(COUNTER);
+        FlyweightPool.enable(COUNTER);
+
+        mainThread = Executors.newSingleThreadExecutor();
+        workers = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterAll
+    public static void shutdown() {
+        mainThread.shutdown();
+        workers.shutdown();
+    }
+
+    @Test
+    public void resultIsWrittenBack() throws Exception {
+        final ItemStack stack = onMain(() -> stack(1));
+
+        final DataCompound result = onMain(() -> DataClient.useAsync(stack, COUNTER, compound -> compound.putInt("count", compound.getInt("count") + 1), mainThread, workers, 1)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, result.getInt("count"));
+        assertEquals(2, onMain(() -> read(stack).getInt("count")));
+    }
+
+    @Test
+    public void sharedSourceStaysIntact() throws Exception {
+        final ItemStack stack = onMain(() -> stack(2));
+        final ItemStack other = onMain(() -> stack(2));
+        assertTrue(FlyweightPool.isShared(stack, COUNTER));
+
+        // The worker decodes the shared compound directly, modifying its arrays must not reach the other stack
+        onMain(() -> DataClient.useAsync(stack, COUNTER, compound -> compound.<int[]>get("slots")[0] = 99, mainThread, workers, 1)).get(5, TimeUnit.SECONDS);
+
+        assertArrayEquals(new int[] {99, 2}, onMain(() -> read(stack).<int[]>get("slots")));
+        assertArrayEquals(new int[] {2, 2}, onMain(() -> read(other).<int[]>get("slots")));
+    }
+
+    @Test
+    public void modificationsInTheMeantimeAreRetried() throws Exception {
+        final ItemStack stack = onMain(() -> stack(3));
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final CompletableFuture<DataCompound> future = onMain(() -> DataClient.useAsync(stack, COUNTER, compound -> {
+            // The first attempt is overtaken by a write on the main thread
+            if (attempts.getAndIncrement() == 0) {
+                runOnMain(() -> DataClient.use(stack, COUNTER, it -> it.putInt("count", 10)));
+            }
+
+            compound.putInt("count", compound.getInt("count") + 1);
+        }, mainThread, workers, 2));
+
+        assertEquals(11, future.get(5, TimeUnit.SECONDS).getInt("count"));
+        assertEquals(2, attempts.get());
+        assertEquals(11, onMain(() -> read(stack).getInt("count")));
+    }
+
+    @Test
+    public void failsAfterTheLastAttempt() throws Exception {
+        final ItemStack stack = onMain(() -> stack(4));
+
+        final CompletableFuture<DataCompound> future = onMain(() -> DataClient.useAsync(stack, COUNTER, compound -> {
+            runOnMain(() -> DataClient.use(stack, COUNTER, it -> it.putInt("count", it.getInt("count") + 1)));
+        }, mainThread, workers, 2));
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ConcurrentModificationException.class, exception.getCause());
+        assertEquals(6, onMain(() -> read(stack).getInt("count")));
+    }
+
+    private static <T> T onMain(@NotNull Callable<T> task) throws Exception {
+        return mainThread.submit(task).get(5, TimeUnit.SECONDS);
+    }
+
+    // Called from the transform on a worker, which can't throw checked exceptions
+    private static void runOnMain(@NotNull Runnable task) {
+        try {
+            mainThread.submit(task).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static @NotNull ItemStack stack(int value) {
+        final ItemStack stack = new ItemStack(Items.STICK);
+
+        DataClient.use(stack, COUNTER, compound -> {
+            compound.putInt("count", value);
+            compound.put("slots", new int[] {value, value});
+        });
+
+        return stack;
+    }
+
+    private static @NotNull DataCompound read(@NotNull ItemStack stack) {
+        final DataCompound[] result = new DataCompound[1];
+        DataClient.use(stack, COUNTER, compound -> result[0] = compound);
+
+        return result[0];
+    }
+}
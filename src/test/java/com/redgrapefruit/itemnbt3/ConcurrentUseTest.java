@@ -0,0 +1,179 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.redgrapefruit.itemnbt3.linking.DataLink;
+import com.redgrapefruit.itemnbt3.linking.Field;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Increments from several threads at once, none of which may be lost, also when an attempt has to be repeated.
+ */
+public class ConcurrentUseTest {
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 2_000;
+
+    private static final Specification OPTIMISTIC = Specification.builder("ConcurrentOptimistic").addInt("count").build();
+    private static final Specification LOCKING = Specification.builder("ConcurrentLocking").addInt("count").build();
+    private static final Specification ARRAY = Specification.builder("ConcurrentArray").addIntArray("counts").build();
+    private static final Specification LINKED = Specification.builder("ConcurrentLinked").addInt("count").build();
+    private static final Specification STRUCT = Specification.builder("ConcurrentStruct").addInt("count").useStructLayout(1).build();
+
+    public record Counter(int count) {}
+
+    public static final class MutableCounter {
+        @Field public int count;
+
+        public MutableCounter() {}
+    }
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+
+        ConcurrentUse.enable(OPTIMISTIC);
+        ConcurrentUse.enableLocking(LOCKING);
+        ConcurrentUse.enable(ARRAY);
+        ConcurrentUse.enable(LINKED);
+        ConcurrentUse.enable(STRUCT);
+    }
+
+    @Test
+    public void optimistic() throws Exception {
+        assertEquals(THREADS * INCREMENTS, incrementConcurrently(OPTIMISTIC));
+    }
+
+    @Test
+    public void locking() throws Exception {
+        assertEquals(THREADS * INCREMENTS, incrementConcurrently(LOCKING));
+    }
+
+    @Test
+    public void arraysModifiedInPlace() throws Exception {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, ARRAY, compound -> compound.put("counts", new int[1]));
+
+        // An attempt that fails after modifying the decoded array must not leave the increment in the stored data
+        incrementConcurrently(stack, () -> DataClient.use(stack, ARRAY, compound -> compound.<int[]>get("counts")[0]++));
+
+        final int[] counts = new int[1];
+        DataClient.use(stack, ARRAY, compound -> counts[0] = compound.<int[]>get("counts")[0]);
+
+        assertEquals(THREADS * INCREMENTS, counts[0]);
+    }
+
+    @Test
+    public void retriedArrayModification() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, ARRAY, compound -> compound.put("counts", new int[2]));
+
+        final long conflicts = ConcurrentUse.getConflictCount();
+        final AtomicBoolean interfered = new AtomicBoolean();
+
+        DataClient.use(stack, ARRAY, compound -> {
+            compound.<int[]>get("counts")[0]++;
+
+            // A commit from another thread during the first attempt makes it fail after the array has been modified
+            if (interfered.compareAndSet(false, true)) {
+                CompletableFuture.runAsync(() -> DataClient.use(stack, ARRAY, other -> other.<int[]>get("counts")[1]++)).join();
+            }
+        });
+
+        final int[][] counts = new int[1][];
+        DataClient.use(stack, ARRAY, compound -> counts[0] = compound.<int[]>get("counts"));
+
+        assertTrue(ConcurrentUse.getConflictCount() > conflicts);
+        assertArrayEquals(new int[] {1, 1}, counts[0]);
+    }
+
+    @Test
+    public void immutableLinked() throws Exception {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        final DataLink link = DataLink.create(Counter.class);
+
+        incrementConcurrently(stack, () -> DataClient.<Counter>use(stack, LINKED, link, counter -> new Counter(counter.count() + 1)));
+
+        assertEquals(THREADS * INCREMENTS, DataClient.<Counter>use(stack, LINKED, link, counter -> counter).count());
+    }
+
+    @Test
+    public void mutableLinked() throws Exception {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        final DataLink link = DataLink.create(MutableCounter.class);
+
+        // Every thread links up its own instance, like callers usually do
+        incrementConcurrently(stack, () -> DataClient.use(stack, LINKED, link, new MutableCounter(), counter -> counter.count++));
+
+        final MutableCounter counter = new MutableCounter();
+        DataClient.use(stack, LINKED, link, counter, it -> {});
+
+        assertEquals(THREADS * INCREMENTS, counter.count);
+    }
+
+    @Test
+    public void deferredIsNotDeferred() throws Exception {
+        final ItemStack stack = new ItemStack(Items.STICK);
+
+        incrementConcurrently(stack, () -> DataClient.useDeferred(stack, OPTIMISTIC, compound -> compound.putInt("count", compound.getInt("count") + 1)));
+
+        final int[] count = new int[1];
+        DataClient.use(stack, OPTIMISTIC, compound -> count[0] = compound.getInt("count"));
+
+        assertEquals(THREADS * INCREMENTS, count[0]);
+    }
+
+    @Test
+    public void structViewsAreRejected() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+
+        assertThrows(IllegalArgumentException.class, () -> DataClient.useStruct(stack, STRUCT, view -> {}));
+    }
+
+    private static int incrementConcurrently(Specification specification) throws Exception {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        incrementConcurrently(stack, () -> DataClient.use(stack, specification, compound -> compound.putInt("count", compound.getInt("count") + 1)));
+
+        final int[] count = new int[1];
+        DataClient.use(stack, specification, compound -> count[0] = compound.getInt("count"));
+
+        return count[0];
+    }
+
+    private static void incrementConcurrently(ItemStack stack, Runnable increment) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int thread = 0; thread < THREADS; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < INCREMENTS; i++) {
+                        increment.run();
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
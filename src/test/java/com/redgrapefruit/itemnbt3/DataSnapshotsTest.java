@@ -0,0 +1,93 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.redgrapefruit.itemnbt3.specification.DataSnapshot;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.specification.SpecificationRegistry;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * {@link DataClient} publishes a snapshot after every write-back of an enabled {@link Specification}, which other
+ * threads see without touching the stack's NBT.
+ */
+public class DataSnapshotsTest {
+    private static final Specification PUBLISHED = Specification.builder("SnapshotPublished")
+            .addInt("charge").addIntArray("slots")
+            .build();
+    private static final Specification UNPUBLISHED = Specification.builder("SnapshotUnpublished")
+            .addInt("charge")
+            .build();
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+
+        SpecificationRegistry.register(PUBLISHED);
+        SpecificationRegistry.register(UNPUBLISHED);
+        DataSnapshots.enable(PUBLISHED);
+    }
+
+    @Test
+    public void writeBacksArePublished() throws Exception {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        assertNull(DataClient.snapshot(stack, PUBLISHED));
+
+        DataClient.use(stack, PUBLISHED, compound -> {
+            compound.putInt("charge", 3);
+            compound.put("slots", new int[] {1, 2});
+        });
+
+        final DataSnapshot snapshot = CompletableFuture.supplyAsync(() -> DataClient.snapshot(stack, PUBLISHED)).get();
+        assertEquals(3, snapshot.getInt("charge"));
+        assertArrayEquals(new int[] {1, 2}, snapshot.getIntArray("slots"));
+    }
+
+    @Test
+    public void publishedSnapshotsStayUnchanged() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, PUBLISHED, compound -> compound.put("slots", new int[] {1, 2}));
+        final DataSnapshot first = DataClient.snapshot(stack, PUBLISHED);
+
+        DataClient.use(stack, PUBLISHED, compound -> {
+            compound.<int[]>get("slots")[0] = 9;
+            compound.putInt("charge", 4);
+        });
+        final DataSnapshot second = DataClient.snapshot(stack, PUBLISHED);
+
+        assertArrayEquals(new int[] {1, 2}, first.getIntArray("slots"));
+        assertEquals(0, first.getInt("charge"));
+        assertArrayEquals(new int[] {9, 2}, second.getIntArray("slots"));
+        assertEquals(4, second.getInt("charge"));
+    }
+
+    @Test
+    public void readsDontPublishAgain() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, PUBLISHED, compound -> compound.putInt("charge", 5));
+        final DataSnapshot first = DataClient.snapshot(stack, PUBLISHED);
+
+        DataClient.use(stack, PUBLISHED, compound -> compound.getInt("charge"));
+
+        assertSame(first, DataClient.snapshot(stack, PUBLISHED));
+    }
+
+    @Test
+    public void disabledSpecificationsArentPublished() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, UNPUBLISHED, compound -> compound.putInt("charge", 5));
+
+        assertNull(DataClient.snapshot(stack, UNPUBLISHED));
+    }
+}
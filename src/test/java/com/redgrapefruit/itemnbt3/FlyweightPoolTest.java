@@ -0,0 +1,155 @@
+package com.redgrapefruit.itemnbt3;
+
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.specification.SpecificationRegistry;
+import com.redgrapefruit.itemnbt3.tools.FootprintReport;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stacks sharing their data through the {@link FlyweightPool} must stay isolated from each other, and the sharing must
+ * survive the reads that normal play does.
+ */
+public class FlyweightPoolTest {
+    private static final int STACKS = 10_000;
+    private static final int VARIANTS = 8;
+
+    private static final Specification ISOLATED = Specification.builder("FlyweightIsolated")
+            .addInt("charge").addIntArray("slots")
+            .build();
+    private static final Specification PLAYED = Specification.builder("FlyweightPlayed")
+            .addInt("charge").addIntArray("slots").addString("owner")
+            .build();
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+
+        SpecificationRegistry.register(ISOLATED);
+        SpecificationRegistry.register(PLAYED);
+        FlyweightPool.enable(ISOLATED);
+        FlyweightPool.enable(PLAYED);
+    }
+
+    @Test
+    public void equalDataIsShared() {
+        final ItemStack first = stack(ISOLATED, 1);
+        final ItemStack second = stack(ISOLATED, 1);
+
+        assertTrue(FlyweightPool.isShared(first, ISOLATED));
+        assertSame(first.getNbt().get(ISOLATED.getId()), second.getNbt().get(ISOLATED.getId()));
+    }
+
+    @Test
+    public void arrayEditsStayInTheirStack() {
+        final ItemStack first = stack(ISOLATED, 2);
+        final ItemStack second = stack(ISOLATED, 2);
+
+        DataClient.use(first, ISOLATED, compound -> compound.<int[]>get("slots")[0] = 99);
+
+        assertArrayEquals(new int[] {99, 2, 2}, read(first).<int[]>get("slots"));
+        assertArrayEquals(new int[] {2, 2, 2}, read(second).<int[]>get("slots"));
+    }
+
+    @Test
+    public void requestedDataIsPrivate() {
+        final ItemStack first = stack(ISOLATED, 3);
+        final ItemStack second = stack(ISOLATED, 3);
+
+        final NbtCompound subNbt = first.getSubNbt(ISOLATED.getId());
+        assertFalse(FlyweightPool.isShared(first, ISOLATED));
+
+        subNbt.putInt("charge", 42);
+        subNbt.getIntArray("slots")[1] = 42;
+
+        assertEquals(3, read(second).getInt("charge"));
+        assertArrayEquals(new int[] {3, 3, 3}, read(second).<int[]>get("slots"));
+    }
+
+    @Test
+    public void readsKeepTheDataShared() {
+        final ItemStack first = stack(ISOLATED, 4);
+        final ItemStack second = stack(ISOLATED, 4);
+
+        // Like vanilla comparing stacks, the root compound is only read
+        assertEquals(first.getNbt(), second.getNbt());
+        DataClient.use(first, ISOLATED, compound -> compound.getInt("charge"));
+
+        assertTrue(FlyweightPool.isShared(first, ISOLATED));
+        assertTrue(FlyweightPool.isShared(second, ISOLATED));
+    }
+
+    @Test
+    public void modifyingThroughTheRootIsRejected() {
+        final ItemStack first = stack(ISOLATED, 5);
+        stack(ISOLATED, 5);
+
+        assertThrows(UnsupportedOperationException.class, () -> first.getNbt().getCompound(ISOLATED.getId()).putInt("charge", 6));
+    }
+
+    @Test
+    public void sharingSurvivesPlay() {
+        final List<ItemStack> stacks = new ArrayList<>(STACKS);
+        for (int i = 0; i < STACKS; i++) stacks.add(stack(PLAYED, i % VARIANTS));
+
+        // A few rounds of what happens to stacks in normal play: vanilla reads every stack, and some are used
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < STACKS; i++) {
+                final ItemStack stack = stacks.get(i);
+                stack.getNbt();
+
+                if ((i + round) % 100 == 0) {
+                    DataClient.use(stack, PLAYED, compound -> compound.putInt("charge", compound.getInt("charge") + VARIANTS));
+                }
+            }
+        }
+
+        final FootprintReport report = new FootprintReport(stacks.iterator());
+        report.run();
+        final FootprintReport.Entry entry = report.getEntries().stream().filter(it -> it.getId().equals(PLAYED.getId())).findFirst().orElseThrow();
+
+        System.out.printf("%d stacks: %d compounds, %d B retained of %d B without sharing%n", STACKS,
+                entry.getInstanceCount(), entry.getRetained().getTotal(), entry.getTotal().getTotal());
+
+        // Used stacks moved to other contents, which are shared again, so only a handful of instances remain
+        assertTrue(entry.getInstanceCount() <= VARIANTS * 6);
+        assertTrue(entry.getRetained().getTotal() * 100 < entry.getTotal().getTotal());
+    }
+
+    private static @NotNull ItemStack stack(@NotNull Specification specification, int value) {
+        final ItemStack stack = new ItemStack(Items.STICK);
+
+        DataClient.use(stack, specification, compound -> {
+            compound.putInt("charge", value);
+            compound.put("slots", new int[] {value, value, value});
+            if (specification == PLAYED) compound.put("owner", "player" + value);
+        });
+
+        return stack;
+    }
+
+    private static @NotNull DataCompound read(@NotNull ItemStack stack) {
+        final DataCompound[] result = new DataCompound[1];
+        DataClient.use(stack, ISOLATED, compound -> result[0] = compound);
+
+        return result[0];
+    }
+}
@@ -0,0 +1,153 @@
+package com.redgrapefruit.itemnbt3.io;
+
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The {@link SelectiveNbtReader} reads the same data as a full decode followed by {@link Specification#readNbt}, skips
+ * everything else, and hands out compounds that don't share state.
+ */
+public class SelectiveNbtReaderTest {
+    private static final Specification OWNER = Specification.builder("SelectiveOwner")
+            .addString("name").addLong("since")
+            .build();
+    private static final Specification BACKPACK = Specification.builder("SelectiveBackpack")
+            .addInt("charge").addIntArray("slots").add("owner", OWNER)
+            .build();
+
+    @Test
+    public void roundTrip() throws IOException {
+        final NbtCompound root = backpack(7);
+        // Unknown tags of every shape around the wanted ones, which must be skipped
+        root.putByteArray("junk", new byte[300]);
+        root.put("list", items(3));
+        root.putLong("time", 99L);
+        root.getCompound("owner").putDouble("unknown", 1.5);
+
+        final DataCompound read = new SelectiveNbtReader(BACKPACK).read(input(root));
+
+        assertEquals(expected(7).getInt("charge"), read.getInt("charge"));
+        assertArrayEquals(expected(7).<int[]>get("slots"), read.get("slots"));
+        assertEquals("player7", read.getCompound("owner").getString("name"));
+        assertEquals(7L, read.getCompound("owner").getLong("since"));
+        assertFalse(read.contains("time"));
+    }
+
+    @Test
+    public void mistypedNestedTagsAreSkipped() throws IOException {
+        final NbtCompound root = backpack(1);
+        root.putInt("owner", 5);
+
+        final DataCompound read = new SelectiveNbtReader(BACKPACK).read(input(root));
+        final DataCompound full = new DataCompound();
+        BACKPACK.readNbt(root, full);
+
+        // Same fallbacks as reading the fully decoded compound
+        assertEquals(1, read.getInt("charge"));
+        assertEquals(full.getCompound("owner").getString("name"), read.getCompound("owner").getString("name"));
+        assertEquals(full.getCompound("owner").getLong("since"), read.getCompound("owner").getLong("since"));
+    }
+
+    @Test
+    public void readsAreIsolated() throws IOException {
+        final byte[] bytes = bytes(backpack(2));
+        final SelectiveNbtReader reader = new SelectiveNbtReader(BACKPACK);
+
+        final DataCompound first = reader.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        final DataCompound second = reader.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        first.<int[]>get("slots")[0] = 42;
+        first.getCompound("owner").put("name", "thief");
+
+        assertArrayEquals(new int[] {2, 2, 2}, second.get("slots"));
+        assertEquals("player2", second.getCompound("owner").getString("name"));
+    }
+
+    @Test
+    public void scanFindsEveryCompoundInOrder() throws IOException {
+        final NbtCompound root = new NbtCompound();
+        root.put("Inventory", items(4));
+
+        final List<DataCompound> found = new ArrayList<>();
+        final int count = new SelectiveNbtReader(BACKPACK).scan(input(root), found::add);
+
+        assertEquals(4, count);
+        for (int i = 0; i < 4; i++) assertEquals(i, found.get(i).getInt("charge"));
+    }
+
+    @Test
+    public void truncatedInputFails() throws IOException {
+        final byte[] bytes = bytes(backpack(3));
+        final byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+
+        assertThrows(IOException.class, () -> new SelectiveNbtReader(BACKPACK).read(new DataInputStream(new ByteArrayInputStream(truncated))));
+    }
+
+    private static @NotNull DataCompound expected(int value) {
+        final DataCompound compound = new DataCompound();
+        compound.putInt("charge", value);
+        compound.put("slots", new int[] {value, value, value});
+
+        final DataCompound owner = compound.getOrCreateCompound("owner");
+        owner.put("name", "player" + value);
+        owner.putLong("since", value);
+
+        return compound;
+    }
+
+    private static @NotNull NbtCompound backpack(int value) {
+        final NbtCompound nbt = new NbtCompound();
+        BACKPACK.writeNbt(nbt, expected(value));
+
+        return nbt;
+    }
+
+    /**
+     * @return Item stacks like in a player's inventory, with the {@link #BACKPACK} compounds below their tags.
+     */
+    private static @NotNull NbtList items(int count) {
+        final NbtList items = new NbtList();
+
+        for (int i = 0; i < count; i++) {
+            final NbtCompound tag = new NbtCompound();
+            tag.put(BACKPACK.getId(), backpack(i));
+
+            final NbtCompound item = new NbtCompound();
+            item.putString("id", "minecraft:stick");
+            item.putByte("Count", (byte) 1);
+            item.put("tag", tag);
+            items.add(item);
+        }
+
+        return items;
+    }
+
+    private static byte[] bytes(@NotNull NbtCompound root) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtIo.write(root, new DataOutputStream(bytes));
+
+        return bytes.toByteArray();
+    }
+
+    private static @NotNull DataInputStream input(@NotNull NbtCompound root) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(bytes(root)));
+    }
+}
@@ -0,0 +1,56 @@
+package com.redgrapefruit.itemnbt3.linking;
+
+import com.redgrapefruit.itemnbt3.util.Utilities;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The variants of sealed types are ordered by their {@link VariantOrdinal}s, never by the order of the permitted
+ * subclasses.
+ */
+public class VariantOrdinalTest {
+    sealed interface Shape permits Circle, Polygon {}
+
+    @VariantOrdinal(2)
+    record Circle(int radius) implements Shape {}
+
+    sealed interface Polygon extends Shape permits Square, Triangle {}
+
+    @VariantOrdinal(0)
+    record Square(int side) implements Polygon {}
+
+    @VariantOrdinal(1)
+    record Triangle(int base) implements Polygon {}
+
+    sealed interface Unordered permits First, Second {}
+
+    @VariantOrdinal(0)
+    record First() implements Unordered {}
+
+    record Second() implements Unordered {}
+
+    sealed interface Duplicated permits Left, Right {}
+
+    @VariantOrdinal(1)
+    record Left() implements Duplicated {}
+
+    @VariantOrdinal(1)
+    record Right() implements Duplicated {}
+
+    @Test
+    public void ordinalsDecideTheOrder() {
+        assertArrayEquals(new Class<?>[] {Square.class, Triangle.class, Circle.class}, Utilities.getVariants(Shape.class));
+    }
+
+    @Test
+    public void missingOrdinalsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Utilities.getVariants(Unordered.class));
+    }
+
+    @Test
+    public void duplicatedOrdinalsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Utilities.getVariants(Duplicated.class));
+    }
+}
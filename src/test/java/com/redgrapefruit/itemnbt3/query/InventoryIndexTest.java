@@ -0,0 +1,83 @@
+package com.redgrapefruit.itemnbt3.query;
+
+import com.redgrapefruit.itemnbt3.DataClient;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import com.redgrapefruit.itemnbt3.specification.SpecificationRegistry;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.inventory.SimpleInventory;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * An {@link InventoryIndex} only decodes the slots whose stacks have been replaced or written to since the last refresh.
+ */
+public class InventoryIndexTest {
+    private static final Specification CHARGED = Specification.builder("IndexCharged")
+            .addInt("charge")
+            .build();
+
+    private SimpleInventory inventory;
+    private InventoryIndex index;
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+
+        SpecificationRegistry.register(CHARGED);
+    }
+
+    @BeforeEach
+    public void fill() {
+        inventory = new SimpleInventory(4);
+
+        for (int slot = 0; slot < inventory.size(); slot++) {
+            final ItemStack stack = new ItemStack(Items.STICK);
+            final int charge = slot * 10;
+            DataClient.use(stack, CHARGED, compound -> compound.putInt("charge", charge));
+            inventory.setStack(slot, stack);
+        }
+
+        index = new InventoryIndex(inventory, CHARGED, "charge");
+        assertEquals(4, index.refresh());
+    }
+
+    @Test
+    public void queriesSeeTheFields() {
+        assertArrayEquals(new int[] {1, 2}, index.findRange("charge", 5L, 25L));
+        assertEquals(60L, index.sumLong("charge"));
+    }
+
+    @Test
+    public void readingTheNbtDoesNotDecode() {
+        for (int slot = 0; slot < inventory.size(); slot++) {
+            inventory.getStack(slot).getNbt();
+        }
+
+        assertEquals(0, index.refresh());
+    }
+
+    @Test
+    public void writesAreDecoded() {
+        DataClient.use(inventory.getStack(2), CHARGED, compound -> compound.putInt("charge", 5));
+        inventory.getStack(3).getSubNbt(CHARGED.getId()).putInt("charge", 7);
+
+        assertEquals(2, index.refresh());
+        assertArrayEquals(new int[] {0, 2, 3}, index.findRange("charge", 0L, 9L));
+    }
+
+    @Test
+    public void replacedStacksAreDecoded() {
+        inventory.setStack(1, ItemStack.EMPTY);
+
+        assertEquals(1, index.refresh());
+        assertEquals(3, index.count("charge"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.redgrapefruit.itemnbt3.serializer;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips and corrupted input for the {@link ArrayCompression} encodings, and a benchmark of their size and speed
+ * on typical data. Sizes are checked, timings are only reported, since they depend on the machine.
+ */
+public class ArrayCompressionTest {
+    private static final int LENGTH = 4096;
+
+    private static final int WARMUP = 2_000;
+    private static final int OPERATIONS = 5_000;
+
+    @Test
+    public void roundTrips() {
+        for (int[] ints : new int[][] {new int[0], grid(), ids(), noise()}) {
+            assertArrayEquals(ints, ArrayCompression.decodeRunLengthInts(ArrayCompression.encodeRunLength(ints)));
+            assertArrayEquals(ints, ArrayCompression.decodeDeltaInts(ArrayCompression.encodeDelta(ints)));
+
+            final long[] longs = Arrays.stream(ints).asLongStream().map(value -> value * 3_000_000_000L).toArray();
+            assertArrayEquals(longs, ArrayCompression.decodeRunLengthLongs(ArrayCompression.encodeRunLength(longs)));
+            assertArrayEquals(longs, ArrayCompression.decodeDeltaLongs(ArrayCompression.encodeDelta(longs)));
+
+            final byte[] bytes = toBytes(ints);
+            assertArrayEquals(bytes, ArrayCompression.decodeRunLengthBytes(ArrayCompression.encodeRunLength(bytes)));
+            assertArrayEquals(bytes, ArrayCompression.decodeDeflate(ArrayCompression.encodeDeflate(bytes)));
+        }
+    }
+
+    @Test
+    public void rejectsLengthsBeyondTheInput() {
+        // Claims 2^21 elements in 4 bytes, which delta encoding needs at least a byte each for
+        final byte[] delta = {(byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+        assertThrows(IllegalArgumentException.class, () -> ArrayCompression.decodeDeltaInts(delta));
+        assertThrows(IllegalArgumentException.class, () -> ArrayCompression.decodeDeltaLongs(delta));
+
+        // Claims 2^28 elements, beyond the hard limit
+        final byte[] runs = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0x00, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01};
+        assertThrows(IllegalArgumentException.class, () -> ArrayCompression.decodeRunLengthInts(runs));
+        assertThrows(IllegalArgumentException.class, () -> ArrayCompression.decodeRunLengthLongs(runs));
+        assertThrows(IllegalArgumentException.class, () -> ArrayCompression.decodeRunLengthBytes(runs));
+        assertThrows(IllegalArgumentException.class, () -> ArrayCompression.decodeDeflate(runs));
+    }
+
+    @Test
+    public void rejectsTruncatedDeflateStreams() {
+        final byte[] encoded = ArrayCompression.encodeDeflate(toBytes(noise()));
+
+        assertThrows(IllegalArgumentException.class, () -> ArrayCompression.decodeDeflate(Arrays.copyOf(encoded, encoded.length / 2)));
+    }
+
+    @Test
+    public void sizeAndSpeed() {
+        report("grid", grid());
+        report("ids", ids());
+        report("noise", noise());
+
+        // The encodings are meant for these shapes of data
+        assertTrue(ArrayCompression.encodeRunLength(grid()).length * 20 < grid().length * 4);
+        assertTrue(ArrayCompression.encodeDelta(ids()).length * 3 < ids().length * 4);
+        assertTrue(ArrayCompression.encodeDeflate(toBytes(grid())).length * 20 < grid().length);
+    }
+
+    private static void report(@NotNull String name, @NotNull int[] ints) {
+        final byte[] bytes = toBytes(ints);
+
+        System.out.printf("%s, %d ints: raw %d B, run-length %d B (%.1f us encode, %.1f us round trip), delta %d B (%.1f us encode, %.1f us round trip)%n", name, ints.length, ints.length * 4,
+                ArrayCompression.encodeRunLength(ints).length, measure(() -> ArrayCompression.encodeRunLength(ints)),
+                measure(() -> ArrayCompression.decodeRunLengthInts(ArrayCompression.encodeRunLength(ints))),
+                ArrayCompression.encodeDelta(ints).length, measure(() -> ArrayCompression.encodeDelta(ints)),
+                measure(() -> ArrayCompression.decodeDeltaInts(ArrayCompression.encodeDelta(ints))));
+        System.out.printf("%s, %d bytes: run-length %d B (%.1f us encode), deflate %d B (%.1f us encode, %.1f us round trip)%n", name, bytes.length,
+                ArrayCompression.encodeRunLength(bytes).length, measure(() -> ArrayCompression.encodeRunLength(bytes)),
+                ArrayCompression.encodeDeflate(bytes).length, measure(() -> ArrayCompression.encodeDeflate(bytes)),
+                measure(() -> ArrayCompression.decodeDeflate(ArrayCompression.encodeDeflate(bytes))));
+    }
+
+    // Long runs of zeros with a few placed values, like a mostly empty grid
+    private static @NotNull int[] grid() {
+        final int[] array = new int[LENGTH];
+        for (int i = 0; i < LENGTH; i += 256) Arrays.fill(array, i, i + 16, 7);
+        return array;
+    }
+
+    // Slowly increasing values, like sorted identifiers or timestamps
+    private static @NotNull int[] ids() {
+        final int[] array = new int[LENGTH];
+        for (int i = 0; i < LENGTH; i++) array[i] = 100_000 + i * 3;
+        return array;
+    }
+
+    private static @NotNull int[] noise() {
+        return new Random(42).ints(LENGTH).toArray();
+    }
+
+    private static @NotNull byte[] toBytes(@NotNull int[] ints) {
+        final byte[] bytes = new byte[ints.length];
+        for (int i = 0; i < ints.length; i++) bytes[i] = (byte) ints[i];
+        return bytes;
+    }
+
+    /**
+     * @return The average microseconds per operation, after warming up.
+     */
+    private static double measure(@NotNull Supplier<?> operation) {
+        for (int i = 0; i < WARMUP; i++) operation.get();
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) operation.get();
+
+        return (System.nanoTime() - start) / 1000.0 / OPERATIONS;
+    }
+}
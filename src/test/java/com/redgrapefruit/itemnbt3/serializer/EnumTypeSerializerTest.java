@@ -0,0 +1,52 @@
+package com.redgrapefruit.itemnbt3.serializer;
+
+import net.minecraft.nbt.NbtCompound;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * One {@link EnumTypeSerializer} per enum, also when it is first requested by several threads at once.
+ */
+public class EnumTypeSerializerTest {
+    private static final int THREADS = 8;
+
+    enum Small { FIRST, SECOND, THIRD }
+
+    enum Unused { ONLY }
+
+    @Test
+    public void constantsRoundTrip() {
+        final EnumTypeSerializer<Small> serializer = EnumTypeSerializer.of(Small.class);
+        final NbtCompound nbt = new NbtCompound();
+        serializer.writeNbt("small", nbt, Small.THIRD);
+
+        assertEquals(Small.THIRD, serializer.readNbt("small", nbt));
+        assertEquals(Small.FIRST, serializer.byOrdinal(7));
+    }
+
+    @Test
+    public void concurrentLookupsShareOneSerializer() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            final List<Callable<EnumTypeSerializer<Unused>>> lookups = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) lookups.add(() -> EnumTypeSerializer.of(Unused.class));
+
+            final List<Future<EnumTypeSerializer<Unused>>> results = executor.invokeAll(lookups);
+            for (Future<EnumTypeSerializer<Unused>> result : results) {
+                assertSame(EnumTypeSerializer.of(Unused.class), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import com.redgrapefruit.itemnbt3.DataClient;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Whether a {@link DerivedProperty} value outlives its compound depends on the fields of each {@link Specification}
+ * declaring it, not on the property.
+ */
+public class DerivedPropertyTest {
+    private static final AtomicInteger computations = new AtomicInteger();
+
+    // Declared by both specifications below, which store the dependency as a number and as an array
+    private static final DerivedProperty<Boolean> HAS_LEVEL = DerivedProperty.of("hasLevel", compound -> {
+        computations.incrementAndGet();
+        return compound.contains("level");
+    }, "level");
+
+    private static final Specification NUMBER = Specification.builder("DerivedNumber")
+            .addInt("level")
+            .addDerived(HAS_LEVEL)
+            .build();
+
+    private static final Specification ARRAY = Specification.builder("DerivedArray")
+            .addIntArray("level")
+            .addDerived(HAS_LEVEL)
+            .build();
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    public void stabilityIsPerSpecification() {
+        assertTrue(NUMBER.isStableDerived(HAS_LEVEL));
+        assertFalse(ARRAY.isStableDerived(HAS_LEVEL));
+        assertFalse(Specification.builder("DerivedUndeclared").addInt("level").build().isStableDerived(HAS_LEVEL));
+    }
+
+    @Test
+    public void stableValuesAreKeptBetweenUses() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, NUMBER, compound -> {
+            compound.putInt("level", 3);
+            HAS_LEVEL.get(compound);
+        });
+
+        final int before = computations.get();
+        DataClient.use(stack, NUMBER, HAS_LEVEL::get);
+
+        assertEquals(before, computations.get());
+    }
+
+    @Test
+    public void unstableValuesAreRecomputed() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, ARRAY, compound -> {
+            compound.put("level", new int[] {3});
+            HAS_LEVEL.get(compound);
+        });
+
+        final int before = computations.get();
+        DataClient.use(stack, ARRAY, HAS_LEVEL::get);
+
+        assertEquals(before + 1, computations.get());
+    }
+}
@@ -0,0 +1,99 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import com.redgrapefruit.itemnbt3.util.NbtSizes;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares default elision with writing every field, for an item whose data is mostly default. The stored and
+ * serialized sizes are checked, the throughput of both modes is only reported, since it depends on the machine.
+ */
+public class ElisionBenchmarkTest {
+    private static final int INTS = 16;
+    private static final int BOOLS = 8;
+
+    private static final int WARMUP = 20_000;
+    private static final int OPERATIONS = 200_000;
+
+    private static final Specification PLAIN = fields(Specification.builder("ElisionPlain")).build();
+    private static final Specification ELIDED = fields(Specification.builder("ElisionElided")).useDefaultElision().build();
+
+    @Test
+    public void size() throws IOException {
+        final NbtCompound plain = new NbtCompound();
+        PLAIN.writeNbt(plain, mostlyDefault());
+        final NbtCompound elided = new NbtCompound();
+        ELIDED.writeNbt(elided, mostlyDefault());
+
+        final int plainBytes = serializedSize(plain);
+        final int elidedBytes = serializedSize(elided);
+        System.out.printf("Mostly default data: %d entries, %d serialized bytes, ~%d heap bytes without elision; %d entries, %d serialized bytes, ~%d heap bytes with elision%n",
+                plain.getSize(), plainBytes, NbtSizes.estimate(plain), elided.getSize(), elidedBytes, NbtSizes.estimate(elided));
+
+        assertEquals(INTS + BOOLS, plain.getSize());
+        assertEquals(2, elided.getSize());
+        assertTrue(elidedBytes * 4 < plainBytes, "Elided data takes " + elidedBytes + " bytes, without elision " + plainBytes);
+
+        // Elision must not change what is read back
+        final DataCompound read = new DataCompound();
+        ELIDED.readNbt(elided, read);
+        assertEquals(42, read.getInt("int3"));
+        assertEquals(7, read.getInt("int0"));
+        assertTrue(read.getBool("bool5"));
+    }
+
+    @Test
+    public void throughput() {
+        final DataCompound values = mostlyDefault();
+        final NbtCompound plain = new NbtCompound();
+        final NbtCompound elided = new NbtCompound();
+        PLAIN.writeNbt(plain, values);
+        ELIDED.writeNbt(elided, values);
+        final DataCompound read = new DataCompound();
+
+        System.out.printf("writeNbt: %.1f ns/op without elision, %.1f ns/op with elision%n",
+                measure(() -> PLAIN.writeNbt(new NbtCompound(), values)), measure(() -> ELIDED.writeNbt(new NbtCompound(), values)));
+        System.out.printf("readNbt: %.1f ns/op without elision, %.1f ns/op with elision%n",
+                measure(() -> PLAIN.readNbt(plain, read)), measure(() -> ELIDED.readNbt(elided, read)));
+    }
+
+    private static @NotNull Specification.Builder fields(@NotNull Specification.Builder builder) {
+        for (int i = 0; i < INTS; i++) builder.addInt("int" + i).setDefault("int" + i, 7);
+        for (int i = 0; i < BOOLS; i++) builder.addBool("bool" + i).setDefault("bool" + i, true);
+        return builder;
+    }
+
+    private static @NotNull DataCompound mostlyDefault() {
+        final DataCompound compound = new DataCompound();
+        for (int i = 0; i < INTS; i++) compound.putInt("int" + i, 7);
+        for (int i = 0; i < BOOLS; i++) compound.putBool("bool" + i, true);
+
+        compound.putInt("int3", 42);
+        compound.putBool("bool1", false);
+        return compound;
+    }
+
+    private static int serializedSize(@NotNull NbtCompound nbt) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtIo.write(nbt, new DataOutputStream(bytes));
+        return bytes.size();
+    }
+
+    private static double measure(@NotNull Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) operation.run();
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) operation.run();
+
+        return (System.nanoTime() - start) / (double) OPERATIONS;
+    }
+}
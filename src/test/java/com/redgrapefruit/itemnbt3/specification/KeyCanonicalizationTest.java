@@ -0,0 +1,106 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Decodes many stacks' worth of NBT with freshly allocated keys, like NBT read from disk or the network, and checks with
+ * a heap histogram that canonicalization frees the duplicated {@link String}s.
+ */
+public class KeyCanonicalizationTest {
+    private static final int STACKS = 20_000;
+    private static final String[] KEYS = {"energy", "mode", "charge", "owner"};
+
+    private static final Specification SPECIFICATION = Specification.builder("CanonicalizedKeys")
+            .addInt("energy").addInt("mode").addInt("charge").addInt("owner")
+            .build();
+
+    @BeforeAll
+    public static void setup() {
+        SpecificationRegistry.register(SPECIFICATION);
+    }
+
+    @Test
+    public void keysAreShared() {
+        final NbtCompound first = decoded(0);
+        final NbtCompound second = decoded(1);
+        SpecificationRegistry.canonicalizeKeys(first);
+        SpecificationRegistry.canonicalizeKeys(second);
+
+        assertSame(keyOf(first, SPECIFICATION.getId()), keyOf(second, SPECIFICATION.getId()));
+
+        for (String key : KEYS) {
+            assertSame(keyOf(first.getCompound(SPECIFICATION.getId()), key), keyOf(second.getCompound(SPECIFICATION.getId()), key));
+        }
+    }
+
+    @Test
+    public void duplicatedKeysAreFreed() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName diagnostics = new ObjectName("com.sun.management:type=DiagnosticCommand");
+        Assumptions.assumeTrue(server.isRegistered(diagnostics), "Heap histograms are not supported by this JVM");
+
+        final List<NbtCompound> stacks = new ArrayList<>(STACKS);
+        for (int i = 0; i < STACKS; i++) stacks.add(decoded(i));
+
+        final long before = countStrings(server, diagnostics);
+        for (NbtCompound nbt : stacks) SpecificationRegistry.canonicalizeKeys(nbt);
+        final long after = countStrings(server, diagnostics);
+
+        // Every stack held its own identifier and keys, 90% leaves room for unrelated strings allocated meanwhile
+        final long expected = (long) STACKS * (KEYS.length + 1);
+        assertTrue(before - after >= expected * 9 / 10, "Canonicalization freed " + (before - after) + " strings, expected about " + expected);
+
+        // The stacks must stay alive until the second histogram, otherwise their keys would be freed anyway
+        Reference.reachabilityFence(stacks);
+    }
+
+    private static @NotNull NbtCompound decoded(int value) {
+        final NbtCompound subNbt = new NbtCompound();
+        for (String key : KEYS) subNbt.putInt(new String(key), value);
+
+        final NbtCompound nbt = new NbtCompound();
+        nbt.put(new String(SPECIFICATION.getId()), subNbt);
+        return nbt;
+    }
+
+    private static @NotNull String keyOf(@NotNull NbtCompound nbt, @NotNull String key) {
+        for (String candidate : nbt.getKeys()) {
+            if (candidate.equals(key)) return candidate;
+        }
+
+        throw new AssertionError("Missing key " + key);
+    }
+
+    /**
+     * @return The live {@link String} instances in a histogram of the heap, which is taken after a full collection.
+     */
+    private static long countStrings(@NotNull MBeanServer server, @NotNull ObjectName diagnostics) throws Exception {
+        final String histogram = (String) server.invoke(diagnostics, "gcClassHistogram",
+                new Object[] {new String[0]}, new String[] {String[].class.getName()});
+
+        for (String line : histogram.split("\n")) {
+            final String[] columns = line.trim().split("\\s+");
+
+            // num: #instances #bytes class name (module)
+            if (columns.length >= 4 && columns[3].equals("java.lang.String")) {
+                return Long.parseLong(columns[1]);
+            }
+        }
+
+        throw new AssertionError("No java.lang.String in the heap histogram");
+    }
+}
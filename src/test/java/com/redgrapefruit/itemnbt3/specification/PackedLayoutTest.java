@@ -0,0 +1,93 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import com.redgrapefruit.itemnbt3.tree.FlatDataTree;
+import net.minecraft.nbt.NbtCompound;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Packed fields round-trip through both backends and share as few words as their bits allow.
+ */
+public class PackedLayoutTest {
+    enum Tier { WOOD, STONE, IRON, GOLD, DIAMOND }
+
+    // 20 + 20 + 16 + 1 + 3 bits fill the first word, the last field needs a second one
+    private static final Specification PACKED = Specification.builder("PackedFields")
+            .addPacked("charge", int.class, 20)
+            .addPacked("time", int.class, 20)
+            .addPacked("uses", short.class, 16)
+            .addPackedBool("active")
+            .addPackedEnum("tier", Tier.class)
+            .addPacked("level", byte.class, 8)
+            .build();
+
+    @Test
+    public void fieldsShareWords() {
+        final NbtCompound nbt = new NbtCompound();
+        PACKED.writeNbt(nbt, values());
+
+        assertTrue(nbt.contains(PackedLayout.KEY_PREFIX + 0));
+        assertTrue(nbt.contains(PackedLayout.KEY_PREFIX + 1));
+        assertFalse(nbt.contains(PackedLayout.KEY_PREFIX + 2));
+        assertFalse(nbt.contains("charge"));
+    }
+
+    @Test
+    public void nbtRoundTrip() {
+        final NbtCompound nbt = new NbtCompound();
+        PACKED.writeNbt(nbt, values());
+
+        final DataCompound read = new DataCompound();
+        PACKED.readNbt(nbt, read);
+        assertValues(read);
+    }
+
+    @Test
+    public void treeRoundTrip() {
+        final FlatDataTree tree = new FlatDataTree();
+        PACKED.writeTree(tree, values());
+
+        final DataCompound read = new DataCompound();
+        PACKED.readTree(tree, read);
+        assertValues(read);
+    }
+
+    @Test
+    public void valuesMustFitTheirBits() {
+        final DataCompound values = values();
+        values.putInt("charge", 1 << 20);
+
+        // Masking would silently spill into or lose part of the value, so it is rejected instead
+        assertThrows(IllegalArgumentException.class, () -> PACKED.writeNbt(new NbtCompound(), values));
+    }
+
+    @Test
+    public void oversizedFieldsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Specification.builder("PackedOversized").addPacked("level", byte.class, 9).build());
+    }
+
+    private static DataCompound values() {
+        final DataCompound compound = new DataCompound();
+        compound.putInt("charge", 1_000_000);
+        compound.putInt("time", 700_000);
+        compound.putShort("uses", (short) 40_000);
+        compound.putBool("active", true);
+        compound.put("tier", Tier.DIAMOND);
+        compound.putByte("level", (byte) 100);
+
+        return compound;
+    }
+
+    private static void assertValues(DataCompound compound) {
+        assertEquals(1_000_000, compound.getInt("charge"));
+        assertEquals(700_000, compound.getInt("time"));
+        assertEquals((short) 40_000, compound.getShort("uses"));
+        assertTrue(compound.getBool("active"));
+        assertEquals(Tier.DIAMOND, compound.<Tier>get("tier"));
+        assertEquals((byte) 100, compound.getByte("level"));
+    }
+}
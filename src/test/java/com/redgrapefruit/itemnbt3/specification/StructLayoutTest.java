@@ -0,0 +1,131 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import com.redgrapefruit.itemnbt3.DataClient;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Struct-encoded data round-trips, is laid out independently of the declaration order, and is upgraded before a
+ * {@link StructView} sees it.
+ */
+public class StructLayoutTest {
+    private static final UUID OWNER = new UUID(1L, 2L);
+
+    private static final Specification STRUCT = Specification.builder("StructFields")
+            .addInt("charge").addLong("time").addBool("active").addUUID("owner").addString("name").addIntArray("slots")
+            .useStructLayout(1)
+            .build();
+
+    private static final Specification REORDERED = Specification.builder("StructFields")
+            .addIntArray("slots").addString("name").addUUID("owner").addBool("active").addLong("time").addInt("charge")
+            .useStructLayout(1)
+            .build();
+
+    // Version 1 stored the charge in tenths. The struct layout didn't change, so the header of old data still matches
+    private static final Specification VERSIONED = Specification.builder("StructVersioned")
+            .addInt("charge")
+            .useStructLayout(1)
+            .setVersion(2)
+            .addMigrator(1, nbt -> {
+                final DataCompound old = new DataCompound();
+                StructLayoutTest.CURRENT.readNbt(nbt, old);
+                nbt.remove(StructLayout.KEY);
+                nbt.putInt("charge", old.getInt("charge") / 10);
+            })
+            .build();
+
+    // The same fields without a version, to decode and encode the struct of old data
+    private static final Specification CURRENT = Specification.builder("StructVersioned")
+            .addInt("charge")
+            .useStructLayout(1)
+            .build();
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    public void fieldsRoundTrip() {
+        final NbtCompound nbt = new NbtCompound();
+        STRUCT.writeNbt(nbt, values());
+        assertTrue(nbt.contains(StructLayout.KEY));
+
+        final DataCompound read = new DataCompound();
+        STRUCT.readNbt(nbt, read);
+
+        assertEquals(7, read.getInt("charge"));
+        assertEquals(1_000L, read.getLong("time"));
+        assertTrue(read.getBool("active"));
+        assertEquals(OWNER, read.getUUID("owner"));
+        assertEquals("torch", read.getString("name"));
+        assertArrayEquals(new int[] {1, 2}, read.getIntArray("slots"));
+    }
+
+    @Test
+    public void layoutIgnoresDeclarationOrder() {
+        final NbtCompound nbt = new NbtCompound();
+        STRUCT.writeNbt(nbt, values());
+
+        assertTrue(REORDERED.getStructLayout().matches(nbt.getByteArray(StructLayout.KEY)));
+
+        final DataCompound read = new DataCompound();
+        REORDERED.readNbt(nbt, read);
+        assertEquals(7, read.getInt("charge"));
+        assertEquals(OWNER, read.getUUID("owner"));
+    }
+
+    @Test
+    public void viewsWriteIntoTheStruct() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, STRUCT, compound -> compound.putInt("charge", 3));
+
+        DataClient.useStruct(stack, STRUCT, view -> view.putInt("charge", view.getInt("charge") + 1));
+
+        final int[] charge = new int[1];
+        DataClient.use(stack, STRUCT, compound -> charge[0] = compound.getInt("charge"));
+        assertEquals(4, charge[0]);
+    }
+
+    @Test
+    public void outdatedStructIsUpgradedBeforeTheView() {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        final NbtCompound old = stack.getOrCreateSubNbt(VERSIONED.getId());
+        final DataCompound values = new DataCompound();
+        values.putInt("charge", 70);
+        CURRENT.writeNbt(old, values);
+        old.putInt(Specification.VERSION_KEY, 1);
+        assertTrue(VERSIONED.getStructLayout().matches(old.getByteArray(StructLayout.KEY)));
+
+        final int[] charge = new int[1];
+        DataClient.useStruct(stack, VERSIONED, view -> charge[0] = view.getInt("charge"));
+
+        assertEquals(7, charge[0]);
+        assertFalse(VERSIONED.isOutdated(stack.getSubNbt(VERSIONED.getId())));
+    }
+
+    private static DataCompound values() {
+        final DataCompound compound = new DataCompound();
+        compound.putInt("charge", 7);
+        compound.putLong("time", 1_000L);
+        compound.putBool("active", true);
+        compound.put("owner", OWNER);
+        compound.put("name", "torch");
+        compound.put("slots", new int[] {1, 2});
+
+        return compound;
+    }
+}
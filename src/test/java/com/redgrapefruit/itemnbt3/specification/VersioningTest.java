@@ -0,0 +1,110 @@
+package com.redgrapefruit.itemnbt3.specification;
+
+import net.minecraft.nbt.NbtCompound;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Versioned {@link Specification}s nested in others, with and without default elision.
+ */
+public class VersioningTest {
+    // Only upgrades from version 1, so reading anything as version 0 throws
+    private static final Specification INNER = Specification.builder("VersionedInner")
+            .addInt("charge")
+            .setDefault("charge", 5)
+            .setVersion(2)
+            .addMigrator(1, nbt -> nbt.putInt("charge", nbt.getInt("charge") * 10))
+            .useDefaultElision()
+            .build();
+
+    // Version 1 stored the tier under its own key, version 2 packs it into the first word
+    private static final Specification PACKED = Specification.builder("VersionedPacked")
+            .addPacked("tier", int.class, 4)
+            .setVersion(2)
+            .addMigrator(1, nbt -> {
+                nbt.putLong(PackedLayout.KEY_PREFIX + 0, nbt.getInt("tier"));
+                nbt.remove("tier");
+            })
+            .build();
+
+    private static final Specification OUTER = Specification.builder("VersionedOuter")
+            .addInt("level")
+            .add("inner", INNER)
+            .useDefaultElision()
+            .build();
+
+    @Test
+    public void fullyElidedNestedDataIsCurrent() {
+        final DataCompound defaults = new DataCompound();
+        defaults.putInt("level", 0);
+        defaults.getOrCreateCompound("inner").putInt("charge", 5);
+
+        final NbtCompound nbt = new NbtCompound();
+        OUTER.writeNbt(nbt, defaults);
+        assertTrue(nbt.isEmpty());
+
+        final DataCompound read = new DataCompound();
+        OUTER.readNbt(nbt, read);
+        assertEquals(5, read.getCompound("inner").getInt("charge"));
+
+        assertFalse(OUTER.migrate(nbt));
+        assertTrue(nbt.isEmpty());
+    }
+
+    @Test
+    public void elidedNestedDataNextToOtherData() {
+        final DataCompound values = new DataCompound();
+        values.putInt("level", 3);
+        values.getOrCreateCompound("inner").putInt("charge", 5);
+
+        final NbtCompound nbt = new NbtCompound();
+        OUTER.writeNbt(nbt, values);
+        assertFalse(nbt.contains("inner"));
+
+        final DataCompound read = new DataCompound();
+        OUTER.readNbt(nbt, read);
+        assertEquals(3, read.getInt("level"));
+        assertEquals(5, read.getCompound("inner").getInt("charge"));
+    }
+
+    @Test
+    public void currentNestedDataIsNotUpgraded() {
+        final DataCompound values = new DataCompound();
+        values.putInt("level", 0);
+        values.getOrCreateCompound("inner").putInt("charge", 7);
+
+        final NbtCompound nbt = new NbtCompound();
+        OUTER.writeNbt(nbt, values);
+        assertEquals(2, nbt.getCompound("inner").getInt(Specification.VERSION_KEY));
+
+        final DataCompound read = new DataCompound();
+        OUTER.readNbt(nbt, read);
+        assertEquals(7, read.getCompound("inner").getInt("charge"));
+    }
+
+    @Test
+    public void oldNestedDataIsUpgraded() {
+        final NbtCompound inner = new NbtCompound();
+        inner.putInt("charge", 3);
+        inner.putInt(Specification.VERSION_KEY, 1);
+        final NbtCompound nbt = new NbtCompound();
+        nbt.put("inner", inner);
+
+        final DataCompound read = new DataCompound();
+        OUTER.readNbt(nbt, read);
+        assertEquals(30, read.getCompound("inner").getInt("charge"));
+    }
+
+    @Test
+    public void singleFieldsOfOldDataAreUpgraded() {
+        final NbtCompound nbt = new NbtCompound();
+        nbt.putInt("tier", 3);
+        nbt.putInt(Specification.VERSION_KEY, 1);
+
+        assertEquals(3, PACKED.readField(nbt, "tier"));
+        assertEquals(1, nbt.getInt(Specification.VERSION_KEY));
+    }
+}
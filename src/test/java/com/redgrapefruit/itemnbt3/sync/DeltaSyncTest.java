@@ -0,0 +1,184 @@
+package com.redgrapefruit.itemnbt3.sync;
+
+import com.redgrapefruit.itemnbt3.DataClient;
+import com.redgrapefruit.itemnbt3.serializer.BuiltinTypeSerializer;
+import com.redgrapefruit.itemnbt3.specification.DataCompound;
+import com.redgrapefruit.itemnbt3.specification.Specification;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives both sides of the delta sync in-process: the server stack is changed with {@link DataSync#useWithDelta}, and the
+ * delta is applied to a client copy taken at the last full sync, which must then equal the server's NBT.
+ */
+public class DeltaSyncTest {
+    private static final Specification STATS = Specification.builder("DeltaStats")
+            .addInt("power").addInt("speed")
+            .build();
+
+    private static final Specification TOOL = Specification.builder("DeltaTool")
+            .addInt("uses").addString("owner").addIntArray("history")
+            .addPackedBool("broken").addPacked("tier", int.class, 4)
+            .addMap("bonuses", BuiltinTypeSerializer.INT)
+            .add("stats", STATS)
+            .build();
+
+    private static final Specification STRUCT = Specification.builder("DeltaStruct")
+            .addInt("a").addLong("b").addDouble("c").addInt("d").addInt("e").addInt("f")
+            .useStructLayout(1)
+            .build();
+
+    private static final Specification ELIDED_STATS = Specification.builder("DeltaElidedStats")
+            .addInt("power").addInt("speed").addInt("range")
+            .setVersion(2)
+            .useDefaultElision()
+            .build();
+
+    private static final Specification ELIDED_TOOL = Specification.builder("DeltaElidedTool")
+            .addInt("uses").addInt("charge").addInt("level").addInt("mode")
+            .add("stats", ELIDED_STATS)
+            .useDefaultElision()
+            .build();
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    @Test
+    public void changedCounter() {
+        final ItemStack server = initialized(TOOL, compound -> compound.putInt("uses", 1));
+
+        final NbtCompound delta = sync(server, TOOL, compound -> compound.putInt("uses", 2));
+        assertEquals(1, delta.getKeys().size());
+    }
+
+    @Test
+    public void changedNestedAndPackedFields() {
+        final ItemStack server = initialized(TOOL, compound -> compound.getOrCreateCompound("stats").putInt("power", 3));
+
+        sync(server, TOOL, compound -> {
+            compound.getOrCreateCompound("stats").putInt("speed", 7);
+            compound.put("broken", true);
+        });
+    }
+
+    @Test
+    public void replacedCompoundValue() {
+        final ItemStack server = initialized(TOOL, compound -> compound.put("bonuses", new HashMap<>(Map.of("fire", 1, "frost", 2))));
+
+        // Merging the new map into the old one would keep the removed bonus on the client
+        sync(server, TOOL, compound -> compound.put("bonuses", new HashMap<>(Map.of("fire", 1))));
+    }
+
+    @Test
+    public void changedStructField() {
+        final ItemStack server = initialized(STRUCT, compound -> compound.putInt("a", 1));
+
+        sync(server, STRUCT, compound -> compound.putDouble("c", 2.5));
+    }
+
+    @Test
+    public void uninitializedDataIsFullySynced() {
+        final ItemStack server = new ItemStack(Items.STICK);
+
+        assertNull(DataSync.useWithDelta(server, TOOL, compound -> compound.putInt("uses", 1)));
+    }
+
+    @Test
+    public void unchangedDataIsNotSynced() {
+        final ItemStack server = initialized(TOOL, compound -> compound.putInt("uses", 1));
+
+        assertNull(DataSync.useWithDelta(server, TOOL, compound -> compound.putInt("uses", 1)));
+    }
+
+    @Test
+    public void largeChangesAreFullySynced() {
+        final ItemStack server = initialized(STATS, compound -> compound.putInt("power", 1));
+
+        assertNull(DataSync.useWithDelta(server, STATS, compound -> {
+            compound.putInt("power", 2);
+            compound.putInt("speed", 2);
+        }));
+    }
+
+    @Test
+    public void fieldBackToDefault() {
+        final ItemStack server = initialized(ELIDED_TOOL, compound -> {
+            compound.putInt("uses", 5);
+            compound.putInt("charge", 3);
+        });
+
+        final NbtCompound delta = sync(server, ELIDED_TOOL, compound -> compound.putInt("uses", 0));
+        assertFalse(server.getSubNbt(ELIDED_TOOL.getId()).contains("uses"));
+        assertTrue(delta.contains(Specification.REMOVED_KEY));
+    }
+
+    @Test
+    public void nestedDataElidedEntirely() {
+        final ItemStack server = initialized(ELIDED_TOOL, compound -> {
+            compound.putInt("uses", 5);
+            compound.getOrCreateCompound("stats").putInt("power", 3);
+        });
+
+        sync(server, ELIDED_TOOL, compound -> compound.getOrCreateCompound("stats").putInt("power", 0));
+        assertFalse(server.getSubNbt(ELIDED_TOOL.getId()).contains("stats"));
+    }
+
+    @Test
+    public void nestedDataLeavingDefaults() {
+        final ItemStack server = initialized(ELIDED_TOOL, compound -> compound.putInt("uses", 5));
+
+        sync(server, ELIDED_TOOL, compound -> compound.getOrCreateCompound("stats").putInt("speed", 4));
+        assertEquals(2, server.getSubNbt(ELIDED_TOOL.getId()).getCompound("stats").getInt(Specification.VERSION_KEY));
+    }
+
+    @Test
+    public void fullyElidedDataIsFullySynced() {
+        final ItemStack server = initialized(ELIDED_TOOL, compound -> compound.putInt("uses", 5));
+
+        assertNull(DataSync.useWithDelta(server, ELIDED_TOOL, compound -> compound.putInt("uses", 0)));
+        assertNull(server.getSubNbt(ELIDED_TOOL.getId()));
+    }
+
+    static @NotNull ItemStack initialized(@NotNull Specification specification, @NotNull Consumer<DataCompound> action) {
+        final ItemStack stack = new ItemStack(Items.STICK);
+        DataClient.use(stack, specification, action);
+        return stack;
+    }
+
+    /**
+     * Changes the server stack, applies the delta to a copy of its previous state and checks that both are equal.
+     *
+     * @return The delta.
+     */
+    static @NotNull NbtCompound sync(@NotNull ItemStack server, @NotNull Specification specification, @NotNull Consumer<DataCompound> action) {
+        final ItemStack client = server.copy();
+
+        final NbtCompound delta = DataSync.useWithDelta(server, specification, action);
+        assertNotNull(delta, "The change was fully synced");
+        assertFalse(delta.isEmpty());
+
+        DataSync.applyDelta(client.getOrCreateSubNbt(specification.getId()), delta);
+        assertEquals(server.getSubNbt(specification.getId()), client.getSubNbt(specification.getId()));
+
+        return delta;
+    }
+}